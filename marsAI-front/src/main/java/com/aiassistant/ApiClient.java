@@ -3,30 +3,69 @@ package com.aiassistant;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import okhttp3.*;
+import okio.BufferedSource;
+import okio.ByteString;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * API客户端
  * 负责与后端服务器通信
  */
 public class ApiClient {
+    /**
+     * 默认请求截止时间（毫秒），与后端默认值一致
+     */
+    public static final long DEFAULT_DEADLINE_MS = 120000;
+
+    /**
+     * 读超时在截止时间之外多留的时间，让后端的超时错误先到达
+     */
+    private static final long GRACE_MS = 5000;
+
     private final String baseUrl;
+    private final long deadlineMs;
     private final OkHttpClient httpClient;
+    // 会话ID，后端据此区分不同客户端的对话记忆
+    private final String sessionId = UUID.randomUUID().toString();
     
     public ApiClient(String baseUrl) {
+        this(baseUrl, DEFAULT_DEADLINE_MS);
+    }
+
+    /**
+     * @param baseUrl 后端地址
+     * @param deadlineMs 请求截止时间，通过 X-Request-Deadline-Ms 告知后端，后端在此时间内返回结果或超时错误
+     */
+    public ApiClient(String baseUrl, long deadlineMs) {
         this.baseUrl = baseUrl;
-        
-        // 设置超长超时时间（24小时），让后端有充足时间处理
-        // OkHttp 默认超时只有10秒，不设置会很快超时
+        this.deadlineMs = deadlineMs;
+
+        // 读超时比截止时间稍长：正常情况下后端会在截止时间内返回结果或504
         this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(86400, TimeUnit.SECONDS)    // 连接超时：24小时
-            .readTimeout(86400, TimeUnit.SECONDS)        // 读取超时：24小时
-            .writeTimeout(86400, TimeUnit.SECONDS)       // 写入超时：24小时
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(deadlineMs + GRACE_MS, TimeUnit.MILLISECONDS)
+            .writeTimeout(30, TimeUnit.SECONDS)
+            .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                .header("X-Session-Id", sessionId)
+                .header("X-Request-Deadline-Ms", String.valueOf(deadlineMs))
+                .build()))
             .build();
-        
-        System.out.println("API客户端：超时设置为24小时，等待后端完成处理");
+
+        System.out.println("API客户端：请求截止时间" + deadlineMs + "毫秒");
+    }
+
+    /**
+     * 请求截止时间（毫秒）
+     */
+    public long getDeadlineMs() {
+        return deadlineMs;
     }
     
     /**
@@ -62,6 +101,9 @@ public class ApiClient {
             System.out.println("响应状态码: " + code);
             System.out.println("响应内容: " + responseBody);
             
+            if (code == 504) {
+                throw new InterruptedIOException("请求超时: " + responseBody);
+            }
             if (!response.isSuccessful()) {
                 throw new IOException("请求失败: HTTP " + code + ", " + responseBody);
             }
@@ -86,6 +128,101 @@ public class ApiClient {
         }
     }
     
+    /**
+     * 流式事件监听器
+     */
+    public interface StreamListener {
+        /**
+         * 阶段事件（如工具调用开始/结束），data为JSON字符串
+         */
+        void onStage(String data);
+
+        /**
+         * 模型输出片段
+         */
+        void onToken(String token);
+    }
+
+    /**
+     * 以SSE方式发送文字消息，边处理边回调阶段事件和输出片段
+     * @param text 文字内容
+     * @param listener 流式事件监听器
+     * @return 完整的AI回复
+     * @throws IOException
+     */
+    public String sendTextStream(String text, StreamListener listener) throws IOException {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("text", text);
+
+        RequestBody requestBody = RequestBody.create(
+            jsonObject.toString(),
+            MediaType.get("application/json; charset=utf-8")
+        );
+
+        Request request = new Request.Builder()
+            .url(baseUrl + "/api/aiWithText/stream")
+            .post(requestBody)
+            .addHeader("Accept", "text/event-stream")
+            .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("请求失败: HTTP " + response.code());
+            }
+
+            return readEvents(response, listener);
+        }
+    }
+
+    /**
+     * 读取SSE事件直到result事件，返回其内容；error事件抛出异常，超时错误抛出InterruptedIOException
+     * stage和status事件交给监听器，token事件作为输出片段回调
+     */
+    private String readEvents(Response response, StreamListener listener) throws IOException {
+        BufferedSource source = response.body().source();
+        String event = "message";
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                // 空行表示一个事件结束
+                String payload = data.toString();
+                switch (event) {
+                    case "stage":
+                    case "status":
+                        if (listener != null) {
+                            listener.onStage(payload);
+                        }
+                        break;
+                    case "token":
+                        if (listener != null) {
+                            listener.onToken(payload);
+                        }
+                        break;
+                    case "result":
+                        return payload;
+                    case "error":
+                        if (payload.contains("\"msg\":\"timeout\"")) {
+                            throw new InterruptedIOException("请求超时: " + payload);
+                        }
+                        throw new IOException("请求失败: " + payload);
+                    default:
+                        break;
+                }
+                event = "message";
+                data.setLength(0);
+            } else if (line.startsWith("event:")) {
+                event = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(line.startsWith("data: ") ? line.substring(6) : line.substring(5));
+            }
+        }
+        throw new IOException("流式响应提前结束");
+    }
+
     /**
      * 发送音频文件到后端
      * @param audioFile 音频文件
@@ -108,12 +245,27 @@ public class ApiClient {
             .post(requestBody)
             .build();
         
+        // 后端立即返回任务ID，转写和意图解析在后台完成
+        String jobId;
         try (Response response = httpClient.newCall(request).execute()) {
+            String responseBody = response.body().string();
             if (!response.isSuccessful()) {
-                throw new IOException("请求失败: " + response);
+                throw new IOException("请求失败: HTTP " + response.code() + ", " + responseBody);
             }
-            
-            String responseBody = response.body().string();
+            jobId = JsonParser.parseString(responseBody).getAsJsonObject().get("jobId").getAsString();
+        }
+
+        // 订阅任务事件，等待最终结果
+        Request eventsRequest = new Request.Builder()
+            .url(baseUrl + "/api/aiWithAudio/jobs/" + jobId + "/events")
+            .addHeader("Accept", "text/event-stream")
+            .build();
+
+        try (Response response = httpClient.newCall(eventsRequest).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("请求失败: HTTP " + response.code());
+            }
+            String responseBody = readEvents(response, null);
             
             // 解析回复内容
             JsonObject responseJson = JsonParser.parseString(responseBody).getAsJsonObject();
@@ -128,5 +280,125 @@ public class ApiClient {
             }
         }
     }
-}
 
+    /**
+     * 流式识别结果监听器
+     */
+    public interface TranscriptListener {
+        /**
+         * 当前识别出的文本
+         * @param text 累计文本
+         * @param isFinal 是否已定稿
+         */
+        void onTranscript(String text, boolean isFinal);
+    }
+
+    /**
+     * 一路流式识别：录音时逐帧发送PCM，说完后等待线路规划结果
+     */
+    public static class AsrStream {
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private WebSocket webSocket;
+        private volatile boolean receivedTranscript;
+
+        /**
+         * 发送一帧16kHz/16bit/单声道PCM
+         */
+        public void sendAudio(byte[] pcm) {
+            webSocket.send(ByteString.of(pcm));
+        }
+
+        /**
+         * 通知后端音频已发送完毕
+         */
+        public void finish() {
+            webSocket.send("{\"type\":\"end\"}");
+        }
+
+        public void cancel() {
+            webSocket.cancel();
+        }
+
+        /**
+         * 是否已收到过识别文本（收到后出错不再退回文件识别）
+         */
+        public boolean hasTranscript() {
+            return receivedTranscript;
+        }
+
+        /**
+         * 等待线路规划结果
+         * @param timeoutSeconds 最长等待时间
+         * @return AI回复
+         * @throws IOException
+         */
+        public String awaitResult(long timeoutSeconds) throws IOException {
+            try {
+                return result.get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待识别结果被中断", e);
+            } catch (ExecutionException e) {
+                throw new IOException("流式识别失败: " + e.getCause().getMessage(), e.getCause());
+            } catch (TimeoutException e) {
+                throw new IOException("等待识别结果超时", e);
+            } finally {
+                webSocket.close(1000, null);
+            }
+        }
+    }
+
+    /**
+     * 打开流式识别连接
+     * @param listener 识别文本监听器
+     * @return 流式识别会话
+     */
+    public AsrStream openAsrStream(TranscriptListener listener) {
+        AsrStream stream = new AsrStream();
+        Request request = new Request.Builder()
+            .url(baseUrl.replaceFirst("^http", "ws") + "/api/asr/stream")
+            .build();
+        stream.webSocket = httpClient.newWebSocket(request, new WebSocketListener() {
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                JsonObject message = JsonParser.parseString(text).getAsJsonObject();
+                String type = message.get("type").getAsString();
+                switch (type) {
+                    case "partial":
+                    case "final":
+                    case "transcript":
+                        stream.receivedTranscript = true;
+                        listener.onTranscript(message.get("text").getAsString(), !"partial".equals(type));
+                        break;
+                    case "result":
+                        JsonObject data = message.get("data").isJsonObject()
+                            ? message.getAsJsonObject("data") : null;
+                        if (data != null && data.has("content")) {
+                            stream.result.complete(data.get("content").getAsString());
+                        } else if (data != null && data.has("message")) {
+                            stream.result.complete(data.get("message").getAsString());
+                        } else {
+                            stream.result.complete(data != null ? data.toString() : message.get("data").getAsString());
+                        }
+                        break;
+                    case "error":
+                        stream.result.completeExceptionally(new IOException(message.get("text").getAsString()));
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                stream.result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onClosed(WebSocket webSocket, int code, String reason) {
+                stream.result.completeExceptionally(new IOException("连接已关闭: " + reason));
+            }
+        });
+        return stream;
+    }
+}
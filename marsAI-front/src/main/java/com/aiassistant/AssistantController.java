@@ -4,6 +4,10 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.io.InputStream;
 import java.util.Properties;
@@ -23,6 +27,8 @@ public class AssistantController {
     private String currentQuery; // 存储当前查询内容
     
     private AudioRecorder audioRecorder;
+    // 当前录音对应的流式识别连接，连接失败时为空，录音结束后改用文件识别
+    private ApiClient.AsrStream asrStream;
     private ApiClient apiClient;
     private AtomicBoolean isRecording;
     
@@ -35,7 +41,7 @@ public class AssistantController {
         
         // 从配置文件读取后端地址
         String backendUrl = loadBackendUrl();
-        apiClient = new ApiClient(backendUrl);
+        apiClient = new ApiClient(backendUrl, loadDeadlineMs());
         audioRecorder = new AudioRecorder();
         
         // 从配置文件读取页面配置
@@ -137,6 +143,27 @@ public class AssistantController {
         return true;
     }
     
+    /**
+     * 从配置文件加载请求截止时间（毫秒）
+     */
+    private long loadDeadlineMs() {
+        try {
+            Properties prop = new Properties();
+            InputStream inputStream = getClass().getClassLoader()
+                .getResourceAsStream("config.properties");
+
+            if (inputStream != null) {
+                prop.load(inputStream);
+                String deadline = prop.getProperty("request.deadline.ms", String.valueOf(ApiClient.DEFAULT_DEADLINE_MS));
+                inputStream.close();
+                return Long.parseLong(deadline.trim());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ApiClient.DEFAULT_DEADLINE_MS;
+    }
+
     /**
      * 初始化用户界面
      */
@@ -388,7 +415,7 @@ public class AssistantController {
         
         new Thread(() -> {
             try {
-                String response = apiClient.sendText(text);
+                String response = sendTextStreaming(text);
                 System.out.println("收到后端响应: " + response);
                 
                 javafx.application.Platform.runLater(() -> {
@@ -419,6 +446,54 @@ public class AssistantController {
         }).start();
     }
     
+    /**
+     * 通过流式接口发送文字，实时展示工具调用阶段和输出片段；流式接口不可用时退回普通接口
+     */
+    private String sendTextStreaming(String text) throws IOException {
+        StringBuilder partial = new StringBuilder();
+        try {
+            return apiClient.sendTextStream(text, new ApiClient.StreamListener() {
+                @Override
+                public void onStage(String data) {
+                    javafx.application.Platform.runLater(() -> updateStatus(describeStage(data)));
+                }
+
+                @Override
+                public void onToken(String token) {
+                    partial.append(token);
+                    String snapshot = partial.toString();
+                    javafx.application.Platform.runLater(() -> {
+                        responseArea.setText(snapshot);
+                        responseArea.setVisible(true);
+                    });
+                }
+            });
+        } catch (IOException e) {
+            // 已有输出或已经超时时不再用普通接口重试
+            if (partial.length() > 0 || e instanceof InterruptedIOException) {
+                throw e;
+            }
+            System.out.println("流式接口不可用，改用普通接口: " + e.getMessage());
+            return apiClient.sendText(text);
+        }
+    }
+
+    /**
+     * 把阶段事件转换为状态栏文字
+     */
+    private String describeStage(String data) {
+        try {
+            JsonObject stage = JsonParser.parseString(data).getAsJsonObject();
+            String tool = stage.has("tool") ? stage.get("tool").getAsString() : "";
+            if ("tool_started".equals(stage.get("stage").getAsString())) {
+                return "🔧 正在调用 " + tool + "...";
+            }
+            return "✔ " + tool + " 完成";
+        } catch (Exception e) {
+            return "正在处理...";
+        }
+    }
+
     /**
      * 获取友好的错误信息
      */
@@ -432,7 +507,7 @@ public class AssistantController {
         // 检查超时错误
         if (message.contains("timeout") || message.contains("Timed out") || 
             message.contains("连接超时") || message.contains("read timed out")) {
-            return "请求超时（2分钟），请检查网络连接或稍后重试";
+            return "请求超时（" + apiClient.getDeadlineMs() / 1000 + "秒），请检查网络连接或稍后重试";
         }
         
         // 检查连接错误
@@ -491,8 +566,9 @@ public class AssistantController {
             return;
         }
         
-        // 开始录音
+        // 开始录音，同时把音频帧实时推给后端流式识别
         try {
+            openAsrStream();
             audioRecorder.startRecording();
             isRecording.set(true);
             voiceRecordButton.setText("⏹️ 停止录音");
@@ -500,9 +576,48 @@ public class AssistantController {
             updateStatus("🎤 正在录音...点击停止按钮结束");
             
         } catch (Exception e) {
+            closeAsrStream();
             showError("录音启动失败: " + e.getMessage());
         }
     }
+
+    private void openAsrStream() {
+        try {
+            ApiClient.AsrStream stream = apiClient.openAsrStream((text, isFinal) ->
+                javafx.application.Platform.runLater(() -> updateStatus("🎤 " + text)));
+            asrStream = stream;
+            audioRecorder.setFrameListener(stream::sendAudio);
+        } catch (Exception e) {
+            System.out.println("流式识别不可用，录音结束后上传文件: " + e.getMessage());
+            asrStream = null;
+        }
+    }
+
+    private void closeAsrStream() {
+        audioRecorder.setFrameListener(null);
+        if (asrStream != null) {
+            asrStream.cancel();
+            asrStream = null;
+        }
+    }
+
+    /**
+     * 优先使用流式识别的结果；流式识别在出字之前失败时退回上传录音文件
+     */
+    private String awaitAudioResult(ApiClient.AsrStream stream) throws IOException {
+        if (stream != null) {
+            try {
+                stream.finish();
+                return stream.awaitResult(apiClient.getDeadlineMs() / 1000);
+            } catch (Exception e) {
+                if (stream.hasTranscript()) {
+                    throw e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+                System.out.println("流式识别失败，改用文件识别: " + e.getMessage());
+            }
+        }
+        return apiClient.sendAudio(audioRecorder.getRecordedFile());
+    }
     
     /**
      * 停止录音并发送
@@ -515,6 +630,7 @@ public class AssistantController {
         // 停止录音
         try {
             audioRecorder.stopRecording();
+            audioRecorder.setFrameListener(null);
             isRecording.set(false);
             voiceRecordButton.setText("🎤 说话");
             voiceRecordButton.setStyle("-fx-background-color: #48bb78; -fx-text-fill: white; -fx-background-radius: 15;");
@@ -526,9 +642,11 @@ public class AssistantController {
         textSendButton.setDisable(true);
         voiceRecordButton.setDisable(true);
         
+        ApiClient.AsrStream stream = asrStream;
+        asrStream = null;
         new Thread(() -> {
             try {
-                String response = apiClient.sendAudio(audioRecorder.getRecordedFile());
+                String response = awaitAudioResult(stream);
                 System.out.println("收到后端响应: " + response);
                 
                 javafx.application.Platform.runLater(() -> {
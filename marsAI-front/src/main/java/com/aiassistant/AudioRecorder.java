@@ -4,6 +4,8 @@ import javax.sound.sampled.*;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * 音频录制器
@@ -14,11 +16,15 @@ public class AudioRecorder {
     private static final int SAMPLE_SIZE_IN_BITS = 16;
     private static final int CHANNELS = 1;
     private static final boolean BIG_ENDIAN = false;
+    // 每帧40ms：16000Hz * 2字节 * 0.04s
+    private static final int FRAME_BYTES = 1280;
     
     private AudioFormat audioFormat;
     private TargetDataLine targetDataLine;
     private ByteArrayOutputStream audioData;
-    private boolean isRecording;
+    private volatile boolean isRecording;
+    // 录音过程中实时接收音频帧（用于流式识别），为空时只录到内存
+    private volatile Consumer<byte[]> frameListener;
     
     public AudioRecorder() {
         audioFormat = new AudioFormat(
@@ -52,12 +58,16 @@ public class AudioRecorder {
         
         // 开始录音线程
         Thread recordingThread = new Thread(() -> {
-            byte[] buffer = new byte[1024];
+            byte[] buffer = new byte[FRAME_BYTES];
             
             while (isRecording) {
                 int count = targetDataLine.read(buffer, 0, buffer.length);
                 if (count > 0) {
                     audioData.write(buffer, 0, count);
+                    Consumer<byte[]> listener = frameListener;
+                    if (listener != null) {
+                        listener.accept(Arrays.copyOf(buffer, count));
+                    }
                 }
             }
         });
@@ -65,6 +75,14 @@ public class AudioRecorder {
         recordingThread.start();
     }
     
+    /**
+     * 设置音频帧监听器，录音时每40ms回调一帧16kHz/16bit/单声道PCM
+     * @param frameListener 帧监听器，传null取消
+     */
+    public void setFrameListener(Consumer<byte[]> frameListener) {
+        this.frameListener = frameListener;
+    }
+    
     /**
      * 停止录音
      */
@@ -0,0 +1,48 @@
+package com.qiniu.marsai.asr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 一段上传的WAV音频，整个请求只在内存中保留这一份字节
+ * @param data 音频字节
+ * @param name 文件名
+ * @param header WAV文件头
+ */
+public record AudioClip(byte[] data, String name, WavHeader header) {
+
+    /**
+     * 从上传流中读取音频并解析文件头
+     * @param in 上传流
+     * @param name 文件名
+     * @param maxBytes 最大字节数
+     * @param maxDurationMs 最长时长
+     * @throws IllegalArgumentException 超过大小或时长限制、不是WAV格式
+     */
+    public static AudioClip read(InputStream in, String name, int maxBytes, int maxDurationMs) throws IOException {
+        // 多读一个字节用于判断是否超限，不会为超大文件分配完整缓冲区
+        byte[] data = in.readNBytes(maxBytes + 1);
+        if (data.length > maxBytes) {
+            throw new IllegalArgumentException("音频文件过大，最大支持" + maxBytes / 1024 + "KB");
+        }
+        WavHeader header = WavHeader.parse(data, data.length);
+        if (header.durationMs() > maxDurationMs) {
+            throw new IllegalArgumentException("音频过长，最长支持" + maxDurationMs / 1000 + "秒");
+        }
+        return new AudioClip(data, name == null || name.isBlank() ? "audio.wav" : name, header);
+    }
+
+    /**
+     * 音频内容的SHA-256，用于合并内容相同的识别请求
+     */
+    public String contentHash() {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.qiniu.marsai.asr;
+
+import jakarta.annotation.Resource;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * 流式识别WebSocket配置
+ */
+@Configuration
+@EnableWebSocket
+public class StreamingAsrConfig implements WebSocketConfigurer {
+
+    @Resource
+    private StreamingAsrWebSocketHandler streamingAsrWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(streamingAsrWebSocketHandler, "/asr/stream").setAllowedOrigins("*");
+    }
+}
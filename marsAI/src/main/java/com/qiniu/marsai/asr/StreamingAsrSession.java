@@ -0,0 +1,133 @@
+package com.qiniu.marsai.asr;
+
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 一路流式识别会话，与传输层无关
+ * 客户端音频帧转给识别器，识别结果以JSON消息推回客户端：
+ * partial为当前累计文本（含未定稿部分），final为已定稿文本，transcript为完整文本，
+ * 随后解析线路意图并推送result；出错推送error
+ */
+@Slf4j
+public class StreamingAsrSession implements StreamingRecognizer.Listener {
+
+    private final Consumer<String> sink;
+    private final Function<String, String> planner;
+    private final Executor plannerExecutor;
+    private final StreamingRecognizer.Session recognition;
+    private final StringBuilder committed = new StringBuilder();
+    private volatile boolean closed;
+
+    /**
+     * @param recognizer 流式识别器
+     * @param sink 发往客户端的消息
+     * @param planner 根据完整文本解析线路意图，返回模型输出的JSON字符串
+     * @param plannerExecutor 执行意图解析的线程池，避免占用识别器的回调线程
+     */
+    public StreamingAsrSession(StreamingRecognizer recognizer, Consumer<String> sink,
+                               Function<String, String> planner, Executor plannerExecutor) {
+        this.sink = sink;
+        this.planner = planner;
+        this.plannerExecutor = plannerExecutor;
+        this.recognition = recognizer.open(this);
+    }
+
+    /**
+     * 收到客户端的一帧PCM
+     */
+    public void audio(byte[] pcm) {
+        if (!closed) {
+            recognition.sendAudio(pcm);
+        }
+    }
+
+    /**
+     * 收到客户端的控制消息，目前只有 {"type":"end"}
+     */
+    public void control(String message) {
+        try {
+            if ("end".equals(new JSONObject(message).optString("type"))) {
+                recognition.finish();
+            }
+        } catch (Exception e) {
+            log.warn("无法识别的控制消息: {}", message);
+        }
+    }
+
+    /**
+     * 客户端断开
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            recognition.cancel();
+        }
+    }
+
+    @Override
+    public void onPartial(String text) {
+        String current;
+        synchronized (committed) {
+            current = committed + text;
+        }
+        send("partial", current);
+    }
+
+    @Override
+    public void onSentence(String text) {
+        String current;
+        synchronized (committed) {
+            committed.append(text);
+            current = committed.toString();
+        }
+        send("final", current);
+    }
+
+    @Override
+    public void onComplete() {
+        String transcript;
+        synchronized (committed) {
+            transcript = committed.toString();
+        }
+        if (transcript.isBlank()) {
+            // 没有识别到内容，不为空文本调用大模型
+            send("error", "未识别到语音内容");
+            return;
+        }
+        send("transcript", transcript);
+        plannerExecutor.execute(() -> {
+            try {
+                String result = planner.apply(transcript);
+                sink.accept(new JSONObject().put("type", "result").put("data", parse(result)).toString());
+            } catch (Exception e) {
+                log.warn("流式识别后解析意图失败: {}", e.getMessage());
+                send("error", "err");
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        log.warn("流式识别失败: {}", error.getMessage());
+        send("error", error.getMessage() == null ? "err" : error.getMessage());
+    }
+
+    private void send(String type, String text) {
+        if (!closed) {
+            sink.accept(new JSONObject().put("type", type).put("text", text).toString());
+        }
+    }
+
+    private static Object parse(String result) {
+        try {
+            return new JSONObject(result);
+        } catch (Exception e) {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.qiniu.marsai.asr;
+
+import com.qiniu.marsai.controller.ClientAddressResolver;
+import com.qiniu.marsai.controller.SessionIdResolver;
+import com.qiniu.marsai.deadline.Deadline;
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.service.RouteIntentService;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 流式识别WebSocket接口
+ * 二进制消息为16kHz/16bit/单声道PCM帧，文本消息 {"type":"end"} 表示说完；
+ * 服务端推送partial/final/transcript/result/error消息，见 {@link StreamingAsrSession}
+ */
+@Slf4j
+@Component
+public class StreamingAsrWebSocketHandler extends AbstractWebSocketHandler {
+
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_LIMIT = 512 * 1024;
+
+    @Resource
+    private StreamingRecognizer streamingRecognizer;
+
+    @Resource
+    private RouteIntentService routeIntentService;
+
+    @Resource
+    private ClientAddressResolver clientAddressResolver;
+
+    @Value("${deadline.default-ms:120000}")
+    private long deadlineMs;
+
+    private final Map<String, StreamingAsrSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 意图解析阻塞在大模型调用上，用虚拟线程执行，大量连接同时说完也不会各占一个平台线程；
+     * 大模型的并发由ConcurrencyLimits限制
+     */
+    private final ExecutorService plannerExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("asr-stream-planner-", 0).factory());
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // 识别器回调和意图解析在不同线程上发送消息，需要串行化
+        WebSocketSession safeSession = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT);
+        String sessionId = sessionIdOf(session);
+        String origin = originOf(session);
+        StreamingAsrSession asrSession = new StreamingAsrSession(streamingRecognizer,
+                message -> send(safeSession, message),
+                // WebSocket不经过DeadlineFilter，意图解析使用服务端默认的截止时间
+                transcript -> DeadlineContext.call(Deadline.after(deadlineMs),
+                        () -> routeIntentService.chat(sessionId, transcript, origin)),
+                plannerExecutor);
+        sessions.put(session.getId(), asrSession);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        StreamingAsrSession asrSession = sessions.get(session.getId());
+        if (asrSession != null) {
+            byte[] pcm = new byte[message.getPayloadLength()];
+            message.getPayload().get(pcm);
+            asrSession.audio(pcm);
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        StreamingAsrSession asrSession = sessions.get(session.getId());
+        if (asrSession != null) {
+            asrSession.control(message.getPayload());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        StreamingAsrSession asrSession = sessions.remove(session.getId());
+        if (asrSession != null) {
+            asrSession.close();
+        }
+    }
+
+    private static void send(WebSocketSession session, String message) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new TextMessage(message));
+        } catch (IOException e) {
+            log.warn("流式识别消息发送失败: {}", e.getMessage());
+        }
+    }
+
+    private static String sessionIdOf(WebSocketSession session) {
+        String sessionId = session.getHandshakeHeaders().getFirst(SessionIdResolver.SESSION_HEADER);
+        return SessionIdResolver.isValid(sessionId) ? sessionId : UUID.randomUUID().toString();
+    }
+
+    private String originOf(WebSocketSession session) {
+        InetSocketAddress address = session.getRemoteAddress();
+        String remoteAddr = address == null || address.getAddress() == null ? "" : address.getAddress().getHostAddress();
+        return clientAddressResolver.resolve(remoteAddr,
+                session.getHandshakeHeaders().getFirst(ClientAddressResolver.FORWARDED_FOR_HEADER),
+                session.getHandshakeHeaders().getFirst(ClientAddressResolver.REAL_IP_HEADER));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        plannerExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,59 @@
+package com.qiniu.marsai.asr;
+
+/**
+ * 流式语音识别
+ * 边录边传16kHz/16bit/单声道PCM，识别结果通过监听器回调；具体实现可替换（讯飞实时转写、本地桩等）
+ */
+public interface StreamingRecognizer {
+
+    /**
+     * 打开一路识别会话
+     * @param listener 识别结果监听器
+     * @return 识别会话
+     */
+    Session open(Listener listener);
+
+    /**
+     * 识别会话
+     */
+    interface Session {
+
+        /**
+         * 发送一段PCM音频
+         */
+        void sendAudio(byte[] pcm);
+
+        /**
+         * 音频发送完毕，识别器处理完剩余音频后回调 {@link Listener#onComplete()}
+         */
+        void finish();
+
+        /**
+         * 放弃识别，不再回调
+         */
+        void cancel();
+    }
+
+    /**
+     * 识别结果监听器
+     */
+    interface Listener {
+
+        /**
+         * 当前句子的中间结果，后续可能被修正
+         */
+        void onPartial(String text);
+
+        /**
+         * 一句话识别完成，结果不再变化
+         */
+        void onSentence(String text);
+
+        /**
+         * 全部音频识别完成
+         */
+        void onComplete();
+
+        void onError(Throwable error);
+    }
+}
@@ -0,0 +1,135 @@
+package com.qiniu.marsai.asr;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * 讯飞转写结果文本提取
+ * orderResult和其中每个json_1best都是嵌套在字符串里的JSON。这里用流式解析器逐层读取，
+ * 把cw数组中的w直接写入同一个StringBuilder，不构建任何DOM树、也不收集中间列表
+ */
+public final class TranscriptExtractor {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private TranscriptExtractor() {
+    }
+
+    /**
+     * 从查询接口的完整响应中提取文本：content.orderResult
+     * @param response 响应JSON
+     * @return 转写文本，无结果或格式错误时返回空串
+     */
+    public static String fromResponse(String response) {
+        if (response == null || response.isEmpty()) {
+            return "";
+        }
+        try (JsonParser parser = FACTORY.createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT || !moveToField(parser, "content")
+                    || parser.nextToken() != JsonToken.START_OBJECT || !moveToField(parser, "orderResult")) {
+                return "";
+            }
+            if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                return "";
+            }
+            StringBuilder text = new StringBuilder();
+            appendOrderResult(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(), text);
+            return text.toString();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * 从orderResult字符串中提取文本
+     * @param orderResult content.orderResult的值
+     * @return 转写文本，无结果或格式错误时返回空串
+     */
+    public static String fromOrderResult(String orderResult) {
+        if (orderResult == null || orderResult.isEmpty()) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        char[] chars = orderResult.toCharArray();
+        appendOrderResult(chars, 0, chars.length, text);
+        return text.toString();
+    }
+
+    private static void appendOrderResult(char[] chars, int offset, int length, StringBuilder text) {
+        int mark = text.length();
+        try {
+            appendLattice(chars, offset, length, text);
+        } catch (IOException e) {
+            // 个别响应会多转义一层反斜杠，还原后再试一次
+            text.setLength(mark);
+            String cleaned = new String(chars, offset, length).replace("\\\\", "\\");
+            try {
+                appendLattice(cleaned.toCharArray(), 0, cleaned.length(), text);
+            } catch (IOException retry) {
+                text.setLength(mark);
+            }
+        }
+    }
+
+    /**
+     * 遍历lattice数组，逐个解析json_1best
+     */
+    private static void appendLattice(char[] chars, int offset, int length, StringBuilder text) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(chars, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT || !moveToField(parser, "lattice")
+                    || parser.nextToken() != JsonToken.START_ARRAY) {
+                return;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    JsonToken value = parser.nextToken();
+                    if ("json_1best".equals(parser.currentName()) && value == JsonToken.VALUE_STRING) {
+                        appendBest(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(), text);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析一个json_1best，写出st.rt[].ws[].cw[].w
+     */
+    private static void appendBest(char[] chars, int offset, int length, StringBuilder text) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(chars, offset, length)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_STRING && "w".equals(parser.currentName()) && inCw(parser.getParsingContext())) {
+                    text.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前对象是否为cw数组的元素
+     */
+    private static boolean inCw(JsonStreamContext context) {
+        JsonStreamContext array = context.getParent();
+        return array != null && array.inArray() && "cw".equals(array.getParent() == null ? null : array.getParent().getCurrentName());
+    }
+
+    /**
+     * 在当前对象中前进到指定字段名，跳过其它字段的值
+     */
+    private static boolean moveToField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.currentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+}
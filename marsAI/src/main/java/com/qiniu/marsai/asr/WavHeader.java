@@ -0,0 +1,89 @@
+package com.qiniu.marsai.asr;
+
+/**
+ * WAV文件头
+ * 直接从RIFF头字节中读取格式和data块长度计算时长，不需要javax.sound解码整个文件
+ * @param channels 声道数
+ * @param sampleRate 采样率
+ * @param bitsPerSample 位深
+ * @param byteRate 每秒字节数
+ * @param dataOffset data块起始位置
+ * @param dataLength data块长度（按实际字节数截断）
+ */
+public record WavHeader(int channels, int sampleRate, int bitsPerSample, int byteRate, int dataOffset, long dataLength) {
+
+    /**
+     * 音频时长（毫秒）
+     */
+    public int durationMs() {
+        return byteRate == 0 ? 0 : (int) (dataLength * 1000 / byteRate);
+    }
+
+    /**
+     * 解析WAV文件头
+     * @param bytes 音频字节
+     * @param length 有效长度
+     * @return 文件头
+     * @throws IllegalArgumentException 不是标准的PCM WAV
+     */
+    public static WavHeader parse(byte[] bytes, int length) {
+        if (length < 12 || !tagAt(bytes, 0, "RIFF") || !tagAt(bytes, 8, "WAVE")) {
+            throw new IllegalArgumentException("当前仅支持WAV格式音频");
+        }
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+        int byteRate = 0;
+        boolean hasFormat = false;
+        long offset = 12;
+        while (offset + 8 <= length) {
+            int start = (int) offset;
+            long chunkSize = uint32(bytes, start + 4);
+            int body = start + 8;
+            if (tagAt(bytes, start, "fmt ")) {
+                if (body + 16 > length) {
+                    break;
+                }
+                channels = uint16(bytes, body + 2);
+                sampleRate = (int) uint32(bytes, body + 4);
+                byteRate = (int) uint32(bytes, body + 8);
+                bitsPerSample = uint16(bytes, body + 14);
+                hasFormat = true;
+            } else if (tagAt(bytes, start, "data")) {
+                if (!hasFormat) {
+                    break;
+                }
+                // 边录边写的WAV可能把data长度写成0或0xFFFFFFFF，以实际字节数为准
+                long available = length - body;
+                long dataLength = chunkSize == 0 || chunkSize > available ? available : chunkSize;
+                return new WavHeader(channels, sampleRate, bitsPerSample, byteRate, body, dataLength);
+            }
+            if (body + chunkSize > length) {
+                throw new IllegalArgumentException("WAV文件块长度超出文件大小，文件可能已损坏");
+            }
+            // RIFF块按偶数字节对齐
+            offset = body + chunkSize + (chunkSize & 1);
+        }
+        throw new IllegalArgumentException("WAV文件头不完整，请确认文件为标准WAV格式（非损坏、非压缩）");
+    }
+
+    private static boolean tagAt(byte[] bytes, int offset, String tag) {
+        for (int i = 0; i < 4; i++) {
+            if (bytes[offset + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int uint16(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static long uint32(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFFL)
+                | (bytes[offset + 1] & 0xFFL) << 8
+                | (bytes[offset + 2] & 0xFFL) << 16
+                | (bytes[offset + 3] & 0xFFL) << 24;
+    }
+}
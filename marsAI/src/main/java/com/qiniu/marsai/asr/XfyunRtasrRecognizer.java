@@ -0,0 +1,182 @@
+package com.qiniu.marsai.asr;
+
+import com.qiniu.marsai.http.OutboundHttpClient;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 讯飞实时语音转写
+ * 通过WebSocket边传边转写，签名为 Base64(HmacSHA1(MD5(appid + ts), apiKey))
+ */
+@Slf4j
+@Component
+public class XfyunRtasrRecognizer implements StreamingRecognizer {
+
+    private static final String RTASR_URL = "wss://rtasr.xfyun.cn/v1/ws";
+
+    @Value("${asr.xfyun.app-id}")
+    private String appId;
+
+    @Value("${asr.xfyun.rtasr-api-key:}")
+    private String apiKey;
+
+    @Resource
+    private OutboundHttpClient httpClient;
+
+    @Override
+    public Session open(Listener listener) {
+        String ts = String.valueOf(System.currentTimeMillis() / 1000);
+        URI uri = URI.create(RTASR_URL + "?appid=" + appId + "&ts=" + ts
+                + "&signa=" + URLEncoder.encode(signature(ts), StandardCharsets.UTF_8));
+        RtasrSession session = new RtasrSession(listener);
+        session.connect(httpClient.newWebSocketBuilder().buildAsync(uri, session));
+        return session;
+    }
+
+    private String signature(String ts) {
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5").digest((appId + ts).getBytes(StandardCharsets.UTF_8));
+            Mac hmac = Mac.getInstance("HmacSHA1");
+            hmac.init(new SecretKeySpec(apiKey.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+            byte[] signa = hmac.doFinal(HexFormat.of().formatHex(md5).getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(signa);
+        } catch (Exception e) {
+            throw new RuntimeException("实时转写签名生成失败", e);
+        }
+    }
+
+    /**
+     * 从转写结果中拼出文本：cn.st.rt[].ws[].cw[0].w
+     * @return 文本和是否为定稿结果（type=0）
+     */
+    static String[] parseResult(String data) {
+        JSONObject st = new JSONObject(data).getJSONObject("cn").getJSONObject("st");
+        StringBuilder text = new StringBuilder();
+        JSONArray rt = st.optJSONArray("rt");
+        for (int i = 0; rt != null && i < rt.length(); i++) {
+            JSONArray ws = rt.getJSONObject(i).optJSONArray("ws");
+            for (int j = 0; ws != null && j < ws.length(); j++) {
+                JSONArray cw = ws.getJSONObject(j).optJSONArray("cw");
+                if (cw != null && cw.length() > 0) {
+                    text.append(cw.getJSONObject(0).optString("w"));
+                }
+            }
+        }
+        return new String[]{text.toString(), st.optString("type")};
+    }
+
+    /**
+     * 单路实时转写会话
+     * java.net.http.WebSocket要求上一次发送完成后才能再次发送，所以所有发送串成一条链
+     */
+    private static class RtasrSession implements Session, WebSocket.Listener {
+
+        private final Listener listener;
+        private final StringBuilder textBuffer = new StringBuilder();
+        private CompletableFuture<WebSocket> sendChain;
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+
+        RtasrSession(Listener listener) {
+            this.listener = listener;
+        }
+
+        synchronized void connect(CompletableFuture<WebSocket> connecting) {
+            sendChain = connecting.whenComplete((ws, e) -> {
+                if (e != null) {
+                    fail(e);
+                }
+            });
+        }
+
+        @Override
+        public synchronized void sendAudio(byte[] pcm) {
+            ByteBuffer frame = ByteBuffer.wrap(pcm.clone());
+            sendChain = sendChain.thenCompose(ws -> ws.sendBinary(frame, true));
+        }
+
+        @Override
+        public synchronized void finish() {
+            sendChain = sendChain.thenCompose(ws -> ws.sendText("{\"end\": true}", true));
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            sendChain.thenAccept(ws -> ws.abort());
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            textBuffer.append(data);
+            if (last) {
+                String message = textBuffer.toString();
+                textBuffer.setLength(0);
+                handle(message);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        private void handle(String message) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                JSONObject json = new JSONObject(message);
+                String action = json.optString("action");
+                if ("error".equals(action)) {
+                    fail(new RuntimeException("实时转写失败：" + json.optString("desc")));
+                } else if ("result".equals(action)) {
+                    String[] result = parseResult(json.getString("data"));
+                    if ("0".equals(result[1])) {
+                        listener.onSentence(result[0]);
+                    } else {
+                        listener.onPartial(result[0]);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("实时转写结果解析失败: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            // 服务端在处理完结束标记后的剩余音频时关闭连接
+            if (!cancelled && !completed) {
+                completed = true;
+                listener.onComplete();
+            }
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            fail(error);
+        }
+
+        private void fail(Throwable error) {
+            if (!cancelled && !completed) {
+                completed = true;
+                listener.onError(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.qiniu.marsai.controller;
+
+import com.qiniu.marsai.limit.ConcurrencyLimits;
+import com.qiniu.marsai.mcp.CachingToolProvider;
+import com.qiniu.marsai.mcp.McpConfig;
+import com.qiniu.marsai.route.FastPathPlanner;
+import com.qiniu.marsai.route.RouteCache;
+import com.qiniu.marsai.service.AsrJobService;
+import com.qiniu.marsai.service.BoundedChatMemoryStore;
+import com.qiniu.marsai.service.IntentCache;
+import com.qiniu.marsai.service.RouteIntentService;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运维管理接口
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    @Resource
+    private BoundedChatMemoryStore chatMemoryStore;
+
+    @Resource
+    private IntentCache intentCache;
+
+    @Resource
+    private CachingToolProvider cachingMcpToolProvider;
+
+    @Resource
+    private McpConfig mcpConfig;
+
+    @Resource
+    private AsrJobService asrJobService;
+
+    @Resource
+    private FastPathPlanner fastPathPlanner;
+
+    @Resource
+    private RouteIntentService routeIntentService;
+
+    @Resource
+    private ConcurrencyLimits concurrencyLimits;
+
+    @Resource
+    private RouteCache routeCache;
+
+    /**
+     * 会话记忆占用情况
+     */
+    @GetMapping("/sessions")
+    public Map<String, Object> sessions() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessionCount", chatMemoryStore.size());
+        stats.put("approxBytes", chatMemoryStore.approxBytes());
+        stats.put("maxEntries", chatMemoryStore.maxEntries());
+        stats.put("idleTtlMs", chatMemoryStore.idleTtlMs());
+        stats.put("evictions", chatMemoryStore.evictions());
+        return stats;
+    }
+
+    /**
+     * 意图结果缓存命中情况
+     */
+    @GetMapping("/intent-cache")
+    public Map<String, Object> intentCache() {
+        return intentCache.stats();
+    }
+
+    /**
+     * MCP工具结果缓存命中情况（按工具统计）
+     */
+    @GetMapping("/tool-cache")
+    public List<Map<String, Object>> toolCache() {
+        return cachingMcpToolProvider.stats();
+    }
+
+    /**
+     * MCP进程池各进程的在途请求数、延迟和重启次数
+     */
+    @GetMapping("/mcp-pool")
+    public List<Map<String, Object>> mcpPool() {
+        return mcpConfig.poolStats();
+    }
+
+    /**
+     * 语音识别任务表占用情况
+     */
+    @GetMapping("/asr-jobs")
+    public Map<String, Object> asrJobs() {
+        return asrJobService.stats();
+    }
+
+    /**
+     * 规则快速路径命中率和回退原因
+     */
+    @GetMapping("/fast-path")
+    public Map<String, Object> fastPath() {
+        return fastPathPlanner.stats();
+    }
+
+    /**
+     * 相同请求合并情况：意图解析和语音转写
+     */
+    @GetMapping("/single-flight")
+    public List<Map<String, Object>> singleFlight() {
+        return List.of(routeIntentService.coalesceStats(), asrJobService.coalesceStats());
+    }
+
+    /**
+     * 上游调用的自适应并发上限、在途数和拒绝次数
+     */
+    @GetMapping("/limits")
+    public List<Map<String, Object>> limits() {
+        return concurrencyLimits.stats();
+    }
+
+    /**
+     * 模型分层路由的决策和升级次数
+     */
+    @GetMapping("/model-tiers")
+    public Map<String, Object> modelTiers() {
+        return routeIntentService.tierStats();
+    }
+
+    /**
+     * 大模型对冲：当前对冲延迟、对冲次数和备用模型胜出次数
+     */
+    @GetMapping("/hedging")
+    public Map<String, Object> hedging() {
+        return routeIntentService.hedgeStats();
+    }
+
+    /**
+     * 路径规划缓存：条目数、占用字节、命中率和淘汰次数
+     */
+    @GetMapping("/route-cache")
+    public Map<String, Object> routeCache() {
+        return routeCache.stats();
+    }
+}
@@ -1,33 +1,55 @@
 package com.qiniu.marsai.controller;
 
-import com.qiniu.marsai.service.AiHelperService;
-import com.qiniu.marsai.service.AsrService;
-import com.qiniu.marsai.tool.PublicIpUtil;
+import com.qiniu.marsai.deadline.DeadlineExceededException;
+import com.qiniu.marsai.geo.GeoPoint;
+import com.qiniu.marsai.limit.LimitExceededException;
+import com.qiniu.marsai.route.RouteCache;
+import com.qiniu.marsai.route.RoutePlanService;
+import com.qiniu.marsai.service.AiStreamService;
+import com.qiniu.marsai.service.AsrJobService;
+import com.qiniu.marsai.service.RouteIntentService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import net.sf.json.JSON;
-import net.sf.json.JSONObject;
-import org.springframework.beans.factory.annotation.Autowired;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 
 /**
- * IP查询控制器
+ * AI接口控制器：线路意图问答、语音识别任务和路线规划
  */
+@Slf4j
 @RestController
 public class AiController {
 
     @Resource
-    private AiHelperService aiHelperService;
+    private RouteIntentService routeIntentService;
 
     @Resource
-    private AsrService asrService;
+    private AiStreamService aiStreamService;
+
+    @Resource
+    private AsrJobService asrJobService;
+
+    @Resource
+    private RoutePlanService routePlanService;
+
+    @Resource
+    private SessionIdResolver sessionIdResolver;
+
+    @Resource
+    private ClientAddressResolver clientAddressResolver;
 
     @Value("${amap.web-api-key}")
     private String amapWebApiKey;
@@ -39,39 +61,88 @@ public class AiController {
     @RequestMapping(value = "/aiWithText", produces = "application/json;charset=UTF-8")
     public String loadSessions(String cmd, @RequestBody(required = false) String body, HttpServletRequest request,
                                HttpServletResponse response) {
-        String text = "";
-
-        String returnJson = "";
-        JSONObject bodyJson = null;
         try {
-            bodyJson = JSONObject.fromObject(body);
-            text = bodyJson.getString("text");
-
-            returnJson = aiHelperService.chat("1", text);
+            String text = JsonBodies.readText(body);
+            // RouteIntentService返回的已是校验并规范化过的JSON，直接写出
+            return routeIntentService.chat(sessionIdResolver.resolve(request, response), text,
+                    clientAddressResolver.resolve(request));
         } catch (Exception e) {
-            e.printStackTrace();
-            return JSONObject.fromObject("{msg:'err'}").toString();
+            LimitExceededException limited = LimitExceededException.find(e);
+            if (limited != null) {
+                throw limited;
+            }
+            DeadlineExceededException exceeded = DeadlineExceededException.find(e);
+            if (exceeded != null) {
+                throw exceeded;
+            }
+            log.error("文字意图解析失败", e);
+            return JsonBodies.ERROR;
+        }
+    }
+
+    /**
+     * 流式版本：以SSE推送工具调用阶段事件和模型输出片段，最后推送完整结果
+     */
+    @CrossOrigin
+    @PostMapping(value = "/aiWithText/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamSessions(@RequestBody(required = false) String body,
+                                                        HttpServletRequest request, HttpServletResponse response) {
+        String text;
+        try {
+            text = JsonBodies.readText(body);
+        } catch (IllegalArgumentException e) {
+            log.warn("流式请求体无效: {}", e.getMessage());
+            return Flux.just(ServerSentEvent.<String>builder()
+                    .event("error")
+                    .data(JsonBodies.ERROR)
+                    .build());
         }
-        System.out.println(JSONObject.fromObject(returnJson).toString());
-        return JSONObject.fromObject(returnJson).toString();
+        return aiStreamService.chat(sessionIdResolver.resolve(request, response), text, clientAddressResolver.resolve(request));
     }
+
+    /**
+     * 提交语音识别任务，立即返回任务ID；转写和意图解析在后台完成
+     * 结果通过 /aiWithAudio/jobs/{id} 查询、/aiWithAudio/jobs/{id}/events 订阅，或推送到callbackUrl
+     */
     @CrossOrigin
-  @RequestMapping("/aiWithAudio")
-    public String transcribeAudio(@RequestParam("audio") MultipartFile audioFile) {
-        //音频转文字
-        String returnJson = "";
+    @RequestMapping("/aiWithAudio")
+    public ResponseEntity<Map<String, Object>> transcribeAudio(@RequestParam("audio") MultipartFile audioFile,
+                                                               @RequestParam(value = "callbackUrl", required = false) String callbackUrl,
+                                                               HttpServletRequest request, HttpServletResponse response) {
         try {
-        String message = asrService.transferAudio(audioFile);
-        String sessionId = "1";
-        returnJson = aiHelperService.chat(sessionId, message);
-            System.out.println(returnJson);
+            String sessionId = sessionIdResolver.resolve(request, response);
+            AsrJobService.Job job = asrJobService.submit(audioFile, sessionId, clientAddressResolver.resolve(request), callbackUrl);
+            return ResponseEntity.accepted().body(asrJobService.view(job));
+        } catch (LimitExceededException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("msg", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("msg", e.getMessage()));
         } catch (Exception e) {
-            e.printStackTrace();
-            return JSONObject.fromObject("{msg:'err'}").toString();
+            log.error("语音识别任务提交失败", e);
+            return ResponseEntity.internalServerError().body(Map.of("msg", "err"));
+        }
+    }
+
+    @CrossOrigin
+    @GetMapping("/aiWithAudio/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> audioJob(@PathVariable("id") String id) {
+        AsrJobService.Job job = asrJobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.ok(asrJobService.view(job));
+    }
 
-        System.out.println(JSONObject.fromObject(returnJson).toString());
-        return JSONObject.fromObject(returnJson).toString();
+    @CrossOrigin
+    @GetMapping(value = "/aiWithAudio/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> audioJobEvents(@PathVariable("id") String id) {
+        AsrJobService.Job job = asrJobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(asrJobService.subscribe(job));
     }
 
     @CrossOrigin
@@ -83,4 +154,37 @@ public class AiController {
         return config;
     }
 
+    /**
+     * 地图页的路线规划，结果按对齐后的起终点、出行方式和驾车策略缓存
+     * @param mode driving/walking/riding，也支持中文
+     * @param policy 驾车策略（10~20）
+     * @return distance（米）、duration（秒）、path、steps；参数无效返回400，高德规划失败返回502
+     */
+    @CrossOrigin
+    @GetMapping("/route")
+    public ResponseEntity<Map<String, Object>> route(@RequestParam("startLng") double startLng,
+                                                     @RequestParam("startLat") double startLat,
+                                                     @RequestParam("endLng") double endLng,
+                                                     @RequestParam("endLat") double endLat,
+                                                     @RequestParam(value = "mode", required = false) String mode,
+                                                     @RequestParam(value = "policy", required = false) Integer policy) {
+        String normalizedMode = RouteCache.normalizeMode(mode);
+        if (normalizedMode == null || (policy != null && (policy < 0 || policy > 20))
+                || !isCoordinate(startLng, startLat) || !isCoordinate(endLng, endLat)) {
+            return ResponseEntity.badRequest().body(Map.of("msg", "invalid route parameters"));
+        }
+        try {
+            return ResponseEntity.ok(routePlanService.plan(new GeoPoint(startLng, startLat),
+                    new GeoPoint(endLng, endLat), normalizedMode, policy).toView());
+        } catch (LimitExceededException | DeadlineExceededException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            log.warn("路线规划失败", e);
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of("msg", "route planning failed"));
+        }
+    }
+
+    private static boolean isCoordinate(double lng, double lat) {
+        return lng >= -180 && lng <= 180 && lat >= -90 && lat <= 90;
+    }
 }
@@ -0,0 +1,141 @@
+package com.qiniu.marsai.controller;
+
+import com.qiniu.marsai.geo.IpLocationIndex;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 客户端地址解析
+ * 直连地址是受信任的代理时，从 X-Forwarded-For 由右向左取第一个不受信任的地址，
+ * 其次取 X-Real-IP；直连地址不受信任时直接使用，防止客户端伪造请求头
+ */
+@Component
+public class ClientAddressResolver {
+
+    public static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+    public static final String REAL_IP_HEADER = "X-Real-IP";
+
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9A-Fa-f:.]+");
+
+    private final List<byte[][]> trustedProxies = new ArrayList<>();
+
+    public ClientAddressResolver(@Value("${client-address.trusted-proxies:127.0.0.0/8,::1/128,10.0.0.0/8,172.16.0.0/12,192.168.0.0/16}")
+                                 List<String> trustedProxies) {
+        for (String cidr : trustedProxies) {
+            byte[][] block = parseCidr(cidr.trim());
+            if (block != null) {
+                this.trustedProxies.add(block);
+            }
+        }
+    }
+
+    public String resolve(HttpServletRequest request) {
+        return resolve(request.getRemoteAddr(), request.getHeader(FORWARDED_FOR_HEADER), request.getHeader(REAL_IP_HEADER));
+    }
+
+    /**
+     * @param remoteAddr 直连地址
+     * @param forwardedFor X-Forwarded-For请求头，可为null
+     * @param realIp X-Real-IP请求头，可为null
+     * @return 客户端地址
+     */
+    public String resolve(String remoteAddr, String forwardedFor, String realIp) {
+        if (!isTrusted(remoteAddr)) {
+            return remoteAddr;
+        }
+        if (forwardedFor != null && !forwardedFor.isBlank()) {
+            String[] hops = forwardedFor.split(",");
+            String leftmost = null;
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (!isIpLiteral(hop)) {
+                    continue;
+                }
+                if (!isTrusted(hop)) {
+                    return hop;
+                }
+                leftmost = hop;
+            }
+            if (leftmost != null) {
+                return leftmost;
+            }
+        }
+        if (realIp != null && isIpLiteral(realIp.trim())) {
+            return realIp.trim();
+        }
+        return remoteAddr;
+    }
+
+    private boolean isTrusted(String ip) {
+        byte[] address = toBytes(ip);
+        if (address == null) {
+            return false;
+        }
+        for (byte[][] block : trustedProxies) {
+            if (matches(address, block[0], block[1][0] & 0xFF)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(byte[] address, byte[] network, int prefix) {
+        if (address.length != network.length) {
+            return false;
+        }
+        int fullBytes = prefix / 8;
+        for (int i = 0; i < fullBytes; i++) {
+            if (address[i] != network[i]) {
+                return false;
+            }
+        }
+        int restBits = prefix % 8;
+        if (restBits == 0) {
+            return true;
+        }
+        int mask = 0xFF << (8 - restBits) & 0xFF;
+        return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+    }
+
+    /**
+     * @return {网络地址, {前缀长度}}，格式错误时返回null
+     */
+    private static byte[][] parseCidr(String cidr) {
+        int slash = cidr.indexOf('/');
+        byte[] network = toBytes(slash < 0 ? cidr : cidr.substring(0, slash));
+        if (network == null) {
+            return null;
+        }
+        int prefix = slash < 0 ? network.length * 8 : Integer.parseInt(cidr.substring(slash + 1));
+        return new byte[][]{network, {(byte) prefix}};
+    }
+
+    /**
+     * IPv4点分十进制或含冒号的IPv6，主机名不算
+     */
+    private static boolean isIpLiteral(String ip) {
+        return ip != null && IP_LITERAL.matcher(ip).matches()
+                && (ip.indexOf(':') >= 0 || IpLocationIndex.parseIpv4(ip) >= 0);
+    }
+
+    /**
+     * 只解析IP字面量，不会触发DNS查询
+     */
+    private static byte[] toBytes(String ip) {
+        if (!isIpLiteral(ip)) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.qiniu.marsai.controller;
+
+import com.qiniu.marsai.deadline.DeadlineExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * 请求超过截止时间时返回504和超时的阶段，客户端不必一直等待
+ */
+@Slf4j
+@RestControllerAdvice
+public class DeadlineExceededHandler {
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handle(DeadlineExceededException e) {
+        log.warn("请求超时: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(JsonBodies.timeout(e));
+    }
+}
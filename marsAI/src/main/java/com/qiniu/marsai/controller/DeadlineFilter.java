@@ -0,0 +1,53 @@
+package com.qiniu.marsai.controller;
+
+import com.qiniu.marsai.deadline.Deadline;
+import com.qiniu.marsai.deadline.DeadlineContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 请求截止时间
+ * 读取请求头 X-Request-Deadline-Ms（客户端愿意等待的毫秒数），没有或无效时使用服务端默认值，
+ * 不超过服务端上限；截止时间绑定到请求线程，由后续的转写、大模型和工具调用逐级使用剩余时间
+ */
+@Component
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    public static final String DEADLINE_HEADER = "X-Request-Deadline-Ms";
+
+    @Value("${deadline.default-ms:120000}")
+    private long defaultMs;
+
+    @Value("${deadline.max-ms:600000}")
+    private long maxMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Deadline previous = DeadlineContext.bind(Deadline.after(budgetOf(request.getHeader(DEADLINE_HEADER))));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            DeadlineContext.restore(previous);
+        }
+    }
+
+    long budgetOf(String header) {
+        if (header == null || header.isBlank()) {
+            return defaultMs;
+        }
+        try {
+            long requested = Long.parseLong(header.trim());
+            return requested > 0 ? Math.min(requested, maxMs) : defaultMs;
+        } catch (NumberFormatException e) {
+            return defaultMs;
+        }
+    }
+}
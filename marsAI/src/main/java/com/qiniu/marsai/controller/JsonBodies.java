@@ -0,0 +1,96 @@
+package com.qiniu.marsai.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.qiniu.marsai.deadline.DeadlineExceededException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 控制器请求体和小响应体的JSON读写
+ * 用流式解析器只读取需要的字段，不构建DOM树；兼容客户端发来的单引号、无引号字段名等宽松写法
+ */
+public final class JsonBodies {
+
+    /**
+     * 通用的错误响应
+     */
+    public static final String ERROR = "{\"msg\":\"err\"}";
+
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES)
+            .enable(JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES)
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .build();
+
+    private JsonBodies() {
+    }
+
+    /**
+     * 读取请求体中的text字段
+     * @param body 请求体
+     * @return text的值
+     * @throws IllegalArgumentException 请求体不是JSON对象或没有text字段
+     */
+    public static String readText(String body) {
+        if (body == null || body.isBlank()) {
+            throw new IllegalArgumentException("请求体为空");
+        }
+        try (JsonParser parser = FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("请求体不是JSON对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("text".equals(name) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("请求体格式错误: " + e.getMessage(), e);
+        }
+        throw new IllegalArgumentException("请求体缺少text字段");
+    }
+
+    /**
+     * 超过截止时间时的响应体：{"msg":"timeout","stage":阶段,"budgetMs":预算}
+     */
+    public static String timeout(DeadlineExceededException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("msg", "timeout");
+        body.put("stage", e.getStage());
+        body.put("budgetMs", e.getBudgetMs());
+        return write(body);
+    }
+
+    /**
+     * 把只含字符串和数字的扁平键值对写成JSON对象
+     */
+    public static String write(Map<String, ?> fields) {
+        StringWriter out = new StringWriter(64);
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, ?> field : fields.entrySet()) {
+                Object value = field.getValue();
+                if (value instanceof Number number) {
+                    generator.writeFieldName(field.getKey());
+                    generator.writeNumber(number.toString());
+                } else {
+                    generator.writeStringField(field.getKey(), String.valueOf(value));
+                }
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+}
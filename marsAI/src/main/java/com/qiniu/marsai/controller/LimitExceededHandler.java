@@ -0,0 +1,34 @@
+package com.qiniu.marsai.controller;
+
+import com.qiniu.marsai.limit.LimitExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 上游并发已满时返回429和Retry-After，客户端稍后重试，而不是等到超时
+ */
+@Slf4j
+@RestControllerAdvice
+public class LimitExceededHandler {
+
+    @ExceptionHandler(LimitExceededException.class)
+    public ResponseEntity<String> handle(LimitExceededException e) {
+        log.warn("请求被限流: {}", e.getMessage());
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("msg", "busy");
+        body.put("resource", e.getResource());
+        body.put("retryAfter", e.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(JsonBodies.write(body));
+    }
+}
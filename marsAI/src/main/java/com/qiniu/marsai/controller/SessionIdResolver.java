@@ -0,0 +1,47 @@
+package com.qiniu.marsai.controller;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * 会话ID解析
+ * 优先读取请求头 X-Session-Id，其次读取Cookie MARSAI_SESSION，都没有时生成新的会话ID并回写给客户端
+ */
+@Component
+public class SessionIdResolver {
+
+    public static final String SESSION_HEADER = "X-Session-Id";
+    public static final String SESSION_COOKIE = "MARSAI_SESSION";
+
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9_-]{8,64}");
+
+    public String resolve(HttpServletRequest request, HttpServletResponse response) {
+        String sessionId = request.getHeader(SESSION_HEADER);
+        if (!isValid(sessionId) && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (SESSION_COOKIE.equals(cookie.getName())) {
+                    sessionId = cookie.getValue();
+                    break;
+                }
+            }
+        }
+        if (!isValid(sessionId)) {
+            sessionId = UUID.randomUUID().toString();
+            Cookie cookie = new Cookie(SESSION_COOKIE, sessionId);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        response.setHeader(SESSION_HEADER, sessionId);
+        return sessionId;
+    }
+
+    public static boolean isValid(String sessionId) {
+        return sessionId != null && VALID_ID.matcher(sessionId).matches();
+    }
+}
@@ -0,0 +1,66 @@
+package com.qiniu.marsai.deadline;
+
+import java.time.Duration;
+
+/**
+ * 一次请求的截止时间
+ * 由客户端的X-Request-Deadline-Ms或服务端默认值确定，各阶段（转写、大模型、工具）只能使用剩余的时间
+ */
+public final class Deadline {
+
+    private final long budgetMs;
+    private final long expiresAtNanos;
+
+    private Deadline(long budgetMs) {
+        this.budgetMs = budgetMs;
+        this.expiresAtNanos = System.nanoTime() + budgetMs * 1_000_000;
+    }
+
+    /**
+     * @param budgetMs 从现在起可用的毫秒数
+     */
+    public static Deadline after(long budgetMs) {
+        return new Deadline(Math.max(0, budgetMs));
+    }
+
+    /**
+     * 总预算（毫秒）
+     */
+    public long budgetMs() {
+        return budgetMs;
+    }
+
+    /**
+     * 剩余毫秒数，已过期时为0
+     */
+    public long remainingMillis() {
+        return Math.max(0, (expiresAtNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 已过期时抛出异常
+     * @param stage 当前阶段，写入异常
+     * @throws DeadlineExceededException 已过期
+     */
+    public void check(String stage) {
+        if (isExpired()) {
+            throw new DeadlineExceededException(stage, budgetMs);
+        }
+    }
+
+    /**
+     * 单次调用的超时时间：不超过剩余时间
+     * @param timeout 该调用自身的超时
+     * @param stage 当前阶段
+     * @throws DeadlineExceededException 已过期
+     */
+    public Duration cap(Duration timeout, String stage) {
+        check(stage);
+        long remaining = Math.max(1, remainingMillis());
+        return timeout.toMillis() <= remaining ? timeout : Duration.ofMillis(remaining);
+    }
+}
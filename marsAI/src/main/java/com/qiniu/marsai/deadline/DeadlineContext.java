@@ -0,0 +1,136 @@
+package com.qiniu.marsai.deadline;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 当前线程的请求截止时间
+ * 请求线程由DeadlineFilter绑定；切换到其它线程执行的任务需要用wrap带上截止时间。
+ * 没有绑定截止时间时各方法不做限制
+ */
+public final class DeadlineContext {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private DeadlineContext() {
+    }
+
+    /**
+     * @return 当前线程的截止时间，没有时返回null
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 绑定截止时间
+     * @return 之前绑定的截止时间，用于restore
+     */
+    public static Deadline bind(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        return previous;
+    }
+
+    public static void restore(Deadline previous) {
+        bind(previous);
+    }
+
+    /**
+     * 在指定截止时间下执行
+     */
+    public static <T> T call(Deadline deadline, Supplier<T> call) {
+        Deadline previous = bind(deadline);
+        try {
+            return call.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 已过期时抛出DeadlineExceededException
+     */
+    public static void check(String stage) {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check(stage);
+        }
+    }
+
+    /**
+     * 单次调用的超时时间：不超过当前截止时间的剩余时间
+     */
+    public static Duration cap(Duration timeout, String stage) {
+        Deadline deadline = CURRENT.get();
+        return deadline == null ? timeout : deadline.cap(timeout, stage);
+    }
+
+    /**
+     * 让任务在其它线程执行时使用当前线程的截止时间
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> call(deadline, task);
+    }
+
+    public static Runnable wrap(Runnable task) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> call(deadline, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * 在剩余时间内执行一个不支持超时参数的阻塞调用
+     * 调用放到虚拟线程上执行，超时后中断它并抛出异常，调用方不再等待
+     * @param stage 当前阶段
+     * @throws DeadlineExceededException 已过期或执行超时
+     */
+    public static <T> T callWithin(String stage, Supplier<T> call) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return call.get();
+        }
+        deadline.check(stage);
+        Future<T> future = EXECUTOR.submit(() -> call(deadline, call));
+        try {
+            return future.get(Math.max(1, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new DeadlineExceededException(stage, deadline.budgetMs());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待" + stage + "阶段结果时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.qiniu.marsai.deadline;
+
+/**
+ * 请求在某个阶段用完了截止时间
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private final String stage;
+    private final long budgetMs;
+
+    public DeadlineExceededException(String stage, long budgetMs) {
+        super("请求在" + stage + "阶段超过截止时间（预算" + budgetMs + "ms）");
+        this.stage = stage;
+        this.budgetMs = budgetMs;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getBudgetMs() {
+        return budgetMs;
+    }
+
+    /**
+     * 在异常链中查找超时异常，大模型和工具调用的异常可能被框架包装
+     * @return 找不到时返回null
+     */
+    public static DeadlineExceededException find(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof DeadlineExceededException exceeded) {
+                return exceeded;
+            }
+            if (e.getCause() == e) {
+                break;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,164 @@
+package com.qiniu.marsai.geo;
+
+import com.qiniu.marsai.service.QueryNormalizer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 生成 {@link Gazetteer} 使用的地名索引
+ * TSV每行：名称、别名（|分隔，可为空）、类型、经度、纬度；#开头为注释。
+ * 名称和别名按 {@link QueryNormalizer} 归一化后作为检索键，"上海市"这类名称自动增加去掉"市/省"的别名；
+ * 同一个键出现多次时以后出现的为准，便于用自定义数据覆盖内置数据。
+ * 用法：java -cp MarsAI-0.0.1-SNAPSHOT-exec.jar -Dloader.main=com.qiniu.marsai.geo.GazetteerWriter
+ *     org.springframework.boot.loader.launch.PropertiesLauncher places.tsv [more.tsv...] gazetteer.idx
+ */
+public final class GazetteerWriter {
+
+    private GazetteerWriter() {
+    }
+
+    /**
+     * 一个地点
+     */
+    public record Place(String name, List<String> aliases, String kind, double longitude, double latitude) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: GazetteerWriter <places.tsv>... <输出索引文件>");
+            System.exit(1);
+        }
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < args.length - 1; i++) {
+            try (Reader reader = Files.newBufferedReader(Path.of(args[i]), StandardCharsets.UTF_8)) {
+                places.addAll(readTsv(reader));
+            }
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Path.of(args[args.length - 1])))) {
+            write(places, out);
+        }
+        System.out.println("已写入" + places.size() + "个地点: " + args[args.length - 1]);
+    }
+
+    public static List<Place> readTsv(Reader source) throws IOException {
+        List<Place> places = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 5) {
+                throw new IOException("第" + lineNumber + "行格式错误: " + line);
+            }
+            List<String> aliases = fields[1].isBlank() ? List.of() : Arrays.asList(fields[1].trim().split("\\|"));
+            try {
+                places.add(new Place(fields[0].trim(), aliases, fields[2].trim(),
+                        Double.parseDouble(fields[3].trim()), Double.parseDouble(fields[4].trim())));
+            } catch (NumberFormatException e) {
+                throw new IOException("第" + lineNumber + "行坐标错误: " + line);
+            }
+        }
+        return places;
+    }
+
+    public static byte[] toBytes(List<Place> places) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(places, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 写出索引：检索键按UTF-8字节序排序，坐标存为整数数组
+     */
+    public static void write(List<Place> places, OutputStream output) throws IOException {
+        // 检索键 -> 地点序号，按无符号字节序排序以便二分查找时直接比较字节
+        Map<byte[], Integer> keys = new TreeMap<>(Arrays::compareUnsigned);
+        for (int id = 0; id < places.size(); id++) {
+            Place place = places.get(id);
+            List<String> names = new ArrayList<>();
+            names.add(place.name());
+            names.addAll(place.aliases());
+            for (String name : names) {
+                String key = QueryNormalizer.normalize(name);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                keys.put(key.getBytes(StandardCharsets.UTF_8), id);
+                if (key.length() > 2 && (key.endsWith("市") || key.endsWith("省"))) {
+                    keys.putIfAbsent(key.substring(0, key.length() - 1).getBytes(StandardCharsets.UTF_8), id);
+                }
+            }
+        }
+
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        ByteArrayOutputStream blob = new ByteArrayOutputStream();
+        int[] keyOffsets = new int[keys.size()];
+        int index = 0;
+        for (byte[] key : keys.keySet()) {
+            keyOffsets[index++] = blob.size();
+            blob.write(key);
+        }
+        int[] nameOffsets = new int[places.size()];
+        int[] kindOffsets = new int[places.size()];
+        for (int id = 0; id < places.size(); id++) {
+            nameOffsets[id] = intern(strings, blob, places.get(id).name());
+            kindOffsets[id] = intern(strings, blob, places.get(id).kind());
+        }
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(Gazetteer.MAGIC);
+        out.writeInt(Gazetteer.VERSION);
+        out.writeInt(keys.size());
+        out.writeInt(places.size());
+        index = 0;
+        for (Map.Entry<byte[], Integer> key : keys.entrySet()) {
+            out.writeInt(keyOffsets[index++]);
+            out.writeInt(key.getKey().length);
+            out.writeInt(key.getValue());
+        }
+        for (int id = 0; id < places.size(); id++) {
+            Place place = places.get(id);
+            out.writeInt((int) Math.round(place.longitude() * 1e6));
+            out.writeInt((int) Math.round(place.latitude() * 1e6));
+            out.writeInt(nameOffsets[id]);
+            out.writeInt(kindOffsets[id]);
+        }
+        blob.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * 字符串以长度前缀存储，相同字符串只存一份
+     */
+    private static int intern(Map<String, Integer> strings, ByteArrayOutputStream blob, String value) throws IOException {
+        Integer offset = strings.get(value);
+        if (offset == null) {
+            offset = blob.size();
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            blob.write(bytes.length >>> 8);
+            blob.write(bytes.length);
+            blob.write(bytes);
+            strings.put(value, offset);
+        }
+        return offset;
+    }
+}
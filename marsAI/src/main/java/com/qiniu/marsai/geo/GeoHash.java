@@ -0,0 +1,64 @@
+package com.qiniu.marsai.geo;
+
+/**
+ * GeoHash编码
+ * 把经纬度交替二分为base32字符串，前缀相同的点落在同一网格中；精度7约为150米见方，用于把相近的坐标归到同一个缓存键
+ */
+public final class GeoHash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+    }
+
+    /**
+     * @param longitude 经度
+     * @param latitude 纬度
+     * @param precision 字符数，1到12
+     * @return GeoHash字符串
+     */
+    public static String encode(double longitude, double latitude, int precision) {
+        if (precision < 1 || precision > 12) {
+            throw new IllegalArgumentException("GeoHash精度应在1到12之间: " + precision);
+        }
+        double minLng = -180, maxLng = 180;
+        double minLat = -90, maxLat = 90;
+        char[] hash = new char[precision];
+        boolean even = true;
+        int bit = 0;
+        int ch = 0;
+        int length = 0;
+        while (length < precision) {
+            if (even) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch <<= 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch <<= 1;
+                    maxLat = mid;
+                }
+            }
+            even = !even;
+            if (++bit == 5) {
+                hash[length++] = BASE32[ch];
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return new String(hash);
+    }
+
+    public static String encode(GeoPoint point, int precision) {
+        return encode(point.longitude(), point.latitude(), precision);
+    }
+}
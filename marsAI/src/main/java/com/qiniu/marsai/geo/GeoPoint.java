@@ -0,0 +1,44 @@
+package com.qiniu.marsai.geo;
+
+/**
+ * 经纬度坐标（GCJ-02，与高德一致）
+ * @param longitude 经度
+ * @param latitude 纬度
+ */
+public record GeoPoint(double longitude, double latitude) {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /**
+     * 球面距离（公里）
+     */
+    public double distanceKm(GeoPoint other) {
+        double lat1 = Math.toRadians(latitude);
+        double lat2 = Math.toRadians(other.latitude);
+        double dLat = lat2 - lat1;
+        double dLng = Math.toRadians(other.longitude - longitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * 解析高德格式的 "经度,纬度"
+     * @return 坐标，格式错误时返回null
+     */
+    public static GeoPoint parse(String location) {
+        if (location == null) {
+            return null;
+        }
+        int comma = location.indexOf(',');
+        if (comma <= 0) {
+            return null;
+        }
+        try {
+            return new GeoPoint(Double.parseDouble(location.substring(0, comma).trim()),
+                    Double.parseDouble(location.substring(comma + 1).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.qiniu.marsai.geo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qiniu.marsai.mcp.CachingToolProvider;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 地名地理编码
+ * 先查本地地名库，查不到再通过带缓存的MCP工具 maps_geo 解析，供不经过大模型的快速路径使用
+ */
+@Slf4j
+@Component
+public class Geocoder {
+
+    private static final String GEO_TOOL = "maps_geo";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 多个候选结果都在这个范围内时视为同一地点
+     */
+    private static final double SAME_PLACE_KM = 30;
+
+    @Resource
+    private CachingToolProvider cachingMcpToolProvider;
+
+    @Resource
+    private Gazetteer gazetteer;
+
+    /**
+     * 地理编码结果
+     * @param name 查询的地名
+     * @param point 坐标
+     * @param confidence 置信度，候选结果分散在多地时较低
+     */
+    public record Match(String name, GeoPoint point, double confidence) {
+    }
+
+    /**
+     * 解析地名
+     * @param name 地名
+     * @param memoryId 会话ID，工具调用事件按会话分发
+     * @return 结果，工具不可用或没有结果时返回null
+     */
+    public Match geocode(String name, Object memoryId) {
+        Gazetteer.Place place = gazetteer.lookup(name);
+        if (place != null) {
+            return new Match(name, place.point(), 0.95);
+        }
+        ToolExecutor executor = geoExecutor(memoryId);
+        if (executor == null) {
+            return null;
+        }
+        try {
+            String arguments = MAPPER.writeValueAsString(Map.of("address", name));
+            String result = executor.execute(ToolExecutionRequest.builder()
+                    .name(GEO_TOOL)
+                    .arguments(arguments)
+                    .build(), memoryId);
+            return parse(name, result);
+        } catch (Exception e) {
+            log.warn("地理编码{}失败: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private ToolExecutor geoExecutor(Object memoryId) {
+        Map<ToolSpecification, ToolExecutor> tools = cachingMcpToolProvider
+                .provideTools(new ToolProviderRequest(memoryId, UserMessage.from(GEO_TOOL)))
+                .tools();
+        for (Map.Entry<ToolSpecification, ToolExecutor> tool : tools.entrySet()) {
+            if (GEO_TOOL.equals(tool.getKey().name())) {
+                return tool.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析maps_geo的返回：{"results":[{"location":"经度,纬度", ...}]}
+     */
+    static Match parse(String name, String result) {
+        if (result == null || result.isBlank()) {
+            return null;
+        }
+        JsonNode results;
+        try {
+            results = MAPPER.readTree(result).path("results");
+        } catch (Exception e) {
+            return null;
+        }
+        List<GeoPoint> points = new ArrayList<>();
+        for (JsonNode item : results) {
+            GeoPoint point = GeoPoint.parse(item.path("location").asText(null));
+            if (point != null) {
+                points.add(point);
+            }
+        }
+        if (points.isEmpty()) {
+            return null;
+        }
+        GeoPoint first = points.get(0);
+        boolean scattered = points.stream().anyMatch(point -> point.distanceKm(first) > SAME_PLACE_KM);
+        return new Match(name, first, scattered ? 0.5 : 0.95);
+    }
+}
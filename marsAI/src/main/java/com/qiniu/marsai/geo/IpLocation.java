@@ -0,0 +1,17 @@
+package com.qiniu.marsai.geo;
+
+/**
+ * IP段对应的位置
+ * @param name 地区名称，如"上海市"
+ * @param longitude 经度
+ * @param latitude 纬度
+ */
+public record IpLocation(String name, double longitude, double latitude) {
+
+    /**
+     * 作为缓存键的一部分：同一地区、同一坐标的请求共享缓存
+     */
+    public String key() {
+        return name + "@" + String.format("%.4f,%.4f", longitude, latitude);
+    }
+}
@@ -0,0 +1,147 @@
+package com.qiniu.marsai.geo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 离线IP段位置索引
+ * 启动时把索引文件映射到内存，按起始IP二分查找，不需要调用外部服务。
+ * 文件格式（大端）：
+ * <pre>
+ * 头部   magic(4) version(4) count(4) stringsOffset(4)
+ * 记录   start(4) end(4) 经度*1e6(4) 纬度*1e6(4) 名称偏移(4) 名称长度(4)，按start升序
+ * 字符串 UTF-8名称
+ * </pre>
+ * 索引文件由 {@link IpLocationIndexWriter} 从TSV生成；未配置或文件不存在时查询总是返回null
+ */
+@Slf4j
+@Component
+public class IpLocationIndex {
+
+    static final int MAGIC = 0x4D495058;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 24;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int stringsOffset;
+
+    public IpLocationIndex(@Value("${ip-location.index-path:}") String indexPath) {
+        ByteBuffer mapped = null;
+        if (indexPath != null && !indexPath.isBlank() && Files.isReadable(Path.of(indexPath))) {
+            try {
+                mapped = map(Path.of(indexPath));
+                log.info("已加载IP位置索引{}，共{}条", indexPath, mapped.getInt(8));
+            } catch (IOException e) {
+                log.error("IP位置索引加载失败，出发地将由模型通过工具查询: {}", e.getMessage());
+            }
+        } else if (indexPath != null && !indexPath.isBlank()) {
+            log.warn("IP位置索引{}不存在，出发地将由模型通过工具查询", indexPath);
+        }
+        this.buffer = mapped;
+        this.count = mapped == null ? 0 : mapped.getInt(8);
+        this.stringsOffset = mapped == null ? 0 : mapped.getInt(12);
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // 映射在通道关闭后仍然有效
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("不是有效的IP位置索引: " + path);
+            }
+            long expected = HEADER_BYTES + (long) mapped.getInt(8) * RECORD_BYTES;
+            if (mapped.getInt(12) != expected || expected > channel.size()) {
+                throw new IOException("IP位置索引已损坏: " + path);
+            }
+            return mapped;
+        }
+    }
+
+    public boolean isLoaded() {
+        return buffer != null;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 查询IP所在位置
+     * @param ip IPv4地址（也接受::ffff:前缀的映射地址）
+     * @return 位置，索引未加载、不是IPv4或不在任何IP段内时返回null
+     */
+    public IpLocation lookup(String ip) {
+        if (buffer == null || ip == null) {
+            return null;
+        }
+        long address = parseIpv4(ip.startsWith("::ffff:") ? ip.substring(7) : ip);
+        if (address < 0) {
+            return null;
+        }
+        // 找到最后一个start<=address的记录
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (Integer.toUnsignedLong(buffer.getInt(recordAt(mid))) <= address) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (found < 0) {
+            return null;
+        }
+        int record = recordAt(found);
+        if (Integer.toUnsignedLong(buffer.getInt(record + 4)) < address) {
+            return null;
+        }
+        byte[] name = new byte[buffer.getInt(record + 20)];
+        buffer.get(stringsOffset + buffer.getInt(record + 16), name);
+        return new IpLocation(new String(name, StandardCharsets.UTF_8),
+                buffer.getInt(record + 8) / 1e6, buffer.getInt(record + 12) / 1e6);
+    }
+
+    private static int recordAt(int index) {
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+
+    /**
+     * 解析点分十进制IPv4
+     * @return 无符号32位整数，格式不正确时返回-1
+     */
+    public static long parseIpv4(String ip) {
+        long value = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                value = value << 8 | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        return dots == 3 && octet >= 0 ? value << 8 | octet : -1;
+    }
+}
@@ -0,0 +1,110 @@
+package com.qiniu.marsai.geo;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从TSV生成 {@link IpLocationIndex} 使用的索引文件
+ * 每行：起始IP、结束IP、地区名称、经度、纬度，以制表符分隔；#开头为注释。
+ * 用法：java -cp MarsAI-0.0.1-SNAPSHOT-exec.jar -Dloader.main=com.qiniu.marsai.geo.IpLocationIndexWriter
+ *     org.springframework.boot.loader.launch.PropertiesLauncher ranges.tsv ip-location.idx
+ */
+public final class IpLocationIndexWriter {
+
+    private IpLocationIndexWriter() {
+    }
+
+    /**
+     * 一条IP段
+     */
+    public record Range(long start, long end, String name, double longitude, double latitude) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("用法: IpLocationIndexWriter <ranges.tsv> <输出索引文件>");
+            System.exit(1);
+        }
+        List<Range> ranges = readTsv(Path.of(args[0]));
+        write(ranges, Path.of(args[1]));
+        System.out.println("已写入" + ranges.size() + "条IP段: " + args[1]);
+    }
+
+    public static List<Range> readTsv(Path tsv) throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(tsv, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                long start = fields.length == 5 ? IpLocationIndex.parseIpv4(fields[0].trim()) : -1;
+                long end = fields.length == 5 ? IpLocationIndex.parseIpv4(fields[1].trim()) : -1;
+                if (start < 0 || end < start) {
+                    throw new IOException("第" + lineNumber + "行格式错误: " + line);
+                }
+                ranges.add(new Range(start, end, fields[2].trim(),
+                        Double.parseDouble(fields[3].trim()), Double.parseDouble(fields[4].trim())));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 按起始IP排序后写出索引，相同的地区名称只保存一份
+     * @throws IllegalArgumentException IP段有重叠
+     */
+    public static void write(List<Range> ranges, Path output) throws IOException {
+        List<Range> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(Range::start));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).start() <= sorted.get(i - 1).end()) {
+                throw new IllegalArgumentException("IP段重叠: " + sorted.get(i - 1) + " / " + sorted.get(i));
+            }
+        }
+
+        Map<String, int[]> names = new LinkedHashMap<>();
+        int stringsLength = 0;
+        for (Range range : sorted) {
+            if (!names.containsKey(range.name())) {
+                int length = range.name().getBytes(StandardCharsets.UTF_8).length;
+                names.put(range.name(), new int[]{stringsLength, length});
+                stringsLength += length;
+            }
+        }
+
+        try (OutputStream file = Files.newOutputStream(output);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(IpLocationIndex.MAGIC);
+            out.writeInt(IpLocationIndex.VERSION);
+            out.writeInt(sorted.size());
+            out.writeInt(IpLocationIndex.HEADER_BYTES + sorted.size() * IpLocationIndex.RECORD_BYTES);
+            for (Range range : sorted) {
+                int[] name = names.get(range.name());
+                out.writeInt((int) range.start());
+                out.writeInt((int) range.end());
+                out.writeInt((int) Math.round(range.longitude() * 1e6));
+                out.writeInt((int) Math.round(range.latitude() * 1e6));
+                out.writeInt(name[0]);
+                out.writeInt(name[1]);
+            }
+            for (String name : names.keySet()) {
+                out.write(name.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
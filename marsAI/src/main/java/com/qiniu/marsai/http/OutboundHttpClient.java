@@ -0,0 +1,234 @@
+package com.qiniu.marsai.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统一的出站HTTP客户端
+ * 所有第三方服务（讯飞、公网IP查询、回调等）共用一个java.net.http.HttpClient：
+ * 连接保活复用、服务端支持时走HTTP/2、共用SSLContext以复用TLS会话；
+ * 按主机限制并发请求数，可在启动时预先建立连接，并记录请求耗时和在途请求数
+ */
+@Slf4j
+@Component
+public class OutboundHttpClient {
+
+    static {
+        // 连接池参数只在HttpClient实现类加载时读取一次，必须在创建客户端之前设置
+        setDefaultProperty("jdk.httpclient.keepalive.timeout", "300");
+        setDefaultProperty("jdk.httpclient.connectionPoolSize", "64");
+    }
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36";
+
+    private final MeterRegistry registry;
+    private final int maxPerHost;
+    private final Duration connectTimeout;
+    private final List<String> preconnectUrls;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final HttpClient noRedirectClient;
+    private final Map<String, HostLimit> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * 单个主机的并发限制
+     */
+    private static class HostLimit {
+        final Semaphore permits;
+        final int max;
+
+        HostLimit(int max) {
+            this.max = max;
+            this.permits = new Semaphore(max);
+        }
+
+        int inFlight() {
+            return max - permits.availablePermits();
+        }
+    }
+
+    public OutboundHttpClient(MeterRegistry registry,
+                              @Value("${http.outbound.max-per-host:16}") int maxPerHost,
+                              @Value("${http.outbound.connect-timeout-ms:5000}") long connectTimeoutMs,
+                              @Value("${http.outbound.preconnect-urls:}") List<String> preconnectUrls) {
+        this.registry = registry;
+        this.maxPerHost = maxPerHost;
+        this.connectTimeout = Duration.ofMillis(connectTimeoutMs);
+        this.preconnectUrls = preconnectUrls;
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "outbound-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        // 目标地址由客户端提供的请求（如任务回调）不跟随重定向，避免被重定向到内网地址
+        this.noRedirectClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * 预先建立连接，首个真实请求不再承担TCP和TLS握手
+     */
+    @PostConstruct
+    public void preconnect() {
+        for (String url : preconnectUrls) {
+            if (url == null || url.isBlank()) {
+                continue;
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url.trim()))
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                    .timeout(connectTimeout)
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        if (e != null) {
+                            log.warn("预连接{}失败: {}", url, e.getMessage());
+                        } else {
+                            log.info("预连接{}完成，协议{}", url, response.version());
+                        }
+                    });
+        }
+    }
+
+    /**
+     * GET请求
+     * @param url 地址
+     * @param timeout 整个请求的超时时间
+     * @return 响应
+     */
+    public HttpResponse<String> get(String url, Duration timeout) throws IOException {
+        return send(HttpRequest.newBuilder(URI.create(url)).GET().timeout(timeout));
+    }
+
+    /**
+     * POST请求
+     * @param url 地址
+     * @param headers 请求头
+     * @param body 请求体
+     * @param timeout 整个请求的超时时间
+     * @return 响应
+     */
+    public HttpResponse<String> post(String url, Map<String, String> headers, byte[] body, Duration timeout) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .timeout(timeout);
+        headers.forEach(builder::header);
+        return send(builder);
+    }
+
+    /**
+     * 不跟随重定向的POST请求，用于客户端指定的地址
+     * @param url 地址
+     * @param headers 请求头
+     * @param body 请求体
+     * @param timeout 整个请求的超时时间
+     * @return 响应，3xx原样返回
+     */
+    public HttpResponse<String> postWithoutRedirects(String url, Map<String, String> headers, byte[] body,
+                                                     Duration timeout) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .timeout(timeout);
+        headers.forEach(builder::header);
+        return send(builder, noRedirectClient);
+    }
+
+    /**
+     * 发送请求，受目标主机的并发上限约束
+     * @throws IOException 网络异常，或等待并发许可超时
+     */
+    public HttpResponse<String> send(HttpRequest.Builder builder) throws IOException {
+        return send(builder, client);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder builder, HttpClient client) throws IOException {
+        HttpRequest request = builder.setHeader("User-Agent", USER_AGENT).build();
+        String host = request.uri().getHost() == null ? "unknown" : request.uri().getHost();
+        HostLimit limit = hostLimit(host);
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            if (!limit.permits.tryAcquire(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                outcome = "rejected";
+                throw new IOException("到" + host + "的并发请求已达上限" + maxPerHost);
+            }
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+                outcome = String.valueOf(response.statusCode());
+                return response;
+            } finally {
+                limit.permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("请求被中断", e);
+        } finally {
+            Timer.builder("marsai.http.client.requests")
+                    .description("出站HTTP请求耗时")
+                    .tag("host", host)
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 复用同一个客户端创建WebSocket连接
+     */
+    public WebSocket.Builder newWebSocketBuilder() {
+        return client.newWebSocketBuilder().connectTimeout(connectTimeout);
+    }
+
+    private HostLimit hostLimit(String host) {
+        return hosts.computeIfAbsent(host, h -> {
+            HostLimit limit = new HostLimit(maxPerHost);
+            Gauge.builder("marsai.http.client.inflight", limit, HostLimit::inFlight)
+                    .description("出站HTTP在途请求数")
+                    .tag("host", h)
+                    .register(registry);
+            return limit;
+        });
+    }
+
+    private static void setDefaultProperty(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
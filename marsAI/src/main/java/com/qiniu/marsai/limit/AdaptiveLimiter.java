@@ -0,0 +1,216 @@
+package com.qiniu.marsai.limit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 按延迟自适应的并发上限（梯度算法）
+ * 长期平均延迟与近期延迟之比作为梯度：近期延迟上升说明上游开始排队，上限按比例收缩；
+ * 延迟平稳时每次增加约sqrt(limit)的余量去试探更高的并发。请求失败或超时视为过载，上限乘以0.9。
+ * 在途请求达到上限时立即拒绝，不排队等待
+ */
+public class AdaptiveLimiter {
+
+    /**
+     * 长期平均延迟的平滑系数，约相当于最近600个样本
+     */
+    private static final double LONG_ALPHA = 2.0 / 601;
+
+    /**
+     * 近期延迟的平滑系数，约相当于最近10个样本
+     */
+    private static final double SHORT_ALPHA = 2.0 / 11;
+
+    /**
+     * 允许的延迟波动，近期延迟不超过长期平均的这个倍数时不收缩
+     */
+    private static final double TOLERANCE = 1.5;
+
+    private static final double SMOOTHING = 0.2;
+
+    private static final double BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejections = new AtomicLong();
+
+    private volatile double limit;
+    private double longRttNs;
+    private double shortRttNs;
+
+    /**
+     * 一次获准的调用，结束时必须调用其中一个方法
+     */
+    public final class Permit {
+        private final long startNs = System.nanoTime();
+        private final int inFlightAtStart;
+        private boolean released;
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * 调用成功，记录延迟样本
+         */
+        public void success() {
+            if (release()) {
+                onSample(System.nanoTime() - startNs, inFlightAtStart);
+            }
+        }
+
+        /**
+         * 调用失败或超时，视为过载
+         */
+        public void dropped() {
+            if (release()) {
+                onDropped();
+            }
+        }
+
+        /**
+         * 结果与上游负载无关（如被合并、参数错误），只归还许可
+         */
+        public void ignore() {
+            release();
+        }
+
+        private synchronized boolean release() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            inFlight.decrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * @param name 资源名称
+     * @param initialLimit 初始上限
+     * @param minLimit 最小上限
+     * @param maxLimit 最大上限
+     */
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * 尝试获取许可
+     * @return 许可，已达上限时返回null
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejections.incrementAndGet();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1);
+            }
+        }
+    }
+
+    /**
+     * 获取许可
+     * @throws LimitExceededException 已达上限
+     */
+    public Permit acquire() {
+        Permit permit = tryAcquire();
+        if (permit == null) {
+            throw new LimitExceededException(name, retryAfterSeconds());
+        }
+        return permit;
+    }
+
+    /**
+     * 在许可内执行调用，异常视为过载
+     * @throws LimitExceededException 已达上限
+     */
+    public <T> T call(Supplier<T> operation) {
+        Permit permit = acquire();
+        try {
+            T result = operation.get();
+            permit.success();
+            return result;
+        } catch (RuntimeException | Error e) {
+            permit.dropped();
+            throw e;
+        }
+    }
+
+    synchronized void onSample(long rttNs, int inFlightAtStart) {
+        if (longRttNs == 0) {
+            longRttNs = rttNs;
+            shortRttNs = rttNs;
+            return;
+        }
+        shortRttNs += (rttNs - shortRttNs) * SHORT_ALPHA;
+        longRttNs += (rttNs - longRttNs) * LONG_ALPHA;
+        // 延迟长期偏低后，长期平均会明显高于近期，让它较快回落，避免上限长时间偏高
+        if (longRttNs / shortRttNs > 2) {
+            longRttNs *= 0.95;
+        }
+        // 并发远低于上限时样本不能说明上游能否承受更高并发，不调整
+        if (inFlightAtStart < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNs / shortRttNs));
+        double target = limit * gradient + Math.sqrt(limit);
+        setLimit(limit * (1 - SMOOTHING) + target * SMOOTHING);
+    }
+
+    private synchronized void onDropped() {
+        setLimit(limit * BACKOFF);
+    }
+
+    private void setLimit(double value) {
+        limit = Math.min(maxLimit, Math.max(minLimit, value));
+    }
+
+    /**
+     * 建议客户端的重试间隔：按近期平均延迟估计，至少1秒
+     */
+    public synchronized long retryAfterSeconds() {
+        return Math.max(1, (long) Math.ceil(shortRttNs / 1e9));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * 当前状态
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("limit", (int) limit);
+        stats.put("inFlight", inFlight.get());
+        stats.put("rejections", rejections.get());
+        stats.put("shortRttMs", shortRttNs / 1e6);
+        stats.put("longRttMs", longRttNs / 1e6);
+        return stats;
+    }
+}
@@ -0,0 +1,109 @@
+package com.qiniu.marsai.limit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 上游调用的并发限制器：llm（大模型）、mcp（地图工具）、asr（讯飞转写）各一个
+ * 上限、在途数和拒绝次数注册为指标，可用于自动扩缩容
+ */
+@Component
+public class ConcurrencyLimits {
+
+    public static final String LLM = "llm";
+    public static final String MCP = "mcp";
+    public static final String ASR = "asr";
+
+    private static final Bounds DEFAULT_BOUNDS = new Bounds(20, 1, 200);
+
+    private final boolean enabled;
+    private final Map<String, Bounds> bounds;
+    private final MeterRegistry registry;
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * 单个限制器的上限范围
+     * @param initial 初始上限
+     * @param min 最小上限
+     * @param max 最大上限
+     */
+    public record Bounds(int initial, int min, int max) {
+
+        /**
+         * 解析形如 "llm=20/2/200,mcp=8/1/64" 的配置
+         */
+        public static Map<String, Bounds> parse(String spec) {
+            Map<String, Bounds> bounds = new LinkedHashMap<>();
+            if (spec == null || spec.isBlank()) {
+                return bounds;
+            }
+            for (String item : spec.split(",")) {
+                String[] nameAndValue = item.trim().split("=", 2);
+                if (nameAndValue.length != 2) {
+                    continue;
+                }
+                String[] values = nameAndValue[1].trim().split("/");
+                int initial = Integer.parseInt(values[0].trim());
+                int min = values.length > 1 ? Integer.parseInt(values[1].trim()) : 1;
+                int max = values.length > 2 ? Integer.parseInt(values[2].trim()) : initial * 10;
+                bounds.put(nameAndValue[0].trim(), new Bounds(initial, min, max));
+            }
+            return bounds;
+        }
+    }
+
+    public ConcurrencyLimits(MeterRegistry registry,
+                             @Value("${limits.enabled:true}") boolean enabled,
+                             @Value("${limits.bounds:llm=20/2/200,mcp=8/1/64,asr=10/1/100}") String bounds) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.bounds = Bounds.parse(bounds);
+    }
+
+    /**
+     * 获取指定资源的限制器
+     * @return 未启用限流时返回null
+     */
+    public AdaptiveLimiter get(String name) {
+        if (!enabled) {
+            return null;
+        }
+        return limiters.computeIfAbsent(name, this::create);
+    }
+
+    private AdaptiveLimiter create(String name) {
+        Bounds b = bounds.getOrDefault(name, DEFAULT_BOUNDS);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(name, b.initial(), b.min(), b.max());
+        Gauge.builder("marsai.limit.limit", limiter, AdaptiveLimiter::getLimit)
+                .description("自适应并发上限")
+                .tag("name", name)
+                .register(registry);
+        Gauge.builder("marsai.limit.inflight", limiter, AdaptiveLimiter::getInFlight)
+                .description("限流器内的在途请求数")
+                .tag("name", name)
+                .register(registry);
+        FunctionCounter.builder("marsai.limit.rejections", limiter, AdaptiveLimiter::getRejections)
+                .description("因并发已满被拒绝的请求数")
+                .tag("name", name)
+                .register(registry);
+        return limiter;
+    }
+
+    /**
+     * 各限制器状态
+     */
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        limiters.values().forEach(limiter -> stats.add(limiter.stats()));
+        return stats;
+    }
+}
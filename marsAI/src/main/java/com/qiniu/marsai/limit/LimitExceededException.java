@@ -0,0 +1,40 @@
+package com.qiniu.marsai.limit;
+
+/**
+ * 并发上限已满，请求被快速拒绝
+ */
+public class LimitExceededException extends RuntimeException {
+
+    private final String resource;
+    private final long retryAfterSeconds;
+
+    public LimitExceededException(String resource, long retryAfterSeconds) {
+        super(resource + "并发已达上限，请" + retryAfterSeconds + "秒后重试");
+        this.resource = resource;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * 在异常链中查找限流异常，大模型和工具调用的异常可能被框架包装
+     * @return 找不到时返回null
+     */
+    public static LimitExceededException find(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof LimitExceededException limited) {
+                return limited;
+            }
+            if (e.getCause() == e) {
+                break;
+            }
+        }
+        return null;
+    }
+}
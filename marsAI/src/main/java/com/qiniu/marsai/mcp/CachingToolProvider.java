@@ -0,0 +1,234 @@
+package com.qiniu.marsai.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带缓存的工具提供者
+ * 按工具名配置TTL和容量（如地理编码缓存数天、天气缓存数分钟），
+ * 参数JSON规范化（键排序、去空白）后取SHA-256作为缓存键，同一地址的重复调用直接返回缓存结果。
+ * 同时缓存工具列表，避免每次对话都通过stdio向MCP进程请求tools/list
+ */
+@Slf4j
+public class CachingToolProvider implements ToolProvider {
+
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper();
+
+    private final ToolProvider delegate;
+    private final long toolListTtlMs;
+    private final Map<String, ToolCache> caches = new ConcurrentHashMap<>();
+
+    private volatile Map<ToolSpecification, ToolExecutor> cachedTools;
+    private volatile long toolsLoadedAt;
+
+    /**
+     * 单个工具的缓存策略
+     * @param ttlMs 结果有效期
+     * @param maxEntries 最多缓存的结果数
+     */
+    public record Policy(long ttlMs, int maxEntries) {
+
+        /**
+         * 解析形如 "maps_geo=3d/5000,maps_weather=10m/500" 的策略配置
+         */
+        public static Map<String, Policy> parse(String spec) {
+            Map<String, Policy> policies = new LinkedHashMap<>();
+            if (spec == null || spec.isBlank()) {
+                return policies;
+            }
+            for (String item : spec.split(",")) {
+                String[] nameAndValue = item.trim().split("=", 2);
+                if (nameAndValue.length != 2) {
+                    continue;
+                }
+                String[] ttlAndSize = nameAndValue[1].trim().split("/", 2);
+                long ttlMs = DurationStyle.detectAndParse(ttlAndSize[0].trim()).toMillis();
+                int maxEntries = ttlAndSize.length > 1 ? Integer.parseInt(ttlAndSize[1].trim()) : 1000;
+                policies.put(nameAndValue[0].trim(), new Policy(ttlMs, maxEntries));
+            }
+            return policies;
+        }
+    }
+
+    public CachingToolProvider(ToolProvider delegate, Map<String, Policy> policies, long toolListTtlMs) {
+        this.delegate = delegate;
+        this.toolListTtlMs = toolListTtlMs;
+        policies.forEach((name, policy) -> caches.put(name, new ToolCache(name, policy)));
+    }
+
+    @Override
+    public ToolProviderResult provideTools(ToolProviderRequest request) {
+        if (delegate == null) {
+            return new ToolProviderResult(Map.of());
+        }
+        Map<ToolSpecification, ToolExecutor> tools = cachedTools;
+        if (tools == null || System.currentTimeMillis() - toolsLoadedAt > toolListTtlMs) {
+            ToolProviderResult result = delegate.provideTools(request);
+            tools = new LinkedHashMap<>();
+            if (result != null) {
+                for (Map.Entry<ToolSpecification, ToolExecutor> entry : result.tools().entrySet()) {
+                    ToolCache cache = caches.get(entry.getKey().name());
+                    tools.put(entry.getKey(), cache == null ? entry.getValue() : cache.wrap(entry.getValue()));
+                }
+            }
+            cachedTools = tools;
+            toolsLoadedAt = System.currentTimeMillis();
+        }
+        return new ToolProviderResult(tools);
+    }
+
+    /**
+     * 各工具的缓存统计
+     */
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (ToolCache cache : caches.values()) {
+            stats.add(cache.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * 参数规范化：解析为JSON后按键排序、去掉字符串两端空白，再取SHA-256
+     */
+    static String canonicalKey(String arguments) {
+        String canonical;
+        try {
+            JsonNode node = CANONICAL_MAPPER.readTree(arguments == null || arguments.isBlank() ? "{}" : arguments);
+            canonical = CANONICAL_MAPPER.writeValueAsString(canonicalize(node));
+        } catch (Exception e) {
+            canonical = arguments == null ? "" : arguments.trim();
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            return canonical;
+        }
+    }
+
+    private static JsonNode canonicalize(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode sorted = CANONICAL_MAPPER.createObjectNode();
+            Map<String, JsonNode> fields = new TreeMap<>();
+            node.properties().forEach(field -> fields.put(field.getKey(), canonicalize(field.getValue())));
+            fields.forEach(sorted::set);
+            return sorted;
+        }
+        if (node.isTextual()) {
+            return CANONICAL_MAPPER.getNodeFactory().textNode(node.asText().trim());
+        }
+        return node;
+    }
+
+    /**
+     * 判断工具结果是否为错误，错误结果不缓存
+     */
+    static boolean isError(String result) {
+        return result == null
+                || result.startsWith("There was an error")
+                || result.contains("\"status\":\"0\"");
+    }
+
+    /**
+     * 单个工具的LRU结果缓存
+     */
+    private static class ToolCache {
+
+        private final String toolName;
+        private final Policy policy;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong loadNanos = new AtomicLong();
+
+        private record Entry(String result, long expiresAt) {
+        }
+
+        ToolCache(String toolName, Policy policy) {
+            this.toolName = toolName;
+            this.policy = policy;
+        }
+
+        ToolExecutor wrap(ToolExecutor executor) {
+            return (request, memoryId) -> {
+                String key = canonicalKey(request.arguments());
+                String cached = get(key);
+                if (cached != null) {
+                    hits.incrementAndGet();
+                    return cached;
+                }
+                misses.incrementAndGet();
+                long start = System.nanoTime();
+                String result = executor.execute(request, memoryId);
+                loadNanos.addAndGet(System.nanoTime() - start);
+                if (!isError(result)) {
+                    put(key, result);
+                } else {
+                    log.warn("工具 {} 返回错误结果，不缓存: {}", toolName, request.arguments());
+                }
+                return result;
+            };
+        }
+
+        private synchronized String get(String key) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() < System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.result();
+        }
+
+        private synchronized void put(String key, String result) {
+            entries.put(key, new Entry(result, System.currentTimeMillis() + policy.ttlMs()));
+            Iterator<String> it = entries.keySet().iterator();
+            while (entries.size() > policy.maxEntries() && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long missCount = misses.get();
+            stats.put("tool", toolName);
+            synchronized (this) {
+                stats.put("size", entries.size());
+            }
+            stats.put("maxEntries", policy.maxEntries());
+            stats.put("ttlMs", policy.ttlMs());
+            stats.put("hits", hits.get());
+            stats.put("misses", missCount);
+            stats.put("evictions", evictions.get());
+            stats.put("avgLoadMs", missCount == 0 ? 0.0 : loadNanos.get() / 1_000_000.0 / missCount);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.qiniu.marsai.mcp;
+
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.limit.AdaptiveLimiter;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.mcp.client.McpClient;
+import dev.langchain4j.mcp.client.McpGetPromptResult;
+import dev.langchain4j.mcp.client.McpPrompt;
+import dev.langchain4j.mcp.client.McpReadResourceResult;
+import dev.langchain4j.mcp.client.McpResource;
+import dev.langchain4j.mcp.client.McpResourceTemplate;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * MCP客户端池
+ * 维护N个独立的MCP stdio进程，工具调用分发给在途请求最少的进程；
+ * 定时对每个进程发送ping，崩溃或卡死的进程会被关闭并重新拉起；工具调用受整个池共用的并发限制器约束。
+ * 只有与进程通信失败（进程退出、管道断开）时才立即摘除进程，工具本身返回的错误不影响进程状态。
+ * 各进程的在途请求数、健康状态、延迟和重启次数以slot标签注册为指标
+ */
+@Slf4j
+public class McpClientPool implements McpClient {
+
+    private final String key;
+    private final Function<Integer, McpClient> clientFactory;
+    private final long healthTimeoutMs;
+    private final Slot[] slots;
+    private final ScheduledExecutorService supervisor;
+    private final ExecutorService healthChecks;
+    private final AdaptiveLimiter limiter;
+
+    /**
+     * 池中的单个MCP进程
+     */
+    private static class Slot {
+        final int index;
+        volatile McpClient client;
+        volatile boolean healthy;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong restarts = new AtomicLong();
+        // 指数加权平均延迟（毫秒）
+        volatile double ewmaLatencyMs;
+        volatile long lastLatencyMs;
+        Timer latency;
+
+        Slot(int index) {
+            this.index = index;
+        }
+
+        void recordLatency(long latencyMs) {
+            lastLatencyMs = latencyMs;
+            ewmaLatencyMs = ewmaLatencyMs == 0 ? latencyMs : ewmaLatencyMs * 0.8 + latencyMs * 0.2;
+        }
+    }
+
+    /**
+     * @param key 客户端标识
+     * @param size 进程数量
+     * @param clientFactory 按槽位序号创建MCP客户端（会启动一个新进程）
+     * @param healthIntervalMs 健康检查间隔
+     * @param healthTimeoutMs ping超时时间，超时视为卡死
+     * @param limiter 工具调用的并发限制器，为null时不限流
+     * @param registry 指标注册表
+     */
+    public McpClientPool(String key, int size, Function<Integer, McpClient> clientFactory,
+                         long healthIntervalMs, long healthTimeoutMs, AdaptiveLimiter limiter, MeterRegistry registry) {
+        this.key = key;
+        this.limiter = limiter;
+        this.clientFactory = clientFactory;
+        this.healthTimeoutMs = healthTimeoutMs;
+        this.slots = new Slot[Math.max(1, size)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(i);
+            registerMeters(slots[i], registry);
+            start(slots[i]);
+        }
+        this.supervisor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-pool-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // ping会阻塞在stdio上，放在池自己的线程中执行，不占用公共线程池
+        this.healthChecks = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "mcp-pool-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        supervisor.scheduleWithFixedDelay(this::superviseAll, healthIntervalMs, healthIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void registerMeters(Slot slot, MeterRegistry registry) {
+        String index = String.valueOf(slot.index);
+        Gauge.builder("marsai.mcp.pool.inflight", slot.inFlight, AtomicInteger::get)
+                .description("MCP进程的在途请求数")
+                .tag("slot", index)
+                .register(registry);
+        Gauge.builder("marsai.mcp.pool.healthy", slot, s -> s.healthy ? 1 : 0)
+                .description("MCP进程是否可用，1为可用")
+                .tag("slot", index)
+                .register(registry);
+        Gauge.builder("marsai.mcp.pool.latency.ewma", slot, s -> s.ewmaLatencyMs)
+                .description("MCP进程调用延迟的指数加权平均（毫秒）")
+                .tag("slot", index)
+                .register(registry);
+        FunctionCounter.builder("marsai.mcp.pool.restarts", slot.restarts, AtomicLong::get)
+                .description("MCP进程被重新拉起的次数")
+                .tag("slot", index)
+                .register(registry);
+        slot.latency = Timer.builder("marsai.mcp.pool.latency")
+                .description("MCP进程的调用耗时")
+                .tag("slot", index)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void start(Slot slot) {
+        try {
+            slot.client = clientFactory.apply(slot.index);
+            slot.healthy = true;
+            log.info("MCP进程[{}]启动成功", slot.index);
+        } catch (Exception e) {
+            slot.client = null;
+            slot.healthy = false;
+            log.warn("MCP进程[{}]启动失败: {}", slot.index, e.getMessage());
+        }
+    }
+
+    private void restart(Slot slot) {
+        McpClient old = slot.client;
+        slot.healthy = false;
+        slot.client = null;
+        if (old != null) {
+            try {
+                old.close();
+            } catch (Exception e) {
+                log.warn("关闭MCP进程[{}]失败: {}", slot.index, e.getMessage());
+            }
+        }
+        slot.restarts.incrementAndGet();
+        start(slot);
+    }
+
+    private void superviseAll() {
+        for (Slot slot : slots) {
+            McpClient client = slot.client;
+            if (client == null) {
+                restart(slot);
+                continue;
+            }
+            try {
+                CompletableFuture.runAsync(client::checkHealth, healthChecks).get(healthTimeoutMs, TimeUnit.MILLISECONDS);
+                slot.healthy = true;
+            } catch (Exception e) {
+                log.warn("MCP进程[{}]健康检查失败，重新拉起: {}", slot.index, e.getMessage());
+                restart(slot);
+            }
+        }
+    }
+
+    /**
+     * 选择在途请求最少的健康进程，相同时选择平均延迟更低的
+     */
+    private Slot pick() {
+        Slot best = null;
+        for (Slot slot : slots) {
+            if (!slot.healthy || slot.client == null) {
+                continue;
+            }
+            if (best == null
+                    || slot.inFlight.get() < best.inFlight.get()
+                    || (slot.inFlight.get() == best.inFlight.get() && slot.ewmaLatencyMs < best.ewmaLatencyMs)) {
+                best = slot;
+            }
+        }
+        if (best == null) {
+            throw new IllegalStateException("没有可用的MCP进程");
+        }
+        return best;
+    }
+
+    private <T> T call(Function<McpClient, T> operation) {
+        Slot slot = pick();
+        McpClient client = slot.client;
+        if (client == null) {
+            throw new IllegalStateException("MCP进程[" + slot.index + "]正在重启");
+        }
+        slot.inFlight.incrementAndGet();
+        slot.requests.incrementAndGet();
+        long start = System.currentTimeMillis();
+        try {
+            return operation.apply(client);
+        } catch (RuntimeException e) {
+            slot.errors.incrementAndGet();
+            if (isTransportFailure(e)) {
+                // 进程已退出时立即标记为不可用，由监督线程重新拉起
+                log.warn("MCP进程[{}]通信失败，暂停分发: {}", slot.index, e.getMessage());
+                slot.healthy = false;
+            }
+            throw e;
+        } finally {
+            long latencyMs = System.currentTimeMillis() - start;
+            slot.recordLatency(latencyMs);
+            slot.latency.record(latencyMs, TimeUnit.MILLISECONDS);
+            slot.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 是否为与进程通信的失败：异常链中有IOException（管道断开、进程退出）。
+     * 工具错误、单次调用超时不算，卡死的进程由定时ping发现
+     */
+    static boolean isTransportFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof UncheckedIOException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+
+    @Override
+    public List<ToolSpecification> listTools() {
+        return call(McpClient::listTools);
+    }
+
+    @Override
+    public String executeTool(ToolExecutionRequest executionRequest) {
+        DeadlineContext.check("mcp");
+        if (limiter == null) {
+            return call(client -> client.executeTool(executionRequest));
+        }
+        return limiter.call(() -> call(client -> client.executeTool(executionRequest)));
+    }
+
+    @Override
+    public List<McpResource> listResources() {
+        return call(McpClient::listResources);
+    }
+
+    @Override
+    public List<McpResourceTemplate> listResourceTemplates() {
+        return call(McpClient::listResourceTemplates);
+    }
+
+    @Override
+    public McpReadResourceResult readResource(String uri) {
+        return call(client -> client.readResource(uri));
+    }
+
+    @Override
+    public List<McpPrompt> listPrompts() {
+        return call(McpClient::listPrompts);
+    }
+
+    @Override
+    public McpGetPromptResult getPrompt(String name, Map<String, Object> arguments) {
+        return call(client -> client.getPrompt(name, arguments));
+    }
+
+    @Override
+    public void checkHealth() {
+        call(client -> {
+            client.checkHealth();
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        supervisor.shutdownNow();
+        healthChecks.shutdownNow();
+        for (Slot slot : slots) {
+            if (slot.client != null) {
+                try {
+                    slot.client.close();
+                } catch (Exception e) {
+                    log.warn("关闭MCP进程[{}]失败: {}", slot.index, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 各进程的在途请求数、延迟和重启次数
+     */
+    public List<Map<String, Object>> stats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Slot slot : slots) {
+            Map<String, Object> slotStats = new LinkedHashMap<>();
+            slotStats.put("index", slot.index);
+            slotStats.put("healthy", slot.healthy);
+            slotStats.put("inFlight", slot.inFlight.get());
+            slotStats.put("requests", slot.requests.get());
+            slotStats.put("errors", slot.errors.get());
+            slotStats.put("restarts", slot.restarts.get());
+            slotStats.put("ewmaLatencyMs", slot.ewmaLatencyMs);
+            slotStats.put("lastLatencyMs", slot.lastLatencyMs);
+            stats.add(slotStats);
+        }
+        return stats;
+    }
+}
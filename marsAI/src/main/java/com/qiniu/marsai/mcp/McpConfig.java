@@ -1,14 +1,20 @@
 package com.qiniu.marsai.mcp;
 
+import com.qiniu.marsai.limit.ConcurrencyLimits;
 import dev.langchain4j.mcp.McpToolProvider;
 import dev.langchain4j.mcp.client.DefaultMcpClient;
 import dev.langchain4j.mcp.client.McpClient;
 import dev.langchain4j.mcp.client.transport.McpTransport;
 import dev.langchain4j.mcp.client.transport.stdio.StdioMcpTransport;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -22,26 +28,54 @@ public class McpConfig {
     @Value("${mcp.gaode.enabled:true}")
     private boolean gaodeEnabled;
 
+    @Value("${mcp.gaode.pool-size:2}")
+    private int gaodePoolSize;
+
+    @Value("${mcp.gaode.health-interval-ms:30000}")
+    private long healthIntervalMs;
+
+    @Value("${mcp.gaode.health-timeout-ms:5000}")
+    private long healthTimeoutMs;
+
+    @Value("${mcp.gaode.tool-timeout-ms:30000}")
+    private long toolTimeoutMs;
+
+    private McpClientPool gaodePool;
+
+    @Resource
+    private ConcurrencyLimits concurrencyLimits;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${mcp.tool-cache.policies:maps_geo=3d/5000,maps_regeocode=3d/5000,maps_ip_location=1d/2000,maps_weather=10m/500}")
+    private String toolCachePolicies;
+
+    @Value("${mcp.tool-cache.tool-list-ttl:5m}")
+    private String toolListTtl;
+
+    /**
+     * 带结果缓存的MCP工具提供者，重复的地理编码、天气、IP定位调用直接命中本地缓存
+     */
+    @Bean
+    public CachingToolProvider cachingMcpToolProvider() {
+        return new CachingToolProvider(mcpToolProvider(),
+                CachingToolProvider.Policy.parse(toolCachePolicies),
+                DurationStyle.detectAndParse(toolListTtl).toMillis());
+    }
+
     @Bean
     public McpToolProvider mcpToolProvider() {
         try {
             List<McpClient> clients = new ArrayList<>();
 
-            // 高德地图MCP
+            // 高德地图MCP，多个进程组成池，并发请求不再串行排队在同一个stdin/stdout上
             if (gaodeEnabled) {
-                McpTransport transportForGaode = new StdioMcpTransport.Builder()
-                        .command(List.of("cmd","/c", "npx","-y", "@amap/amap-maps-mcp-server"))
-                        .environment(Map.of("AMAP_MAPS_API_KEY", amapMapsApiKey))
-                        .logEvents(true)
-                        .build();
-
-                McpClient mcpClientForGaode = new DefaultMcpClient.Builder()
-                        .key(amapMapsApiKey)
-                        .transport(transportForGaode)
-                        .build();
-
-                clients.add(mcpClientForGaode);
-                System.out.println("高德地图MCP客户端创建成功");
+                gaodePool = new McpClientPool(amapMapsApiKey, gaodePoolSize, this::createGaodeClient,
+                        healthIntervalMs, healthTimeoutMs, concurrencyLimits.get(ConcurrencyLimits.MCP), meterRegistry);
+
+                clients.add(gaodePool);
+                System.out.println("高德地图MCP客户端池创建成功，进程数: " + gaodePoolSize);
             }
 
             McpToolProvider toolProvider = McpToolProvider.builder()
@@ -56,4 +90,36 @@ public class McpConfig {
             return null;
         }
     }
+
+    /**
+     * 启动一个高德地图MCP进程
+     */
+    private McpClient createGaodeClient(int index) {
+        McpTransport transportForGaode = new StdioMcpTransport.Builder()
+                .command(List.of("cmd","/c", "npx","-y", "@amap/amap-maps-mcp-server"))
+                .environment(Map.of("AMAP_MAPS_API_KEY", amapMapsApiKey))
+                .logEvents(true)
+                .build();
+
+        return new DefaultMcpClient.Builder()
+                .key(amapMapsApiKey + "#" + index)
+                .transport(transportForGaode)
+                .toolExecutionTimeout(Duration.ofMillis(toolTimeoutMs))
+                .pingTimeout(Duration.ofMillis(healthTimeoutMs))
+                .build();
+    }
+
+    /**
+     * MCP进程池各进程状态
+     */
+    public List<Map<String, Object>> poolStats() {
+        return gaodePool == null ? List.of() : gaodePool.stats();
+    }
+
+    @PreDestroy
+    public void closePool() {
+        if (gaodePool != null) {
+            gaodePool.close();
+        }
+    }
 }
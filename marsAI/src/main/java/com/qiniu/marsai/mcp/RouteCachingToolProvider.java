@@ -0,0 +1,94 @@
+package com.qiniu.marsai.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qiniu.marsai.geo.GeoPoint;
+import com.qiniu.marsai.route.RouteCache;
+import com.qiniu.marsai.route.RoutePlan;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 路径规划工具的结果缓存
+ * 高德MCP的驾车、步行、骑行规划工具按对齐后的起终点使用RouteCache，与地图页的路线接口共用容量和命中率统计；
+ * 参数无法解析为坐标的调用直接透传
+ */
+@Slf4j
+public class RouteCachingToolProvider implements ToolProvider {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String TOOL_SOURCE = "tool";
+
+    /**
+     * 工具名到出行方式
+     */
+    private static final Map<String, String> TOOL_MODES = Map.of(
+            "maps_direction_driving", RouteCache.DRIVING,
+            "maps_direction_walking", RouteCache.WALKING,
+            "maps_bicycling", RouteCache.RIDING);
+
+    private final ToolProvider delegate;
+    private final RouteCache routeCache;
+
+    public RouteCachingToolProvider(ToolProvider delegate, RouteCache routeCache) {
+        this.delegate = delegate;
+        this.routeCache = routeCache;
+    }
+
+    @Override
+    public ToolProviderResult provideTools(ToolProviderRequest request) {
+        ToolProviderResult result = delegate.provideTools(request);
+        if (result == null || !routeCache.isEnabled()) {
+            return result;
+        }
+        Map<ToolSpecification, ToolExecutor> tools = new LinkedHashMap<>();
+        for (Map.Entry<ToolSpecification, ToolExecutor> entry : result.tools().entrySet()) {
+            String mode = TOOL_MODES.get(entry.getKey().name());
+            tools.put(entry.getKey(), mode == null ? entry.getValue() : wrap(entry.getValue(), mode));
+        }
+        return new ToolProviderResult(tools);
+    }
+
+    private ToolExecutor wrap(ToolExecutor executor, String mode) {
+        return (request, memoryId) -> {
+            String key = key(request.arguments(), mode);
+            if (key == null) {
+                return executor.execute(request, memoryId);
+            }
+            RoutePlan cached = routeCache.get(key);
+            if (cached != null) {
+                return cached.toolResult();
+            }
+            String result = executor.execute(request, memoryId);
+            if (!CachingToolProvider.isError(result)) {
+                routeCache.put(key, RoutePlan.ofToolResult(result), mode, null);
+            }
+            return result;
+        };
+    }
+
+    /**
+     * @return 缓存键，起终点不是"经度,纬度"时返回null
+     */
+    private String key(String arguments, String mode) {
+        try {
+            JsonNode node = MAPPER.readTree(arguments == null || arguments.isBlank() ? "{}" : arguments);
+            GeoPoint origin = GeoPoint.parse(node.path("origin").asText(null));
+            GeoPoint destination = GeoPoint.parse(node.path("destination").asText(null));
+            if (origin == null || destination == null) {
+                return null;
+            }
+            return routeCache.key(TOOL_SOURCE, origin, destination, mode, null);
+        } catch (Exception e) {
+            log.debug("路径规划参数无法解析，不使用缓存: {}", arguments);
+            return null;
+        }
+    }
+}
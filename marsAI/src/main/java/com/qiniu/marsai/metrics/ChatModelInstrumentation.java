@@ -0,0 +1,45 @@
+package com.qiniu.marsai.metrics;
+
+import com.qiniu.marsai.limit.ConcurrencyLimits;
+import com.qiniu.marsai.tool.ParallelToolExecution;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 给容器中所有ChatModel/StreamingChatModel挂上指标监听器，模型以Bean名称作为标签，并共用llm并发限制器；
+ * 同时挂上ParallelToolExecution，用于发现同一轮中的多个工具调用
+ */
+@Component
+public class ChatModelInstrumentation implements BeanPostProcessor {
+
+    private final ObjectProvider<LlmMetrics> metrics;
+    private final ObjectProvider<ConcurrencyLimits> limits;
+    private final ObjectProvider<ParallelToolExecution> parallelTools;
+
+    public ChatModelInstrumentation(ObjectProvider<LlmMetrics> metrics, ObjectProvider<ConcurrencyLimits> limits,
+                                    ObjectProvider<ParallelToolExecution> parallelTools) {
+        this.metrics = metrics;
+        this.limits = limits;
+        this.parallelTools = parallelTools;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof ChatModel chatModel && !(bean instanceof InstrumentedChatModel)) {
+            return new InstrumentedChatModel(chatModel,
+                    List.of(metrics.getObject().listener(beanName), parallelTools.getObject()),
+                    limits.getObject().get(ConcurrencyLimits.LLM));
+        }
+        if (bean instanceof StreamingChatModel streamingChatModel && !(bean instanceof InstrumentedStreamingChatModel)) {
+            return new InstrumentedStreamingChatModel(streamingChatModel, beanName, metrics.getObject(),
+                    List.<ChatModelListener>of(parallelTools.getObject()), limits.getObject().get(ConcurrencyLimits.LLM));
+        }
+        return bean;
+    }
+}
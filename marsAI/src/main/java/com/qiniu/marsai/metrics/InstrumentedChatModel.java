@@ -0,0 +1,66 @@
+package com.qiniu.marsai.metrics;
+
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.limit.AdaptiveLimiter;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 带指标监听器的ChatModel包装
+ * 自动配置创建的模型无法注入监听器，这里包一层并通过listeners()挂上LlmMetrics的监听器；
+ * 配置了限流器时，调用须先获得并发许可
+ */
+public class InstrumentedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final List<ChatModelListener> listeners;
+    private final AdaptiveLimiter limiter;
+
+    /**
+     * @param listeners 指标监听器及其它需要观察模型回复的监听器
+     * @param limiter 并发限制器，为null时不限流
+     */
+    public InstrumentedChatModel(ChatModel delegate, List<ChatModelListener> listeners, AdaptiveLimiter limiter) {
+        this.delegate = delegate;
+        this.listeners = List.copyOf(listeners);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatResponse doChat(ChatRequest chatRequest) {
+        // 工具调用的每一轮都会经过这里，截止时间已过时不再发起新一轮
+        DeadlineContext.check("llm");
+        if (limiter == null) {
+            return delegate.chat(chatRequest);
+        }
+        return limiter.call(() -> delegate.chat(chatRequest));
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,110 @@
+package com.qiniu.marsai.metrics;
+
+import com.qiniu.marsai.limit.AdaptiveLimiter;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 带指标监听器的StreamingChatModel包装，额外记录首token时间；
+ * 配置了限流器时，从请求开始到完整响应结束占用一个并发许可
+ */
+public class InstrumentedStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final String model;
+    private final LlmMetrics metrics;
+    private final List<ChatModelListener> listeners;
+    private final AdaptiveLimiter limiter;
+
+    /**
+     * @param extraListeners 除指标监听器外需要观察模型回复的监听器
+     * @param limiter 并发限制器，为null时不限流
+     */
+    public InstrumentedStreamingChatModel(StreamingChatModel delegate, String model, LlmMetrics metrics,
+                                          List<ChatModelListener> extraListeners, AdaptiveLimiter limiter) {
+        this.delegate = delegate;
+        this.model = model;
+        this.metrics = metrics;
+        List<ChatModelListener> all = new ArrayList<>();
+        all.add(metrics.listener(model));
+        all.addAll(extraListeners);
+        this.listeners = List.copyOf(all);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        long start = System.nanoTime();
+        AdaptiveLimiter.Permit permit = limiter == null ? null : limiter.acquire();
+        try {
+            stream(chatRequest, handler, start, permit);
+        } catch (RuntimeException e) {
+            if (permit != null) {
+                permit.dropped();
+            }
+            throw e;
+        }
+    }
+
+    private void stream(ChatRequest chatRequest, StreamingChatResponseHandler handler, long start,
+                        AdaptiveLimiter.Permit permit) {
+        delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+            private boolean firstToken = true;
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (firstToken) {
+                    firstToken = false;
+                    metrics.recordTimeToFirstToken(model, System.nanoTime() - start);
+                }
+                handler.onPartialResponse(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                if (permit != null) {
+                    permit.success();
+                }
+                handler.onCompleteResponse(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                if (permit != null) {
+                    permit.dropped();
+                }
+                handler.onError(error);
+            }
+        });
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
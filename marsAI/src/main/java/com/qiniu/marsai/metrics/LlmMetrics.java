@@ -0,0 +1,132 @@
+package com.qiniu.marsai.metrics;
+
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 大模型调用指标
+ * 记录每个模型的请求/响应token数、首token时间、总延迟，以及每次请求的工具调用轮数
+ */
+@Component
+public class LlmMetrics {
+
+    private static final String START_NANOS = LlmMetrics.class.getName() + ".startNanos";
+
+    private final MeterRegistry registry;
+
+    /**
+     * 同步调用链路上当前请求的工具调用轮数（AiServices同步调用时模型在调用线程上执行）
+     */
+    private final ThreadLocal<AtomicInteger> toolRounds = new ThreadLocal<>();
+
+    public LlmMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 为指定模型创建监听器
+     * @param model 模型标识（Bean名称）
+     */
+    public ChatModelListener listener(String model) {
+        return new ChatModelListener() {
+            @Override
+            public void onRequest(ChatModelRequestContext context) {
+                context.attributes().put(START_NANOS, System.nanoTime());
+            }
+
+            @Override
+            public void onResponse(ChatModelResponseContext context) {
+                recordLatency(model, "success", context.attributes().get(START_NANOS));
+                ChatResponse response = context.chatResponse();
+                TokenUsage usage = response.tokenUsage();
+                if (usage != null) {
+                    if (usage.inputTokenCount() != null) {
+                        tokens(model, "input").record(usage.inputTokenCount());
+                    }
+                    if (usage.outputTokenCount() != null) {
+                        tokens(model, "output").record(usage.outputTokenCount());
+                    }
+                }
+                AtomicInteger rounds = toolRounds.get();
+                if (rounds != null && response.aiMessage() != null && response.aiMessage().hasToolExecutionRequests()) {
+                    rounds.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void onError(ChatModelErrorContext context) {
+                recordLatency(model, "error", context.attributes().get(START_NANOS));
+            }
+        };
+    }
+
+    /**
+     * 记录流式调用的首token时间
+     */
+    public void recordTimeToFirstToken(String model, long nanos) {
+        Timer.builder("marsai.llm.ttft")
+                .description("大模型首token时间")
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 执行一次同步的AiServices调用，并记录其中模型请求工具的轮数
+     * 嵌套调用各自计数，结束后恢复外层的计数器
+     */
+    public <T> T countToolRounds(Supplier<T> call) {
+        AtomicInteger rounds = new AtomicInteger();
+        AtomicInteger outer = toolRounds.get();
+        toolRounds.set(rounds);
+        try {
+            return call.get();
+        } finally {
+            if (outer == null) {
+                toolRounds.remove();
+            } else {
+                toolRounds.set(outer);
+            }
+            DistributionSummary.builder("marsai.llm.tool.rounds")
+                    .description("每次请求中模型发起工具调用的轮数")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(rounds.get());
+        }
+    }
+
+    private void recordLatency(String model, String outcome, Object startNanos) {
+        if (!(startNanos instanceof Long start)) {
+            return;
+        }
+        Timer.builder("marsai.llm.latency")
+                .description("大模型单次调用总延迟")
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private DistributionSummary tokens(String model, String type) {
+        return DistributionSummary.builder("marsai.llm.tokens")
+                .description("大模型单次调用的token数")
+                .tag("model", model)
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,192 @@
+package com.qiniu.marsai.route;
+
+import com.qiniu.marsai.geo.GeoPoint;
+import com.qiniu.marsai.geo.Geocoder;
+import com.qiniu.marsai.geo.IpLocation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 不经过大模型的线路意图快速路径
+ * 规则解析出发地、目的地和出行方式，地理编码后按直线距离选择出行方式和驾车策略，
+ * 输出与system-prompt.txt约定相同的JSON。解析不了、置信度不足或出行方式明显不合理时返回null，由大模型处理
+ */
+@Slf4j
+@Service
+public class FastPathPlanner {
+
+    /**
+     * 默认驾车策略：躲避拥堵、路程较短
+     */
+    static final int POLICY_DEFAULT = 10;
+
+    /**
+     * 长途驾车策略：躲避拥堵&高速优先
+     */
+    static final int POLICY_HIGHWAY = 20;
+
+    @Value("${intent.fast-path.enabled:true}")
+    private boolean enabled;
+
+    @Value("${intent.fast-path.min-confidence:0.7}")
+    private double minConfidence;
+
+    /**
+     * 不指定出行方式时，步行和骑行的最远距离
+     */
+    @Value("${intent.fast-path.walk-km:1.5}")
+    private double walkKm;
+
+    @Value("${intent.fast-path.ride-km:5}")
+    private double rideKm;
+
+    /**
+     * 用户指定步行/骑行时能接受的最远距离，超出后交给大模型给出建议
+     */
+    @Value("${intent.fast-path.max-walk-km:10}")
+    private double maxWalkKm;
+
+    @Value("${intent.fast-path.max-ride-km:30}")
+    private double maxRideKm;
+
+    @Value("${intent.fast-path.highway-km:100}")
+    private double highwayKm;
+
+    @Resource
+    private Geocoder geocoder;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final Map<String, AtomicLong> fallbackReasons = new ConcurrentHashMap<>();
+
+    /**
+     * 按出行方式和驾车策略选择的结果
+     */
+    record Choice(String mode, Integer policy, String policyReason) {
+    }
+
+    /**
+     * 尝试快速路径
+     * @param sessionId 会话ID
+     * @param text 用户输入
+     * @param location 客户端位置，查不到时为null
+     * @return 意图JSON，需要大模型处理时返回null
+     */
+    public String plan(String sessionId, String text, IpLocation location) {
+        if (!enabled) {
+            return null;
+        }
+        RouteQueryParser.ParsedQuery query = RouteQueryParser.parse(text);
+        if (query == null) {
+            return fallback("unparsed");
+        }
+        if (query.origin() == null && location == null) {
+            return fallback("no_origin");
+        }
+
+        double confidence = query.confidence();
+        GeoPoint origin;
+        if (query.origin() == null) {
+            origin = new GeoPoint(location.longitude(), location.latitude());
+        } else {
+            Geocoder.Match match = geocoder.geocode(query.origin(), sessionId);
+            if (match == null) {
+                return fallback("geocode_failed");
+            }
+            origin = match.point();
+            confidence *= match.confidence();
+        }
+        Geocoder.Match destination = geocoder.geocode(query.destination(), sessionId);
+        if (destination == null) {
+            return fallback("geocode_failed");
+        }
+        confidence *= destination.confidence();
+        if (confidence < minConfidence) {
+            return fallback("low_confidence");
+        }
+
+        Choice choice = choose(query.mode(), origin.distanceKm(destination.point()));
+        if (choice == null) {
+            return fallback("unreasonable_mode");
+        }
+        hits.incrementAndGet();
+        counter("hit", "ok").increment();
+        log.info("快速路径命中: {} -> {}", text, choice.mode());
+        return toJson(origin, destination.point(), choice);
+    }
+
+    /**
+     * 按直线距离选择出行方式和驾车策略
+     * @param mode 用户指定的出行方式，可为null
+     * @return 选择结果，用户指定的方式明显不合理时返回null
+     */
+    Choice choose(String mode, double distanceKm) {
+        if (RouteQueryParser.WALKING.equals(mode) && distanceKm > maxWalkKm
+                || RouteQueryParser.RIDING.equals(mode) && distanceKm > maxRideKm) {
+            return null;
+        }
+        if (mode == null) {
+            mode = distanceKm <= walkKm ? RouteQueryParser.WALKING
+                    : distanceKm <= rideKm ? RouteQueryParser.RIDING
+                    : RouteQueryParser.DRIVING;
+        }
+        if (!RouteQueryParser.DRIVING.equals(mode)) {
+            return new Choice(mode, null, "");
+        }
+        String distance = String.format("%.1f", distanceKm);
+        if (distanceKm > highwayKm) {
+            return new Choice(mode, POLICY_HIGHWAY, "直线距离约" + distance + "公里，属于长途出行，优先走高速并躲避拥堵以缩短时间");
+        }
+        return new Choice(mode, POLICY_DEFAULT, "直线距离约" + distance + "公里，采用躲避拥堵、路程较短的默认策略");
+    }
+
+    static String toJson(GeoPoint origin, GeoPoint destination, Choice choice) {
+        return RouteIntentCodec.toJson(new RouteIntent(RouteIntent.Coordinate.of(origin), RouteIntent.Coordinate.of(destination),
+                choice.mode(), choice.policy(), choice.policyReason(), ""));
+    }
+
+    private String fallback(String reason) {
+        fallbacks.incrementAndGet();
+        fallbackReasons.computeIfAbsent(reason, r -> new AtomicLong()).incrementAndGet();
+        counter("fallback", reason).increment();
+        return null;
+    }
+
+    private Counter counter(String outcome, String reason) {
+        return Counter.builder("marsai.intent.fastpath")
+                .description("快速路径命中/回退到大模型的次数")
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 命中率统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long fallbackCount = fallbacks.get();
+        stats.put("enabled", enabled);
+        stats.put("minConfidence", minConfidence);
+        stats.put("hits", hitCount);
+        stats.put("fallbacks", fallbackCount);
+        stats.put("hitRatio", hitCount + fallbackCount == 0 ? 0.0 : (double) hitCount / (hitCount + fallbackCount));
+        Map<String, Long> reasons = new LinkedHashMap<>();
+        fallbackReasons.forEach((reason, count) -> reasons.put(reason, count.get()));
+        stats.put("fallbackReasons", reasons);
+        return stats;
+    }
+}
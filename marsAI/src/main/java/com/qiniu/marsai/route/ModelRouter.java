@@ -0,0 +1,132 @@
+package com.qiniu.marsai.route;
+
+import com.qiniu.marsai.service.QueryNormalizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 模型分层路由
+ * 简短、不带附加条件的查询交给快速模型；带偏好、途经点、时间等条件或较长的查询直接交给主模型。
+ * 快速模型的输出校验不通过时由调用方升级到主模型。决策、升级原因和各层耗时都记录为指标，便于调整阈值
+ */
+@Component
+public class ModelRouter {
+
+    public enum Tier {
+        FAST, STRONG
+    }
+
+    /**
+     * 路由决策
+     * @param tier 选择的模型层
+     * @param reason 原因：simple（规则可解析的句式）、short、complex、long、disabled
+     */
+    public record Decision(Tier tier, String reason) {
+    }
+
+    @Value("${model-tiering.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 归一化后不超过该长度且不带附加条件的查询走快速模型
+     */
+    @Value("${model-tiering.max-fast-chars:24}")
+    private int maxFastChars;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicLong> decisions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> escalations = new ConcurrentHashMap<>();
+
+    /**
+     * 为一次查询选择模型层
+     */
+    public Decision route(String text) {
+        Decision decision = decide(text);
+        String key = decision.tier().name().toLowerCase() + ":" + decision.reason();
+        decisions.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+        Counter.builder("marsai.model.tier.decisions")
+                .description("模型分层路由决策次数")
+                .tag("tier", decision.tier().name().toLowerCase())
+                .tag("reason", decision.reason())
+                .register(meterRegistry)
+                .increment();
+        return decision;
+    }
+
+    Decision decide(String text) {
+        if (!enabled) {
+            return new Decision(Tier.STRONG, "disabled");
+        }
+        String normalized = QueryNormalizer.normalize(text);
+        if (RouteQueryParser.isComplex(normalized)) {
+            return new Decision(Tier.STRONG, "complex");
+        }
+        if (normalized.length() > maxFastChars) {
+            return new Decision(Tier.STRONG, "long");
+        }
+        return new Decision(Tier.FAST, RouteQueryParser.parse(text) != null ? "simple" : "short");
+    }
+
+    /**
+     * 记录一次从快速模型到主模型的升级
+     * @param reason invalid（输出无法解析）、incomplete（缺少坐标或出行方式）、error（模型给出err）、failed（调用异常）
+     */
+    public void escalated(String reason) {
+        escalations.computeIfAbsent(reason, k -> new AtomicLong()).incrementAndGet();
+        Counter.builder("marsai.model.tier.escalations")
+                .description("快速模型输出不可用、升级到主模型的次数")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 调用指定层的模型并记录耗时
+     */
+    public <T> T timed(Tier tier, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            Timer.builder("marsai.model.tier.latency")
+                    .description("各模型层的调用耗时（含工具调用）")
+                    .tag("tier", tier.name().toLowerCase())
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 决策和升级统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxFastChars", maxFastChars);
+        Map<String, Long> decisionCounts = new LinkedHashMap<>();
+        decisions.forEach((key, count) -> decisionCounts.put(key, count.get()));
+        stats.put("decisions", decisionCounts);
+        Map<String, Long> escalationCounts = new LinkedHashMap<>();
+        escalations.forEach((key, count) -> escalationCounts.put(key, count.get()));
+        stats.put("escalations", escalationCounts);
+        return stats;
+    }
+}
@@ -0,0 +1,298 @@
+package com.qiniu.marsai.route;
+
+import com.qiniu.marsai.geo.GeoHash;
+import com.qiniu.marsai.geo.GeoPoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 路径规划缓存
+ * 起终点按GeoHash网格对齐后与出行方式、驾车策略组成缓存键，几十米内的重复规划直接复用；
+ * 受实时路况影响的驾车策略按时段设置有效期（高峰期较短，平峰期的结果不跨入下一个高峰），其它规划按天缓存。
+ * 按估算的内存字节数做LRU淘汰，后端的路径规划工具和地图页的路线接口共用同一个缓存
+ */
+@Slf4j
+@Component
+public class RouteCache {
+
+    public static final String DRIVING = "driving";
+    public static final String WALKING = "walking";
+    public static final String RIDING = "riding";
+
+    /**
+     * 考虑实时路况的驾车策略（见system-prompt中的10~20）
+     */
+    private static final Set<Integer> TRAFFIC_POLICIES = Set.of(10, 12, 15, 17, 18, 20);
+
+    private static final Map<String, String> MODE_ALIASES = Map.of(
+            "驾车", DRIVING, "开车", DRIVING, "自驾", DRIVING,
+            "步行", WALKING, "走路", WALKING,
+            "骑行", RIDING, "骑车", RIDING, "自行车", RIDING);
+
+    private final boolean enabled;
+    private final int precision;
+    private final long maxBytes;
+    private final int[][] peakHours;
+    private final long peakTtlMs;
+    private final long offPeakTtlMs;
+    private final long staticTtlMs;
+    private final Clock clock;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    private record Entry(RoutePlan plan, long expiresAt, long weight) {
+    }
+
+    @Autowired
+    public RouteCache(MeterRegistry registry,
+                      @Value("${route-cache.enabled:true}") boolean enabled,
+                      @Value("${route-cache.precision:7}") int precision,
+                      @Value("${route-cache.max-bytes:33554432}") long maxBytes,
+                      @Value("${route-cache.peak-hours:7-10,17-20}") String peakHours,
+                      @Value("${route-cache.peak-ttl:5m}") Duration peakTtl,
+                      @Value("${route-cache.off-peak-ttl:30m}") Duration offPeakTtl,
+                      @Value("${route-cache.static-ttl:1d}") Duration staticTtl) {
+        this(registry, enabled, precision, maxBytes, peakHours, peakTtl, offPeakTtl, staticTtl, Clock.systemDefaultZone());
+    }
+
+    RouteCache(MeterRegistry registry, boolean enabled, int precision, long maxBytes, String peakHours,
+               Duration peakTtl, Duration offPeakTtl, Duration staticTtl, Clock clock) {
+        this.enabled = enabled;
+        this.precision = precision;
+        this.maxBytes = maxBytes;
+        this.peakHours = parsePeakHours(peakHours);
+        this.peakTtlMs = peakTtl.toMillis();
+        this.offPeakTtlMs = offPeakTtl.toMillis();
+        this.staticTtlMs = staticTtl.toMillis();
+        this.clock = clock;
+        this.hitCounter = counter(registry, "hit");
+        this.missCounter = counter(registry, "miss");
+        FunctionCounter.builder("marsai.route.cache.evictions", evictions, AtomicLong::get)
+                .description("因超过容量被淘汰的路径规划数")
+                .register(registry);
+        Gauge.builder("marsai.route.cache.entries", this, RouteCache::size)
+                .description("缓存的路径规划数")
+                .register(registry);
+        Gauge.builder("marsai.route.cache.bytes", this, RouteCache::bytes)
+                .description("缓存占用的估算字节数")
+                .register(registry);
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("marsai.route.cache.requests")
+                .description("路径规划缓存的命中（hit）和未命中（miss）次数")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * 解析形如 "7-10,17-20" 的高峰时段（整点，左闭右开）
+     */
+    static int[][] parsePeakHours(String spec) {
+        List<int[]> ranges = new ArrayList<>();
+        if (spec != null) {
+            for (String item : spec.split(",")) {
+                String[] bounds = item.trim().split("-", 2);
+                if (bounds.length == 2) {
+                    ranges.add(new int[]{Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim())});
+                }
+            }
+        }
+        return ranges.toArray(new int[0][]);
+    }
+
+    /**
+     * 统一出行方式，支持中文
+     * @return driving/walking/riding，不支持的方式返回null
+     */
+    public static String normalizeMode(String mode) {
+        if (mode == null || mode.isBlank()) {
+            return DRIVING;
+        }
+        String trimmed = mode.trim();
+        String alias = MODE_ALIASES.get(trimmed);
+        if (alias != null) {
+            return alias;
+        }
+        String lower = trimmed.toLowerCase(Locale.ROOT);
+        return DRIVING.equals(lower) || WALKING.equals(lower) || RIDING.equals(lower) ? lower : null;
+    }
+
+    /**
+     * 是否受实时路况影响；驾车未指定策略时按默认的躲避拥堵处理
+     */
+    static boolean isTrafficAware(String mode, Integer policy) {
+        return DRIVING.equals(mode) && (policy == null || TRAFFIC_POLICIES.contains(policy));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 缓存键：来源|起点网格|终点网格|出行方式|策略
+     * @param source 结果的来源，如api（路线接口）、tool（路径规划工具的原始结果）
+     */
+    public String key(String source, GeoPoint origin, GeoPoint destination, String mode, Integer policy) {
+        return source + '|' + GeoHash.encode(origin, precision) + '|' + GeoHash.encode(destination, precision)
+                + '|' + mode + '|' + (DRIVING.equals(mode) && policy != null ? policy : "-");
+    }
+
+    /**
+     * @return 未过期的规划，没有时返回null
+     */
+    public RoutePlan get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        RoutePlan plan = lookup(key);
+        if (plan != null) {
+            hits.incrementAndGet();
+            hitCounter.increment();
+        } else {
+            misses.incrementAndGet();
+            missCounter.increment();
+        }
+        return plan;
+    }
+
+    private synchronized RoutePlan lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= clock.millis()) {
+            entries.remove(key);
+            bytes -= entry.weight();
+            return null;
+        }
+        return entry.plan();
+    }
+
+    /**
+     * 放入规划，有效期按出行方式、策略和当前时段决定
+     */
+    public void put(String key, RoutePlan plan, String mode, Integer policy) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.millis();
+        Entry entry = new Entry(plan, expiresAt(now, mode, policy), plan.weightBytes());
+        if (entry.weight() > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.weight();
+            }
+            bytes += entry.weight();
+            Iterator<Entry> it = entries.values().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Entry eldest = it.next();
+                it.remove();
+                bytes -= eldest.weight();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 过期时间：路况相关的驾车规划在高峰期用peak-ttl，平峰期用off-peak-ttl且不晚于下一个高峰开始；其它用static-ttl
+     */
+    long expiresAt(long now, String mode, Integer policy) {
+        if (!isTrafficAware(mode, policy)) {
+            return now + staticTtlMs;
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), zone());
+        if (isPeak(time.getHour())) {
+            return now + peakTtlMs;
+        }
+        long untilPeak = millisUntilNextPeak(time);
+        return now + Math.min(offPeakTtlMs, untilPeak);
+    }
+
+    private ZoneId zone() {
+        return clock.getZone();
+    }
+
+    private boolean isPeak(int hour) {
+        for (int[] range : peakHours) {
+            if (hour >= range[0] && hour < range[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long millisUntilNextPeak(LocalDateTime time) {
+        long best = Long.MAX_VALUE;
+        for (int[] range : peakHours) {
+            LocalDateTime start = time.toLocalDate().atTime(LocalTime.of(range[0] % 24, 0));
+            if (!start.isAfter(time)) {
+                start = start.plusDays(1);
+            }
+            best = Math.min(best, Duration.between(time, start).toMillis());
+        }
+        return best;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        stats.put("enabled", enabled);
+        stats.put("precision", precision);
+        stats.put("size", size());
+        stats.put("bytes", bytes());
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
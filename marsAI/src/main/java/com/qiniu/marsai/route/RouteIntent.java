@@ -0,0 +1,78 @@
+package com.qiniu.marsai.route;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.qiniu.marsai.geo.GeoPoint;
+
+/**
+ * 线路意图
+ * 字段名按system-prompt.txt约定的中文键序列化，与前端MapDataExtractor读取的格式一致
+ * @param origin 出发地
+ * @param destination 目的地
+ * @param mode 出行方式：步行、骑行、驾车
+ * @param policy 驾车策略10~20，非驾车时为null，模型输出的空串也解析为null
+ * @param policyReason 选择策略的原因
+ * @param err 无法规划时的原因，正常时为空串
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonPropertyOrder({"出发地", "目的地", "出行方式", "policy", "policyReason", "err"})
+public record RouteIntent(@JsonProperty("出发地") Coordinate origin,
+                          @JsonProperty("目的地") Coordinate destination,
+                          @JsonProperty("出行方式") String mode,
+                          @JsonProperty("policy") Integer policy,
+                          @JsonProperty("policyReason") String policyReason,
+                          @JsonProperty("err") String err) {
+
+    /**
+     * 模型省略的字段补成空值，序列化结果始终包含全部键
+     */
+    public RouteIntent {
+        origin = origin == null ? Coordinate.EMPTY : origin;
+        destination = destination == null ? Coordinate.EMPTY : destination;
+        mode = mode == null ? "" : mode.trim();
+        policyReason = policyReason == null ? "" : policyReason;
+        err = err == null ? "" : err;
+    }
+
+    /**
+     * 坐标，缺失的分量不输出
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Coordinate(@JsonProperty("经度") Double longitude, @JsonProperty("维度") Double latitude) {
+
+        static final Coordinate EMPTY = new Coordinate(null, null);
+
+        public static Coordinate of(GeoPoint point) {
+            return new Coordinate(point.longitude(), point.latitude());
+        }
+
+        @JsonIgnore
+        public boolean isComplete() {
+            return longitude != null && latitude != null;
+        }
+    }
+
+    /**
+     * 无法规划时返回给客户端的意图
+     */
+    public static RouteIntent error(String err) {
+        return new RouteIntent(Coordinate.EMPTY, Coordinate.EMPTY, "", null, "", err);
+    }
+
+    @JsonIgnore
+    public boolean isError() {
+        return !err.isBlank();
+    }
+
+    /**
+     * 没有错误且出发地、目的地、出行方式齐全
+     */
+    @JsonIgnore
+    public boolean isComplete() {
+        return !isError() && origin.isComplete() && destination.isComplete() && !mode.isEmpty();
+    }
+}
@@ -0,0 +1,91 @@
+package com.qiniu.marsai.route;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import dev.langchain4j.model.chat.request.json.JsonIntegerSchema;
+import dev.langchain4j.model.chat.request.json.JsonNumberSchema;
+import dev.langchain4j.model.chat.request.json.JsonObjectSchema;
+import dev.langchain4j.model.chat.request.json.JsonSchema;
+import dev.langchain4j.model.chat.request.json.JsonStringSchema;
+
+/**
+ * 线路意图编解码
+ * 模型输出可能带有说明文字、代码块标记、单引号或尾逗号，这里宽松地截取并解析其中的JSON对象；
+ * 输出统一为规范的中文键JSON
+ */
+public final class RouteIntentCodec {
+
+    private static final ObjectMapper LENIENT = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES,
+                    JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES,
+                    JsonReadFeature.ALLOW_TRAILING_COMMA,
+                    JsonReadFeature.ALLOW_JAVA_COMMENTS,
+                    JsonReadFeature.ALLOW_LEADING_DECIMAL_POINT_FOR_NUMBERS)
+            .enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT)
+            .build();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final JsonSchema SCHEMA = buildSchema();
+
+    private RouteIntentCodec() {
+    }
+
+    /**
+     * 解析模型输出
+     * @param output 模型输出
+     * @return 线路意图
+     * @throws IllegalArgumentException 找不到JSON对象或格式不符
+     */
+    public static RouteIntent parse(String output) {
+        if (output == null) {
+            throw new IllegalArgumentException("模型输出为空");
+        }
+        int start = output.indexOf('{');
+        int end = output.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("模型输出中没有JSON对象");
+        }
+        try {
+            return LENIENT.readValue(output.substring(start, end + 1), RouteIntent.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("模型输出格式错误: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    public static String toJson(RouteIntent intent) {
+        try {
+            return MAPPER.writeValueAsString(intent);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 结构化输出用的JSON Schema，键名与序列化格式一致
+     */
+    public static JsonSchema schema() {
+        return SCHEMA;
+    }
+
+    private static JsonSchema buildSchema() {
+        JsonObjectSchema coordinate = JsonObjectSchema.builder()
+                .addProperty("经度", JsonNumberSchema.builder().description("经度").build())
+                .addProperty("维度", JsonNumberSchema.builder().description("纬度").build())
+                .required("经度", "维度")
+                .build();
+        JsonObjectSchema root = JsonObjectSchema.builder()
+                .addProperty("出发地", coordinate)
+                .addProperty("目的地", coordinate)
+                .addProperty("出行方式", JsonStringSchema.builder().description("步行、骑行或驾车").build())
+                .addProperty("policy", JsonIntegerSchema.builder().description("驾车策略10~20，非驾车时省略").build())
+                .addProperty("policyReason", JsonStringSchema.builder().description("选择该策略的原因").build())
+                .addProperty("err", JsonStringSchema.builder().description("无法规划时的原因，正常时为空串").build())
+                .required("出发地", "目的地", "出行方式", "err")
+                .build();
+        return JsonSchema.builder().name("RouteIntent").rootElement(root).build();
+    }
+}
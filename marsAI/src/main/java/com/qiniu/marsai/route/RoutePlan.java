@@ -0,0 +1,117 @@
+package com.qiniu.marsai.route;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一条路径规划结果的紧凑表示
+ * 坐标以百万分之一度的定点整数交替存放在一个int数组中（经度、纬度、经度、纬度...），
+ * 每个步骤只记录说明和起点序号；工具调用的结果只保存原始文本
+ */
+public final class RoutePlan {
+
+    /**
+     * 定点坐标的比例：1表示百万分之一度（约0.1米）
+     */
+    public static final int SCALE = 1_000_000;
+
+    private final int distanceM;
+    private final int durationS;
+    private final int[] path;
+    private final int[] stepStarts;
+    private final String[] instructions;
+    private final String toolResult;
+
+    private RoutePlan(int distanceM, int durationS, int[] path, int[] stepStarts, String[] instructions, String toolResult) {
+        this.distanceM = distanceM;
+        this.durationS = durationS;
+        this.path = path;
+        this.stepStarts = stepStarts;
+        this.instructions = instructions;
+        this.toolResult = toolResult;
+    }
+
+    /**
+     * @param distanceM 距离（米）
+     * @param durationS 预计耗时（秒）
+     * @param path 定点坐标，经度和纬度交替
+     * @param stepStarts 每个步骤第一个点在path中的点序号
+     * @param instructions 每个步骤的说明，与stepStarts一一对应
+     */
+    public static RoutePlan of(int distanceM, int durationS, int[] path, int[] stepStarts, String[] instructions) {
+        if (path.length % 2 != 0 || stepStarts.length != instructions.length) {
+            throw new IllegalArgumentException("路径坐标或步骤数量不匹配");
+        }
+        return new RoutePlan(distanceM, durationS, path, stepStarts, instructions, null);
+    }
+
+    /**
+     * 路径规划工具返回的原始文本
+     */
+    public static RoutePlan ofToolResult(String toolResult) {
+        return new RoutePlan(0, 0, new int[0], new int[0], new String[0], toolResult);
+    }
+
+    public int distanceM() {
+        return distanceM;
+    }
+
+    public int durationS() {
+        return durationS;
+    }
+
+    public int points() {
+        return path.length / 2;
+    }
+
+    public double longitude(int point) {
+        return (double) path[point * 2] / SCALE;
+    }
+
+    public double latitude(int point) {
+        return (double) path[point * 2 + 1] / SCALE;
+    }
+
+    public String toolResult() {
+        return toolResult;
+    }
+
+    /**
+     * 估算占用的内存字节数，用于按容量淘汰
+     */
+    public long weightBytes() {
+        long bytes = 64 + 4L * path.length + 4L * stepStarts.length;
+        for (String instruction : instructions) {
+            bytes += 40 + instruction.length();
+        }
+        if (toolResult != null) {
+            bytes += 40 + toolResult.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * 路线接口的响应：distance（米）、duration（秒）、path（[[经度,纬度],...]）、steps（[{instruction,start}]）
+     */
+    public Map<String, Object> toView() {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("distance", distanceM);
+        view.put("duration", durationS);
+        List<double[]> points = new ArrayList<>(points());
+        for (int i = 0; i < points(); i++) {
+            points.add(new double[]{longitude(i), latitude(i)});
+        }
+        view.put("path", points);
+        List<Map<String, Object>> steps = new ArrayList<>(instructions.length);
+        for (int i = 0; i < instructions.length; i++) {
+            Map<String, Object> step = new LinkedHashMap<>();
+            step.put("instruction", instructions[i]);
+            step.put("start", stepStarts[i]);
+            steps.add(step);
+        }
+        view.put("steps", steps);
+        return view;
+    }
+}
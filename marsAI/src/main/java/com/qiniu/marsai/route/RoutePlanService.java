@@ -0,0 +1,170 @@
+package com.qiniu.marsai.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.geo.GeoPoint;
+import com.qiniu.marsai.http.OutboundHttpClient;
+import com.qiniu.marsai.service.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 地图页的路径规划
+ * 通过高德Web服务接口规划驾车、步行、骑行路线，结果按对齐后的起终点、出行方式和策略缓存；
+ * 同一缓存键同时未命中时只请求一次高德
+ */
+@Slf4j
+@Service
+public class RoutePlanService {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String API_SOURCE = "api";
+
+    private final OutboundHttpClient httpClient;
+    private final RouteCache routeCache;
+    private final String apiKey;
+    private final Duration timeout;
+    private final SingleFlight<String, RoutePlan> flights;
+
+    public RoutePlanService(OutboundHttpClient httpClient, RouteCache routeCache, MeterRegistry meterRegistry,
+                            @Value("${amap.maps-api-key}") String apiKey,
+                            @Value("${route-cache.request-timeout-ms:8000}") long timeoutMs) {
+        this.httpClient = httpClient;
+        this.routeCache = routeCache;
+        this.apiKey = apiKey;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.flights = new SingleFlight<>("route", meterRegistry);
+    }
+
+    /**
+     * 规划路线
+     * @param origin 起点
+     * @param destination 终点
+     * @param mode driving/walking/riding
+     * @param policy 驾车策略，其它方式忽略
+     * @return 规划结果
+     * @throws IOException 高德接口不可用或规划失败
+     */
+    public RoutePlan plan(GeoPoint origin, GeoPoint destination, String mode, Integer policy) throws IOException {
+        Integer drivingPolicy = RouteCache.DRIVING.equals(mode) ? policy : null;
+        String key = routeCache.key(API_SOURCE, origin, destination, mode, drivingPolicy);
+        RoutePlan cached = routeCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return flights.execute(key, () -> {
+                try {
+                    RoutePlan plan = request(origin, destination, mode, drivingPolicy);
+                    routeCache.put(key, plan, mode, drivingPolicy);
+                    return plan;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, DeadlineContext.cap(timeout, "route"));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (SingleFlight.FollowerTimeoutException e) {
+            throw new IOException("等待相同路线的规划结果超时", e);
+        }
+    }
+
+    private RoutePlan request(GeoPoint origin, GeoPoint destination, String mode, Integer policy) throws IOException {
+        String url = switch (mode) {
+            case RouteCache.WALKING -> "https://restapi.amap.com/v3/direction/walking?";
+            case RouteCache.RIDING -> "https://restapi.amap.com/v4/direction/bicycling?";
+            default -> "https://restapi.amap.com/v3/direction/driving?extensions=base&strategy="
+                    + (policy == null ? 10 : policy) + "&";
+        };
+        url += "origin=" + location(origin) + "&destination=" + location(destination) + "&key=" + apiKey;
+        HttpResponse<String> response = httpClient.get(url, DeadlineContext.cap(timeout, "route"));
+        if (response.statusCode() != 200) {
+            throw new IOException("高德路径规划HTTP状态" + response.statusCode());
+        }
+        return parse(response.body());
+    }
+
+    private static String location(GeoPoint point) {
+        return String.format(Locale.ROOT, "%.6f,%.6f", point.longitude(), point.latitude());
+    }
+
+    /**
+     * 解析高德路径规划响应（v3的route.paths或v4骑行的data.paths），只取第一条方案
+     * @throws IOException 规划失败或响应格式错误
+     */
+    static RoutePlan parse(String body) throws IOException {
+        try {
+            return parsePlan(body);
+        } catch (RuntimeException e) {
+            throw new IOException("高德路径规划响应格式错误", e);
+        }
+    }
+
+    private static RoutePlan parsePlan(String body) throws IOException {
+        JsonNode root = MAPPER.readTree(body);
+        JsonNode paths;
+        if (root.has("errcode")) {
+            if (root.path("errcode").asInt(-1) != 0) {
+                throw new IOException("高德路径规划失败: " + root.path("errmsg").asText());
+            }
+            paths = root.path("data").path("paths");
+        } else {
+            if (!"1".equals(root.path("status").asText())) {
+                throw new IOException("高德路径规划失败: " + root.path("info").asText());
+            }
+            paths = root.path("route").path("paths");
+        }
+        JsonNode path = paths.path(0);
+        if (path.isMissingNode()) {
+            throw new IOException("高德路径规划没有结果");
+        }
+        int[] points = new int[256];
+        int length = 0;
+        List<Integer> stepStarts = new ArrayList<>();
+        List<String> instructions = new ArrayList<>();
+        for (JsonNode step : path.path("steps")) {
+            stepStarts.add(length / 2);
+            instructions.add(step.path("instruction").asText());
+            String polyline = step.path("polyline").asText("");
+            for (String location : polyline.split(";")) {
+                int comma = location.indexOf(',');
+                if (comma <= 0) {
+                    continue;
+                }
+                int lng = fixed(location.substring(0, comma));
+                int lat = fixed(location.substring(comma + 1));
+                // 相邻步骤首尾相接，重复的点只保存一次
+                if (length >= 2 && points[length - 2] == lng && points[length - 1] == lat) {
+                    continue;
+                }
+                if (length + 2 > points.length) {
+                    points = Arrays.copyOf(points, points.length * 2);
+                }
+                points[length++] = lng;
+                points[length++] = lat;
+            }
+        }
+        int[] starts = new int[stepStarts.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = stepStarts.get(i);
+        }
+        return RoutePlan.of(path.path("distance").asInt(), path.path("duration").asInt(),
+                Arrays.copyOf(points, length), starts, instructions.toArray(new String[0]));
+    }
+
+    private static int fixed(String degrees) {
+        return (int) Math.round(Double.parseDouble(degrees.trim()) * RoutePlan.SCALE);
+    }
+}
@@ -0,0 +1,147 @@
+package com.qiniu.marsai.route;
+
+import com.qiniu.marsai.service.QueryNormalizer;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 简单线路查询的规则解析
+ * 在归一化后的文本上识别 "从A到B"、"A到B骑行"、"到B" 这类句式，提取出发地、目的地和出行方式；
+ * 带偏好、途经点、时间、公共交通等需要推理的查询不做解析，交给大模型
+ */
+public final class RouteQueryParser {
+
+    public static final String DRIVING = "驾车";
+    public static final String RIDING = "骑行";
+    public static final String WALKING = "步行";
+
+    private static final List<String> MODES = List.of(DRIVING, RIDING, WALKING);
+
+    /**
+     * 出现这些词说明查询带有偏好或额外条件
+     */
+    private static final List<String> COMPLEX_WORDS = List.of(
+            "高速", "收费", "拥堵", "堵车", "红绿灯", "天气", "下雨", "下雪",
+            "最快", "最近", "最短", "最好", "便宜", "省钱", "省油", "附近", "周边",
+            "途经", "经过", "顺路", "顺便", "然后", "再到", "先到", "还是", "或者",
+            "公交", "地铁", "坐车", "飞机", "航班", "轮渡", "换成", "改成", "不要", "不走", "避开",
+            "多久", "多远", "多少", "几点", "明天", "今天", "今晚", "晚上", "早上", "下午", "吗", "呢");
+
+    private static final List<String> PREFIXES = List.of(
+            "导航", "我要", "我想", "帮我", "请", "带我", "规划", "查询", "查一下", "看看", "我", "要", "想");
+
+    private static final List<String> SUFFIXES = List.of(
+            "怎么走", "怎么到", "的路线", "路线", "导航", "出发", "过去", "一下", "吧");
+
+    /**
+     * 表示"当前位置"的出发地，按没有指明出发地处理
+     */
+    private static final Set<String> HERE = Set.of("这里", "这儿", "此地", "当前位置", "我的位置", "现在的位置", "我这");
+
+    private static final int MAX_NAME_LENGTH = 30;
+
+    private RouteQueryParser() {
+    }
+
+    /**
+     * 解析结果
+     * @param origin 出发地名称，为null表示没有指明、使用客户端位置
+     * @param destination 目的地名称
+     * @param mode 用户指定的出行方式，为null表示未指定
+     * @param confidence 句式本身的置信度
+     */
+    public record ParsedQuery(String origin, String destination, String mode, double confidence) {
+    }
+
+    /**
+     * 查询是否带有偏好、途经点、时间等需要推理的条件
+     * @param normalized 归一化后的查询
+     */
+    public static boolean isComplex(String normalized) {
+        for (String word : COMPLEX_WORDS) {
+            if (normalized.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param text 用户输入
+     * @return 解析结果，不是简单线路查询时返回null
+     */
+    public static ParsedQuery parse(String text) {
+        String rest = QueryNormalizer.normalize(text);
+        if (rest.isEmpty() || isComplex(rest)) {
+            return null;
+        }
+
+        String mode = null;
+        for (String candidate : MODES) {
+            if (rest.contains(candidate)) {
+                if (mode != null) {
+                    return null;
+                }
+                mode = candidate;
+                rest = rest.replace(candidate, "");
+            }
+        }
+        rest = rest.replace("出行方式", "").replace("出行", "");
+        rest = stripSuffixes(stripPrefixes(rest));
+
+        boolean explicitFrom = rest.startsWith("从");
+        if (explicitFrom) {
+            rest = rest.substring(1);
+        }
+        int arrow = rest.indexOf('到');
+        if (arrow < 0 || rest.indexOf('到', arrow + 1) >= 0) {
+            return null;
+        }
+        String origin = stripSuffixes(rest.substring(0, arrow));
+        String destination = stripSuffixes(rest.substring(arrow + 1));
+        if (origin.isEmpty() && explicitFrom) {
+            return null;
+        }
+        if (HERE.contains(origin)) {
+            origin = "";
+        }
+        if (!isPlaceName(destination) || (!origin.isEmpty() && !isPlaceName(origin)) || origin.equals(destination)) {
+            return null;
+        }
+        // 没有出发地时要靠客户端位置推断，置信度略低
+        return new ParsedQuery(origin.isEmpty() ? null : origin, destination, mode, origin.isEmpty() ? 0.85 : 0.9);
+    }
+
+    private static boolean isPlaceName(String name) {
+        return name.length() >= 2 && name.length() <= MAX_NAME_LENGTH && !HERE.contains(name);
+    }
+
+    private static String stripPrefixes(String text) {
+        boolean stripped = true;
+        while (stripped) {
+            stripped = false;
+            for (String prefix : PREFIXES) {
+                if (text.startsWith(prefix)) {
+                    text = text.substring(prefix.length());
+                    stripped = true;
+                }
+            }
+        }
+        return text;
+    }
+
+    private static String stripSuffixes(String text) {
+        boolean stripped = true;
+        while (stripped) {
+            stripped = false;
+            for (String suffix : SUFFIXES) {
+                if (text.endsWith(suffix)) {
+                    text = text.substring(0, text.length() - suffix.length());
+                    stripped = true;
+                }
+            }
+        }
+        return text;
+    }
+}
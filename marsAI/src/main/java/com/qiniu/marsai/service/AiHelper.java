@@ -4,6 +4,10 @@ import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatModel;
 
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ResponseFormat;
+import dev.langchain4j.model.chat.request.ResponseFormatType;
+import dev.langchain4j.model.chat.request.json.JsonSchema;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -24,4 +28,22 @@ public class AiHelper {
         log.info("AI 输出：" + aiMessage.toString());
         return aiMessage.text();
     }
+
+    /**
+     * JSON模式对话，要求模型只输出JSON
+     * 通义千问只支持json_object，schema会被忽略，所以message中也要写明格式
+     * @param message 用户消息，需包含"JSON"字样
+     * @param schema 期望的结构
+     * @return 模型输出
+     */
+    public String chatJson(String message, JsonSchema schema) {
+        ChatRequest request = ChatRequest.builder()
+                .messages(UserMessage.from(message))
+                .responseFormat(ResponseFormat.builder()
+                        .type(ResponseFormatType.JSON)
+                        .jsonSchema(schema)
+                        .build())
+                .build();
+        return qwenChatModel.chat(request).aiMessage().text();
+    }
 }
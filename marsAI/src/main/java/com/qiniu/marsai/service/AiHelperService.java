@@ -3,9 +3,13 @@ package com.qiniu.marsai.service;
 import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
 
 
-public interface AiHelperService {
+/**
+ * 线路意图对话；实现ChatMemoryAccess以便清除快速模型层的临时记忆
+ */
+public interface AiHelperService extends ChatMemoryAccess {
 
     @SystemMessage(fromResource = "system-prompt.txt")
     String chat(@MemoryId String memoryId, @UserMessage String userMessage);
@@ -1,34 +1,229 @@
 package com.qiniu.marsai.service;
 
-import com.qiniu.marsai.mcp.McpConfig;
+import com.qiniu.marsai.geo.Gazetteer;
+import com.qiniu.marsai.mcp.CachingToolProvider;
+import com.qiniu.marsai.mcp.RouteCachingToolProvider;
+import com.qiniu.marsai.route.RouteCache;
+import com.qiniu.marsai.tool.ObservableToolProvider;
+import com.qiniu.marsai.tool.ParallelToolExecution;
 import com.qiniu.marsai.tool.PublicIpUtil;
+import com.qiniu.marsai.tool.ToolEventBus;
+import dev.langchain4j.community.model.dashscope.QwenChatModel;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class AiHelperServiceFactory {
 
+    /**
+     * 主模型（强模型层），复杂查询和快速模型升级时使用；存在多个ChatModel，按字段名注入
+     */
     @Autowired
-    private ChatModel deepSeekChatModel;
+    private ChatModel qwenChatModel;
 
     @Autowired
-    private McpConfig mapMcpConfig;
+    private StreamingChatModel qwenStreamingChatModel;
 
+    @Autowired
+    private CachingToolProvider cachingMcpToolProvider;
+
+    @Autowired
+    private RouteCache routeCache;
+
+    @Autowired
+    private ToolEventBus toolEventBus;
+
+    @Autowired
+    private BoundedChatMemoryStore chatMemoryStore;
+
+    @Autowired
+    private PublicIpUtil publicIpUtil;
+
+    @Autowired
+    private Gazetteer gazetteer;
+
+    @Autowired
+    private ParallelToolExecution parallelToolExecution;
+
+    @Value("${chat.memory.max-messages:30}")
+    private int maxMessages;
+
+    @Value("${langchain4j.community.dashscope.chat-model.api-key}")
+    private String dashscopeApiKey;
+
+    @Value("${model-tiering.fast-model:qwen-turbo}")
+    private String fastModelName;
 
+    @Value("${hedging.secondary-model:qwen-plus}")
+    private String hedgeModelName;
+
+    /**
+     * 临时记忆ID中会话ID和本次调用标识之间的分隔符
+     */
+    public static final String SCRATCH_SEPARATOR = "#scratch-";
+
+    /**
+     * 请求记忆ID中会话ID和请求标识之间的分隔符
+     */
+    public static final String REQUEST_SEPARATOR = "#req-";
+
+    private final InMemoryChatMemoryStore scratchMemoryStore = new InMemoryChatMemoryStore();
+
+    /**
+     * 临时记忆的存储，调用方清除临时记忆时同时删除其中的消息
+     */
+    @Bean
+    public ChatMemoryStore scratchChatMemoryStore() {
+        return scratchMemoryStore;
+    }
+
+    /**
+     * 每个会话一个消息窗口，消息保存在有界、可淘汰的存储中
+     */
+    @Bean
+    public ChatMemoryProvider chatMemoryProvider() {
+        return memoryId -> MessageWindowChatMemory.builder()
+                .id(memoryId)
+                .maxMessages(maxMessages)
+                .chatMemoryStore(chatMemoryStore)
+                .build();
+    }
+
+    /**
+     * 流式请求的记忆：memoryId为 会话ID + REQUEST_SEPARATOR + 请求标识，读写的仍是会话的消息窗口；
+     * 请求标识只用于区分同一会话中并发请求的工具事件，请求结束后由调用方清除
+     */
+    @Bean
+    public ChatMemoryProvider requestChatMemoryProvider() {
+        return memoryId -> {
+            String id = memoryId.toString();
+            int separator = id.indexOf(REQUEST_SEPARATOR);
+            return chatMemoryProvider().get(separator > 0 ? id.substring(0, separator) : id);
+        };
+    }
+
+    /**
+     * 快速模型和对冲请求的临时记忆：以会话当前的消息为初始内容，调用结束后由调用方清除句柄和消息；
+     * 输出通过校验时才写回会话记忆，升级到主模型时会话中不会留下快速模型的输出
+     */
+    @Bean
+    public ChatMemoryProvider scratchChatMemoryProvider() {
+        return memoryId -> {
+            ChatMemory memory = MessageWindowChatMemory.builder()
+                    .id(memoryId)
+                    .maxMessages(maxMessages)
+                    .chatMemoryStore(scratchMemoryStore)
+                    .build();
+            String id = memoryId.toString();
+            int separator = id.indexOf(SCRATCH_SEPARATOR);
+            if (separator > 0) {
+                chatMemoryProvider().get(id.substring(0, separator)).messages().forEach(memory::add);
+            }
+            return memory;
+        };
+    }
+
+    /**
+     * 快速模型层，经ChatModelInstrumentation包装后与主模型共用指标和并发限制
+     */
+    @Bean
+    public ChatModel fastChatModel() {
+        return QwenChatModel.builder()
+                .apiKey(dashscopeApiKey)
+                .modelName(fastModelName)
+                .build();
+    }
+
+    /**
+     * 对冲请求的备用模型
+     */
+    @Bean
+    public ChatModel hedgeChatModel() {
+        return QwenChatModel.builder()
+                .apiKey(dashscopeApiKey)
+                .modelName(hedgeModelName)
+                .build();
+    }
+
+    /**
+     * MCP工具（带结果缓存，路径规划工具使用RouteCache） + 本地工具（公网IP、本地地名库），执行时向ToolEventBus发布阶段事件，
+     * 同一轮的多个工具调用并发执行
+     */
+    @Bean
+    public ToolProvider aiToolProvider() {
+        return new ObservableToolProvider(new RouteCachingToolProvider(cachingMcpToolProvider, routeCache), toolEventBus, parallelToolExecution, publicIpUtil, gazetteer);
+    }
 
     @Bean
     public AiHelperService aiHelperService(){
 
 
+        AiHelperService service = AiServices.builder(AiHelperService.class)
+                .chatModel(qwenChatModel)
+                .chatMemoryProvider(chatMemoryProvider())
+                .toolProvider(aiToolProvider())
+                .build();
+        // AiServices为每个memoryId保留一个记忆句柄，会话被存储淘汰时一并移除
+        chatMemoryStore.addEvictionListener(service::evictChatMemory);
+        return service;
+    }
+
+    /**
+     * 使用快速模型和临时记忆的AiHelperService，memoryId为 会话ID + SCRATCH_SEPARATOR + 调用标识
+     */
+    @Bean
+    public AiHelperService fastAiHelperService() {
+        return AiServices.builder(AiHelperService.class)
+                .chatModel(fastChatModel())
+                .chatMemoryProvider(scratchChatMemoryProvider())
+                .toolProvider(aiToolProvider())
+                .build();
+    }
+
+    /**
+     * 使用主模型和临时记忆的AiHelperService，对冲时作为主请求
+     */
+    @Bean
+    public AiHelperService scratchAiHelperService() {
         return AiServices.builder(AiHelperService.class)
-                .chatModel(deepSeekChatModel)
-                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(1000))
-                .toolProvider(mapMcpConfig.mcpToolProvider())
-                .tools(new PublicIpUtil())
+                .chatModel(qwenChatModel)
+                .chatMemoryProvider(scratchChatMemoryProvider())
+                .toolProvider(aiToolProvider())
+                .build();
+    }
+
+    /**
+     * 使用备用模型和临时记忆的AiHelperService，对冲时作为备用请求
+     */
+    @Bean
+    public AiHelperService hedgeAiHelperService() {
+        return AiServices.builder(AiHelperService.class)
+                .chatModel(hedgeChatModel())
+                .chatMemoryProvider(scratchChatMemoryProvider())
+                .toolProvider(aiToolProvider())
+                .build();
+    }
+
+    /**
+     * 流式AiHelperService，memoryId为 会话ID + REQUEST_SEPARATOR + 请求标识
+     */
+    @Bean
+    public AiHelperStreamingService aiHelperStreamingService() {
+        return AiServices.builder(AiHelperStreamingService.class)
+                .streamingChatModel(qwenStreamingChatModel)
+                .chatMemoryProvider(requestChatMemoryProvider())
+                .toolProvider(aiToolProvider())
                 .build();
     }
 }
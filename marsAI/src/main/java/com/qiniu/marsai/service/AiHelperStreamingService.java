@@ -0,0 +1,15 @@
+package com.qiniu.marsai.service;
+
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+
+
+public interface AiHelperStreamingService extends ChatMemoryAccess {
+
+    @SystemMessage(fromResource = "system-prompt.txt")
+    TokenStream chat(@MemoryId String memoryId, @UserMessage String userMessage);
+
+}
@@ -0,0 +1,133 @@
+package com.qiniu.marsai.service;
+
+import com.qiniu.marsai.controller.JsonBodies;
+import com.qiniu.marsai.deadline.Deadline;
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.deadline.DeadlineExceededException;
+import com.qiniu.marsai.limit.LimitExceededException;
+import com.qiniu.marsai.tool.ToolEventBus;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 流式对话服务
+ * 将TokenStream与工具调用事件合并为SSE事件流：
+ * stage（工具调用开始/结束）、token（模型输出片段）、result（完整结果）、error（异常）；
+ * 超过请求截止时间时推送 {"msg":"timeout"} 的error事件并结束。
+ * 每个请求使用 会话ID + 请求标识 作为memoryId，同一会话的并发请求只收到各自的工具事件
+ */
+@Slf4j
+@Service
+public class AiStreamService {
+
+    @Resource
+    private AiHelperStreamingService aiHelperStreamingService;
+
+    @Resource
+    private ToolEventBus toolEventBus;
+
+    @Resource
+    private RouteIntentService routeIntentService;
+
+    public Flux<ServerSentEvent<String>> chat(String memoryId, String text, String origin) {
+        // 在本轮写入会话记忆之前判断，追问的结果不写入缓存
+        boolean selfContained = routeIntentService.selfContained(memoryId, text);
+        String cached = routeIntentService.cached(memoryId, text, origin);
+        if (cached != null) {
+            return Flux.just(event("result", cached));
+        }
+        String fast = routeIntentService.fastPath(memoryId, text, origin);
+        if (fast != null) {
+            return Flux.just(event("result", fast));
+        }
+        Deadline deadline = DeadlineContext.current();
+        Flux<ServerSentEvent<String>> events = Flux.create(sink -> {
+            String requestId = memoryId + AiHelperServiceFactory.REQUEST_SEPARATOR + UUID.randomUUID();
+            Runnable unsubscribe = toolEventBus.subscribe(requestId, new ToolEventBus.Listener() {
+                @Override
+                public void onToolStarted(ToolExecutionRequest request) {
+                    sink.next(stageEvent("tool_started", request.name(), -1));
+                }
+
+                @Override
+                public void onToolFinished(ToolExecutionRequest request, String result, long elapsedMs) {
+                    sink.next(stageEvent("tool_finished", request.name(), elapsedMs));
+                }
+            });
+            sink.onDispose(() -> {
+                unsubscribe.run();
+                aiHelperStreamingService.evictChatMemory(requestId);
+            });
+
+            try {
+                aiHelperStreamingService.chat(requestId, routeIntentService.userMessage(text, origin))
+                        .onPartialResponse(token -> sink.next(event("token", token)))
+                        .onCompleteResponse(response -> {
+                            String result = routeIntentService.normalize(response.aiMessage().text());
+                            if (selfContained) {
+                                routeIntentService.remember(text, origin, result);
+                            }
+                            sink.next(event("result", result));
+                            sink.complete();
+                        })
+                        .onError(error -> fail(sink, error))
+                        .start();
+            } catch (Exception e) {
+                fail(sink, e);
+            }
+        }, FluxSink.OverflowStrategy.BUFFER);
+        if (deadline == null) {
+            return events;
+        }
+        DeadlineExceededException exceeded = new DeadlineExceededException("llm", deadline.budgetMs());
+        if (deadline.isExpired()) {
+            return Flux.just(event("error", JsonBodies.timeout(exceeded)));
+        }
+        // 超时后取消订阅，模型输出和工具事件不再推送
+        return events.timeout(Duration.ofMillis(deadline.remainingMillis()), Flux.defer(() -> {
+            log.warn("流式对话超时: {}", exceeded.getMessage());
+            return Flux.just(event("error", JsonBodies.timeout(exceeded)));
+        }));
+    }
+
+    private void fail(FluxSink<ServerSentEvent<String>> sink, Throwable error) {
+        LimitExceededException limited = LimitExceededException.find(error);
+        if (limited != null) {
+            // 响应头已经发出，无法再改成429，在错误事件中带上重试间隔
+            log.warn("流式对话被限流: {}", limited.getMessage());
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("msg", "busy");
+            data.put("retryAfter", limited.getRetryAfterSeconds());
+            sink.next(event("error", JsonBodies.write(data)));
+            sink.complete();
+            return;
+        }
+        log.error("流式对话失败", error);
+        sink.next(event("error", JsonBodies.ERROR));
+        sink.complete();
+    }
+
+    private static ServerSentEvent<String> stageEvent(String stage, String tool, long elapsedMs) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("stage", stage);
+        data.put("tool", tool);
+        if (elapsedMs >= 0) {
+            data.put("elapsedMs", elapsedMs);
+        }
+        return event("stage", JsonBodies.write(data));
+    }
+
+    private static ServerSentEvent<String> event(String name, String data) {
+        return ServerSentEvent.<String>builder().event(name).data(data).build();
+    }
+}
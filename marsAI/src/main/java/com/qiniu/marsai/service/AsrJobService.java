@@ -0,0 +1,518 @@
+package com.qiniu.marsai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qiniu.marsai.asr.AudioClip;
+import com.qiniu.marsai.controller.JsonBodies;
+import com.qiniu.marsai.deadline.Deadline;
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.deadline.DeadlineExceededException;
+import com.qiniu.marsai.http.OutboundHttpClient;
+import com.qiniu.marsai.limit.AdaptiveLimiter;
+import com.qiniu.marsai.limit.ConcurrencyLimits;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步语音识别任务
+ * 上传音频后立即返回任务ID，由一个共享的调度线程跟踪所有未完成的讯飞订单：
+ * 首次查询时间按音频时长和历史转写耗时比例推算，之后按指数退避查询；
+ * 转写完成后继续解析线路意图，结果通过SSE或回调地址推送。待处理任务表有上限；
+ * 内容相同的音频同时只向讯飞提交一次，其它任务等待同一份转写结果；
+ * 提交时先向asr限流器申请许可，按上传耗时自适应调整并发上限；
+ * 任务在后台执行，不沿用提交请求的截止时间，而是从提交起max-wait-minutes为止，上传、查询和意图解析都不超过剩余时间
+ */
+@Slf4j
+@Service
+public class AsrJobService {
+
+    /**
+     * 音频为空时使用的默认指令，与同步接口保持一致
+     */
+    private static final String EMPTY_AUDIO_TEXT = "导航上海到北京";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Duration CALLBACK_TIMEOUT = Duration.ofSeconds(10);
+
+    @Resource
+    private AsrService asrService;
+
+    @Resource
+    private RouteIntentService routeIntentService;
+
+    @Resource
+    private OutboundHttpClient outboundHttpClient;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ConcurrencyLimits concurrencyLimits;
+
+    @Value("${asr.jobs.coalesce:true}")
+    private boolean coalesce;
+
+    @Value("${asr.jobs.max-pending:200}")
+    private int maxPending;
+
+    @Value("${asr.jobs.max-jobs:1000}")
+    private int maxJobs;
+
+    @Value("${asr.jobs.retention-minutes:10}")
+    private long retentionMinutes;
+
+    @Value("${asr.jobs.max-wait-minutes:10}")
+    private long maxWaitMinutes;
+
+    /**
+     * 允许的回调主机，为空时不接受回调地址
+     */
+    @Value("${asr.jobs.callback-allowed-hosts:}")
+    private List<String> callbackAllowedHosts;
+
+    @Value("${asr.jobs.min-poll-ms:1000}")
+    private long minPollMs;
+
+    @Value("${asr.jobs.max-poll-ms:10000}")
+    private long maxPollMs;
+
+    public enum Status {
+        TRANSCRIBING, PLANNING, DONE, FAILED
+    }
+
+    /**
+     * 单个识别任务
+     */
+    public static class Job {
+        final String id = UUID.randomUUID().toString();
+        final String sessionId;
+        final String origin;
+        final String callbackUrl;
+        final Deadline deadline;
+        final long createdAt = System.currentTimeMillis();
+        final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        volatile Status status = Status.TRANSCRIBING;
+        volatile XfyunAsrClient client;
+        volatile CompletableFuture<String> transcription;
+        volatile String transcript;
+        volatile String result;
+        volatile String error;
+        volatile DeadlineExceededException timeout;
+        volatile long finishedAt;
+        volatile long nextPollMs;
+        volatile int polls;
+
+        Job(String sessionId, String origin, String callbackUrl, Deadline deadline) {
+            this.sessionId = sessionId;
+            this.origin = origin;
+            this.callbackUrl = callbackUrl;
+            this.deadline = deadline;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        boolean isFinished() {
+            return status == Status.DONE || status == Status.FAILED;
+        }
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 转写耗时与音频时长之比的指数加权平均，用于推算首次查询时间
+     */
+    private volatile double ewmaTranscribeRatio = 0.5;
+
+    // 调度线程只负责计时，网络请求和大模型调用放到工作线程中执行
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "asr-job-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "asr-job-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SingleFlight<String, String> transcriptions;
+
+    private AdaptiveLimiter uploadLimiter;
+
+    public AsrJobService() {
+        poller.scheduleWithFixedDelay(this::purgeFinished, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PostConstruct
+    public void init() {
+        transcriptions = new SingleFlight<>("asr", meterRegistry);
+        uploadLimiter = concurrencyLimits.get(ConcurrencyLimits.ASR);
+    }
+
+    /**
+     * 提交识别任务
+     * 请求结束后MultipartFile不再可用，所以先同步读入内存（有大小限制），上传和查询都在后台进行
+     * @param audioFile 上传的WAV音频
+     * @param sessionId 会话ID
+     * @param origin 客户端位置标识
+     * @param callbackUrl 可选的结果回调地址
+     * @return 新建的任务
+     * @throws IllegalStateException 待处理任务已满
+     * @throws com.qiniu.marsai.limit.LimitExceededException 讯飞转写并发已满
+     * @throws IllegalArgumentException 音频不合法或超过限制
+     */
+    public Job submit(MultipartFile audioFile, String sessionId, String origin, String callbackUrl) throws IOException {
+        checkCallbackUrl(callbackUrl, callbackAllowedHosts);
+        AudioClip clip = audioFile.isEmpty() ? null : asrService.readAudio(audioFile);
+        AdaptiveLimiter.Permit permit = clip == null || uploadLimiter == null ? null : uploadLimiter.acquire();
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            if (permit != null) {
+                permit.ignore();
+            }
+            throw new IllegalStateException("语音识别任务过多，请稍后重试");
+        }
+        if (jobs.size() >= maxJobs) {
+            evictOldestFinished();
+        }
+        // 提交请求的截止时间只约束本次HTTP请求，后台任务使用自己的截止时间
+        Job job = new Job(sessionId, origin, callbackUrl == null || callbackUrl.isBlank() ? null : callbackUrl,
+                Deadline.after(TimeUnit.MINUTES.toMillis(maxWaitMinutes)));
+        jobs.put(job.id, job);
+
+        if (clip == null) {
+            workers.execute(() -> plan(job, EMPTY_AUDIO_TEXT));
+        } else {
+            transcribe(job, clip, permit);
+        }
+        return job;
+    }
+
+    /**
+     * 回调地址只能是http/https，且主机在允许列表中，防止服务端被用来请求内网地址
+     * @throws IllegalArgumentException 地址不合法或主机不在允许列表中
+     */
+    static void checkCallbackUrl(String callbackUrl, List<String> allowedHosts) {
+        if (callbackUrl == null || callbackUrl.isBlank()) {
+            return;
+        }
+        URI uri;
+        try {
+            uri = new URI(callbackUrl.trim());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("回调地址格式错误");
+        }
+        String scheme = uri.getScheme();
+        if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
+            throw new IllegalArgumentException("回调地址只支持http/https");
+        }
+        String host = uri.getHost();
+        if (host == null || uri.getUserInfo() != null || allowedHosts == null
+                || allowedHosts.stream().noneMatch(allowed -> allowed.trim().equalsIgnoreCase(host))) {
+            throw new IllegalArgumentException("回调地址的主机不在允许列表中");
+        }
+    }
+
+    public Job get(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * 订阅任务事件：status为状态变化，result为最终结果，error为失败原因
+     */
+    public SseEmitter subscribe(Job job) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(maxWaitMinutes + 1));
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(e -> job.emitters.remove(emitter));
+        job.emitters.add(emitter);
+        send(job, emitter, "status", view(job));
+        // 订阅前任务可能已经结束
+        if (job.isFinished() && job.emitters.remove(emitter)) {
+            finish(job, emitter);
+        }
+        return emitter;
+    }
+
+    /**
+     * 任务状态视图
+     */
+    public Map<String, Object> view(Job job) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("jobId", job.id);
+        view.put("status", job.status.name());
+        view.put("polls", job.polls);
+        view.put("elapsedMs", (job.isFinished() ? job.finishedAt : System.currentTimeMillis()) - job.createdAt);
+        if (job.transcript != null) {
+            view.put("transcript", job.transcript);
+        }
+        if (job.result != null) {
+            view.put("result", parseResult(job.result));
+        }
+        if (job.error != null) {
+            view.put("error", job.error);
+        }
+        if (job.timeout != null) {
+            view.put("timeout", Map.of("stage", job.timeout.getStage(), "budgetMs", job.timeout.getBudgetMs()));
+        }
+        return view;
+    }
+
+    /**
+     * 任务表统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jobs", jobs.size());
+        stats.put("pending", pending.get());
+        stats.put("maxPending", maxPending);
+        stats.put("transcribeRatio", ewmaTranscribeRatio);
+        return stats;
+    }
+
+    /**
+     * 转写请求合并统计
+     */
+    public Map<String, Object> coalesceStats() {
+        return transcriptions.stats();
+    }
+
+    private void transcribe(Job job, AudioClip clip, AdaptiveLimiter.Permit permit) {
+        CompletableFuture<String> transcript = coalesce
+                ? transcriptions.executeAsync(clip.contentHash(), () -> startTranscription(job, clip, permit),
+                        Duration.ofMillis(Math.max(1, job.deadline.remainingMillis())))
+                : startTranscription(job, clip, permit);
+        if (job.transcription == null && permit != null) {
+            // 合并到了其它任务的转写上，不占用上传并发
+            permit.ignore();
+        }
+        boolean follower = job.transcription == null;
+        transcript.whenComplete((text, e) -> {
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (follower && DeadlineExceededException.find(cause) != null && !job.deadline.isExpired()) {
+                    // 合并的转写因leader任务的截止时间失败，本任务仍有剩余时间，自行重新转写
+                    log.info("语音识别任务{}合并的转写超时，在剩余时间内重新转写", job.id);
+                    workers.execute(() -> transcribe(job, clip, null));
+                    return;
+                }
+                if (cause instanceof SingleFlight.FollowerTimeoutException && job.deadline.isExpired()) {
+                    cause = new DeadlineExceededException("asr", job.deadline.budgetMs());
+                }
+                fail(job, cause);
+            } else {
+                workers.execute(() -> plan(job, text));
+            }
+        });
+    }
+
+    /**
+     * 由本任务上传音频并查询转写结果
+     */
+    private CompletableFuture<String> startTranscription(Job job, AudioClip clip, AdaptiveLimiter.Permit permit) {
+        job.transcription = new CompletableFuture<>();
+        workers.execute(() -> upload(job, clip, permit));
+        return job.transcription;
+    }
+
+    private void upload(Job job, AudioClip clip, AdaptiveLimiter.Permit permit) {
+        try {
+            XfyunAsrClient client = asrService.createClient(clip);
+            client.setDeadline(job.deadline);
+            client.uploadAudio();
+            if (permit != null) {
+                permit.success();
+            }
+            job.client = client;
+            // 首次查询放在预计转写完成的时间点，避免音频还在处理时空查
+            long firstPoll = Math.min(job.deadline.remainingMillis(),
+                    Math.max(minPollMs, (long) (client.getAudioDuration() * ewmaTranscribeRatio)));
+            job.nextPollMs = minPollMs;
+            schedulePoll(job, firstPoll);
+        } catch (Exception e) {
+            log.warn("语音识别任务{}上传失败: {}", job.id, e.getMessage());
+            if (permit != null) {
+                permit.dropped();
+            }
+            job.transcription.completeExceptionally(DeadlineExceededException.find(e) != null ? e
+                    : new IllegalStateException("音频上传失败: " + e.getMessage(), e));
+        }
+    }
+
+    private void schedulePoll(Job job, long delayMs) {
+        poller.schedule(() -> workers.execute(() -> poll(job)), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(Job job) {
+        if (job.isFinished()) {
+            return;
+        }
+        try {
+            job.polls++;
+            JSONObject response = job.client.queryResultOnce();
+            if (XfyunAsrClient.orderStatus(response) == XfyunAsrClient.STATUS_DONE) {
+                observeTranscribeTime(job);
+                String transcript = job.client.lastTranscript();
+                log.info("语音识别任务{}转写完成，查询{}次: {}", job.id, job.polls, transcript);
+                job.transcription.complete(transcript);
+                return;
+            }
+            if (job.deadline.isExpired()) {
+                log.warn("语音识别任务{}转写超时，订单ID：{}", job.id, job.client.getOrderId());
+                job.transcription.completeExceptionally(new DeadlineExceededException("asr", job.deadline.budgetMs()));
+                return;
+            }
+            long delay = job.nextPollMs;
+            job.nextPollMs = Math.min(maxPollMs, delay * 2);
+            // 最后一次查询放在截止时间点上
+            schedulePoll(job, Math.min(delay, job.deadline.remainingMillis()));
+        } catch (Exception e) {
+            log.warn("语音识别任务{}查询失败: {}", job.id, e.getMessage());
+            job.transcription.completeExceptionally(e);
+        }
+    }
+
+    private void observeTranscribeTime(Job job) {
+        int duration = job.client.getAudioDuration();
+        if (duration <= 0) {
+            return;
+        }
+        double ratio = (double) (System.currentTimeMillis() - job.createdAt) / duration;
+        ewmaTranscribeRatio = ewmaTranscribeRatio * 0.8 + Math.min(ratio, 2.0) * 0.2;
+    }
+
+    private void plan(Job job, String transcript) {
+        job.transcript = transcript;
+        job.status = Status.PLANNING;
+        broadcast(job, "status", view(job));
+        try {
+            job.result = DeadlineContext.call(job.deadline,
+                    () -> routeIntentService.chat(job.sessionId, transcript, job.origin));
+            complete(job, Status.DONE);
+        } catch (Exception e) {
+            log.warn("语音识别任务{}解析意图失败: {}", job.id, e.getMessage());
+            fail(job, e);
+        }
+    }
+
+    private void fail(Job job, Throwable error) {
+        job.timeout = DeadlineExceededException.find(error);
+        fail(job, error.getMessage());
+    }
+
+    private void fail(Job job, String error) {
+        job.error = error == null ? "未知错误" : error;
+        complete(job, Status.FAILED);
+    }
+
+    private void complete(Job job, Status status) {
+        job.finishedAt = System.currentTimeMillis();
+        job.status = status;
+        job.client = null;
+        pending.decrementAndGet();
+        for (SseEmitter emitter : job.emitters) {
+            if (job.emitters.remove(emitter)) {
+                finish(job, emitter);
+            }
+        }
+        if (job.callbackUrl != null) {
+            workers.execute(() -> callback(job));
+        }
+    }
+
+    private void finish(Job job, SseEmitter emitter) {
+        if (job.status == Status.DONE) {
+            send(job, emitter, "result", job.result);
+        } else if (job.timeout != null) {
+            send(job, emitter, "error", JsonBodies.timeout(job.timeout));
+        } else {
+            send(job, emitter, "error", job.error);
+        }
+        emitter.complete();
+    }
+
+    private void broadcast(Job job, String event, Object data) {
+        for (SseEmitter emitter : job.emitters) {
+            send(job, emitter, event, data);
+        }
+    }
+
+    private void send(Job job, SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (Exception e) {
+            job.emitters.remove(emitter);
+        }
+    }
+
+    private void callback(Job job) {
+        try {
+            int status = outboundHttpClient.postWithoutRedirects(job.callbackUrl,
+                    Map.of("Content-Type", "application/json;charset=UTF-8"),
+                    MAPPER.writeValueAsBytes(view(job)), CALLBACK_TIMEOUT).statusCode();
+            log.info("语音识别任务{}回调完成，状态码{}", job.id, status);
+        } catch (Exception e) {
+            log.warn("语音识别任务{}回调失败: {}", job.id, e.getMessage());
+        }
+    }
+
+    private static Object parseResult(String result) {
+        try {
+            return MAPPER.readTree(result.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return result;
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已完成任务
+     */
+    void purgeFinished() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.finishedAt < expireBefore);
+    }
+
+    private void evictOldestFinished() {
+        jobs.values().stream()
+                .filter(Job::isFinished)
+                .min((a, b) -> Long.compare(a.finishedAt, b.finishedAt))
+                .ifPresent(job -> jobs.remove(job.id));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        workers.shutdownNow();
+    }
+}
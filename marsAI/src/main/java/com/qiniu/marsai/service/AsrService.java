@@ -1,18 +1,23 @@
 package com.qiniu.marsai.service;
 
+import com.qiniu.marsai.asr.AudioClip;
+import com.qiniu.marsai.http.OutboundHttpClient;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 @Service
 @Slf4j
 public class AsrService {
 
+    @Resource
+    private OutboundHttpClient outboundHttpClient;
+
     @Value("${asr.xfyun.app-id}")
     private String appId;
 
@@ -22,39 +27,32 @@ public class AsrService {
     @Value("${asr.xfyun.access-key-secret}")
     private String accessKeySecret;
 
-    public String transferAudio(MultipartFile audioFile) {
-        // 检查文件是否为空
-        if (audioFile.isEmpty()) {
-            return "导航上海到北京";
-        }
+    @Value("${asr.max-audio-bytes:5242880}")
+    private int maxAudioBytes;
 
-        // 将MultipartFile转换为临时文件
-        File tempFile = null;
-        String transcription = "";
-
-        try {
-            tempFile = File.createTempFile("audio-", ".wav");
-            audioFile.transferTo(tempFile);
-
-            // 调用讯飞API进行转写
-            XfyunAsrClient asrClient = new XfyunAsrClient(
-                    appId,
-                    accessKeyId,
-                    accessKeySecret,
-                    tempFile.getAbsolutePath()
-            );
-
-            JSONObject finalResult = asrClient.getTranscribeResult();
-            transcription = asrClient.parseOrderResult(finalResult);
-            log.info(transcription);
-            // 清理临时文件
-            tempFile.deleteOnExit();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    @Value("${asr.max-duration-ms:120000}")
+    private int maxDurationMs;
 
-        return transcription;
+    /**
+     * 读取上传的音频，只读一遍上传流，不落临时文件
+     * @throws IllegalArgumentException 超过大小或时长限制、不是WAV格式
+     */
+    public AudioClip readAudio(MultipartFile audioFile) throws IOException {
+        if (audioFile.getSize() > maxAudioBytes) {
+            throw new IllegalArgumentException("音频文件过大，最大支持" + maxAudioBytes / 1024 + "KB");
+        }
+        try (InputStream in = audioFile.getInputStream()) {
+            return AudioClip.read(in, audioFile.getOriginalFilename(), maxAudioBytes, maxDurationMs);
+        }
+    }
 
+    /**
+     * 创建讯飞转写客户端
+     * @param clip 已读入内存的音频
+     */
+    public XfyunAsrClient createClient(AudioClip clip) {
+        return new XfyunAsrClient(outboundHttpClient, appId, accessKeyId, accessKeySecret,
+                clip.data(), clip.name(), clip.header().durationMs());
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+package com.qiniu.marsai.service;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 有界会话记忆存储
+ * 按最近访问顺序保存各会话的消息，超过最大会话数时淘汰最久未访问的会话，
+ * 空闲超过TTL的会话由定时任务清理；淘汰和清理时通知监听方释放按会话保存的句柄
+ */
+@Slf4j
+@Component
+public class BoundedChatMemoryStore implements ChatMemoryStore {
+
+    /**
+     * 单条消息的固定开销估算（对象头、列表槽位等）
+     */
+    private static final int MESSAGE_OVERHEAD_BYTES = 64;
+
+    private final int maxEntries;
+    private final long idleTtlMs;
+
+    private final LinkedHashMap<Object, Entry> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private long approxBytes;
+    private long evictions;
+    private final List<Consumer<Object>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    private static class Entry {
+        List<ChatMessage> messages;
+        long bytes;
+        long lastAccess;
+    }
+
+    public BoundedChatMemoryStore(@Value("${chat.memory.max-entries:10000}") int maxEntries,
+                                  @Value("${chat.memory.idle-ttl-minutes:30}") long idleTtlMinutes) {
+        this.maxEntries = maxEntries;
+        this.idleTtlMs = idleTtlMinutes * 60_000L;
+    }
+
+    @Override
+    public synchronized List<ChatMessage> getMessages(Object memoryId) {
+        Entry entry = sessions.get(memoryId);
+        if (entry == null) {
+            return new ArrayList<>();
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return new ArrayList<>(entry.messages);
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        List<Object> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry entry = sessions.get(memoryId);
+            if (entry == null) {
+                entry = new Entry();
+                sessions.put(memoryId, entry);
+            }
+            long bytes = estimateBytes(messages);
+            approxBytes += bytes - entry.bytes;
+            entry.messages = new ArrayList<>(messages);
+            entry.bytes = bytes;
+            entry.lastAccess = System.currentTimeMillis();
+
+            // 超出容量时淘汰最久未访问的会话
+            Iterator<Map.Entry<Object, Entry>> it = sessions.entrySet().iterator();
+            while (sessions.size() > maxEntries && it.hasNext()) {
+                Map.Entry<Object, Entry> eldest = it.next();
+                if (eldest.getKey().equals(memoryId)) {
+                    continue;
+                }
+                approxBytes -= eldest.getValue().bytes;
+                evictions++;
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        notifyEvicted(evicted);
+    }
+
+    @Override
+    public synchronized void deleteMessages(Object memoryId) {
+        Entry removed = sessions.remove(memoryId);
+        if (removed != null) {
+            approxBytes -= removed.bytes;
+        }
+    }
+
+    /**
+     * 清理空闲超时的会话
+     */
+    @Scheduled(fixedDelayString = "${chat.memory.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTtlMs;
+        List<Object> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Object, Entry>> it = sessions.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Object, Entry> session = it.next();
+                if (session.getValue().lastAccess < deadline) {
+                    approxBytes -= session.getValue().bytes;
+                    evictions++;
+                    evicted.add(session.getKey());
+                    it.remove();
+                }
+            }
+            if (!evicted.isEmpty()) {
+                log.info("清理空闲会话 {} 个，剩余 {} 个", evicted.size(), sessions.size());
+            }
+        }
+        notifyEvicted(evicted);
+    }
+
+    /**
+     * 注册淘汰监听：会话因超出容量或空闲超时被移除后回调其memoryId，在锁外调用
+     */
+    public void addEvictionListener(Consumer<Object> listener) {
+        evictionListeners.add(listener);
+    }
+
+    private void notifyEvicted(List<Object> evicted) {
+        for (Object memoryId : evicted) {
+            for (Consumer<Object> listener : evictionListeners) {
+                listener.accept(memoryId);
+            }
+        }
+    }
+
+    /**
+     * 当前会话数量
+     */
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 当前保存消息的估算字节数
+     */
+    public synchronized long approxBytes() {
+        return approxBytes;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    public long idleTtlMs() {
+        return idleTtlMs;
+    }
+
+    private static long estimateBytes(List<ChatMessage> messages) {
+        long bytes = 0;
+        for (ChatMessage message : messages) {
+            bytes += MESSAGE_OVERHEAD_BYTES + 2L * textLength(message);
+        }
+        return bytes;
+    }
+
+    private static int textLength(ChatMessage message) {
+        if (message instanceof UserMessage userMessage) {
+            return userMessage.hasSingleText() ? userMessage.singleText().length() : userMessage.contents().size() * 256;
+        }
+        if (message instanceof AiMessage aiMessage) {
+            int length = aiMessage.text() == null ? 0 : aiMessage.text().length();
+            if (aiMessage.hasToolExecutionRequests()) {
+                length += aiMessage.toolExecutionRequests().stream()
+                        .mapToInt(request -> request.name().length() + (request.arguments() == null ? 0 : request.arguments().length()))
+                        .sum();
+            }
+            return length;
+        }
+        if (message instanceof ToolExecutionResultMessage toolMessage) {
+            return toolMessage.text() == null ? 0 : toolMessage.text().length();
+        }
+        if (message instanceof SystemMessage systemMessage) {
+            return systemMessage.text().length();
+        }
+        return 0;
+    }
+}
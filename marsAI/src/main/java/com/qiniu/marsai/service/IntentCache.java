@@ -0,0 +1,101 @@
+package com.qiniu.marsai.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 意图结果缓存
+ * 以归一化后的查询（依赖出发地时再加上解析出的出发地）为键，缓存模型输出的JSON；
+ * 键中不含会话上下文，只用于与上下文无关的查询，见RouteIntentService#selfContained；
+ * 带TTL和LRU容量上限，并统计命中/未命中次数
+ */
+@Component
+public class IntentCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMs;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private record Entry(String value, long expiresAt) {
+    }
+
+    public IntentCache(@Value("${intent.cache.enabled:true}") boolean enabled,
+                       @Value("${intent.cache.max-entries:5000}") int maxEntries,
+                       @Value("${intent.cache.ttl-minutes:10}") long ttlMinutes) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMinutes * 60_000L;
+    }
+
+    /**
+     * 计算缓存键
+     * @param query 原始查询
+     * @param origin 解析出的出发地（客户端位置），查询依赖出发地时参与计算
+     * @return 缓存键
+     */
+    public static String keyOf(String query, String origin) {
+        String normalized = QueryNormalizer.normalize(query);
+        if (QueryNormalizer.dependsOnOrigin(normalized)) {
+            return normalized + "@" + (origin == null ? "" : origin);
+        }
+        return normalized;
+    }
+
+    public String get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.value();
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, String value) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMs));
+            if (entries.size() > maxEntries) {
+                String eldest = entries.keySet().iterator().next();
+                entries.remove(eldest);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+}
@@ -0,0 +1,298 @@
+package com.qiniu.marsai.service;
+
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.limit.LimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 大模型对冲请求
+ * 主模型超过其近期延迟的指定分位数仍未返回时，把同一请求发给备用模型，先返回有效结果的一方胜出，另一方被取消。
+ * 对冲次数受全局比例上限约束：每个请求积累max-rate个令牌，每次对冲消耗一个，避免成本失控
+ */
+@Slf4j
+@Component
+public class LlmHedging {
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMs;
+    private final long initialDelayMs;
+    private final LatencyWindow window;
+    private final HedgeBudget budget;
+    private final MeterRegistry registry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong secondaryWins = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    public LlmHedging(MeterRegistry registry,
+                      @Value("${hedging.enabled:false}") boolean enabled,
+                      @Value("${hedging.percentile:0.9}") double percentile,
+                      @Value("${hedging.min-delay-ms:1500}") long minDelayMs,
+                      @Value("${hedging.initial-delay-ms:8000}") long initialDelayMs,
+                      @Value("${hedging.window-size:200}") int windowSize,
+                      @Value("${hedging.max-rate:0.1}") double maxRate) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMs = minDelayMs;
+        this.initialDelayMs = initialDelayMs;
+        this.window = new LatencyWindow(windowSize);
+        this.budget = new HedgeBudget(maxRate, 10);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 执行一次可能对冲的调用
+     * 主请求的耗时计入延迟窗口；主请求在对冲前失败、或两方都没有有效结果时，按主请求的结果返回或抛出其异常
+     * @param primary 主模型调用
+     * @param secondary 备用模型调用
+     * @param valid 结果是否有效，无效结果不能胜出
+     * @return 胜出的结果
+     */
+    public <T> T call(Supplier<T> primary, Supplier<T> secondary, Predicate<T> valid) {
+        requests.incrementAndGet();
+        budget.deposit();
+        long start = System.nanoTime();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        Attempt<T> first = new Attempt<>(DeadlineContext.wrap(primary), valid, winner, true);
+        first.start();
+        Attempt<T> second = null;
+        try {
+            try {
+                CompletableFuture.anyOf(winner, first.done).get(delayMs(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 超过对冲延迟仍未返回
+            } catch (ExecutionException e) {
+                // 主请求失败，下面按其结果处理
+            }
+            if (winner.isDone() || first.done.isDone()) {
+                return first.won() ? winner.join() : first.await();
+            }
+            if (!budget.tryWithdraw()) {
+                budgetExhausted.incrementAndGet();
+                outcome("budget_exhausted");
+                return first.await();
+            }
+            hedged.incrementAndGet();
+            log.info("主模型超过{}ms未返回，对冲到备用模型", delayMs());
+            second = new Attempt<>(DeadlineContext.wrap(secondary), valid, winner, false);
+            second.start();
+            CompletableFuture.allOf(first.done, second.done).whenComplete((v, e) -> winner.complete(null));
+            T result = winner.get();
+            if (result == null) {
+                outcome("none_valid");
+                return first.await();
+            }
+            if (second.won()) {
+                secondaryWins.incrementAndGet();
+            }
+            outcome(second.won() ? "secondary" : "primary");
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("对冲请求被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // 被取消的主请求按已等待的时间计入，避免窗口只剩较快的样本
+            if (first.done.isDone() || first.cancel()) {
+                window.record((System.nanoTime() - start) / 1_000_000);
+            }
+            if (second != null) {
+                second.cancel();
+            }
+        }
+    }
+
+    /**
+     * 当前的对冲延迟：主模型近期延迟的分位数，样本不足时使用初始值
+     */
+    public long delayMs() {
+        long quantile = window.percentile(percentile);
+        return quantile < 0 ? initialDelayMs : Math.max(minDelayMs, quantile);
+    }
+
+    private void outcome(String outcome) {
+        Counter.builder("marsai.llm.hedge")
+                .description("对冲后的请求结果：primary/secondary胜出、none_valid、budget_exhausted（超过对冲比例上限未对冲）")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 对冲统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("delayMs", delayMs());
+        stats.put("requests", requests.get());
+        stats.put("hedged", hedged.get());
+        stats.put("secondaryWins", secondaryWins.get());
+        stats.put("budgetExhausted", budgetExhausted.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 对冲中的一方；结果有效时尝试成为胜者
+     */
+    private class Attempt<T> {
+        private final Supplier<T> call;
+        private final Predicate<T> valid;
+        private final CompletableFuture<T> winner;
+        private final boolean primary;
+        private final CompletableFuture<T> done = new CompletableFuture<>();
+        private volatile Future<?> task;
+        private volatile boolean won;
+
+        Attempt(Supplier<T> call, Predicate<T> valid, CompletableFuture<T> winner, boolean primary) {
+            this.call = call;
+            this.valid = valid;
+            this.winner = winner;
+            this.primary = primary;
+        }
+
+        void start() {
+            task = executor.submit(() -> {
+                try {
+                    T result = call.get();
+                    if (valid.test(result) && winner.complete(result)) {
+                        won = true;
+                    }
+                    done.complete(result);
+                } catch (Throwable e) {
+                    if (primary && LimitExceededException.find(e) != null) {
+                        // 主请求因并发已满被拒绝时直接交给调用方返回429；备用请求被拒绝只算对冲失败
+                        winner.completeExceptionally(e);
+                    }
+                    done.completeExceptionally(e);
+                }
+            });
+        }
+
+        boolean won() {
+            return won;
+        }
+
+        /**
+         * 等待本方的结果，异常原样抛出
+         */
+        T await() {
+            try {
+                return done.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * @return 是否取消了仍在执行的请求
+         */
+        boolean cancel() {
+            if (task == null || done.isDone()) {
+                return false;
+            }
+            task.cancel(true);
+            return true;
+        }
+    }
+
+    /**
+     * 最近若干次主请求延迟的环形窗口
+     */
+    static final class LatencyWindow {
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples;
+        private int next;
+        private int count;
+
+        LatencyWindow(int size) {
+            this.samples = new long[Math.max(MIN_SAMPLES, size)];
+        }
+
+        synchronized void record(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * @param p 分位数，0到1
+         * @return 延迟分位数，样本不足时返回-1
+         */
+        synchronized long percentile(double p) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))];
+        }
+    }
+
+    /**
+     * 对冲比例上限：每个请求存入rate个令牌，最多积累burst个，每次对冲取出一个
+     */
+    static final class HedgeBudget {
+        private final double rate;
+        private final double burst;
+        private double tokens;
+
+        HedgeBudget(double rate, double burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+
+        synchronized void deposit() {
+            tokens = Math.min(burst, tokens + rate);
+        }
+
+        synchronized boolean tryWithdraw() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.qiniu.marsai.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户查询归一化
+ * 繁体转简体、去除空白和标点、同义词/别名替换，使同一意图的不同写法得到相同的缓存键
+ */
+@Slf4j
+public final class QueryNormalizer {
+
+    /**
+     * 地名和导航用语中常见的繁体字 -> 简体字
+     */
+    private static final String TRADITIONAL = "臺灣東門車機場長廣華號區縣鄉鎮橋園館風雲陽龍開導騎駕從來過達還這裡後遊蘇濟瀋廈慶鐵線們點學醫國際飛賓為濱漢寧夢樓憶廟區鄭州貴圖書價錢務總統嶺蘭烏魯齊湯鵬鳳邊遼凱遠運輸頭灣岡陝關陸島嶼雙閩贛滬魯鄂湘粵瓊渝黔滇藏陝隴寶傑馬驛環畫紅綠條圓館聖爾遜碼灘";
+    private static final String SIMPLIFIED  = "台湾东门车机场长广华号区县乡镇桥园馆风云阳龙开导骑驾从来过达还这里后游苏济沈厦庆铁线们点学医国际飞宾为滨汉宁梦楼忆庙区郑州贵图书价钱务总统岭兰乌鲁齐汤鹏凤边辽凯远运输头湾冈陕关陆岛屿双闽赣沪鲁鄂湘粤琼渝黔滇藏陕陇宝杰马驿环画红绿条圆馆圣尔逊码滩";
+
+    private static final Map<Character, Character> TRADITIONAL_TO_SIMPLIFIED = new LinkedHashMap<>();
+
+    /**
+     * 同义词/别名，按长度从长到短替换
+     */
+    private static final List<Map.Entry<String, String>> SYNONYMS = new ArrayList<>();
+
+    /**
+     * 表示"出发"的命令前缀，去掉后如果直接以"到"开头说明没有指明出发地
+     */
+    private static final String[] COMMAND_PREFIXES = {"导航", "我要", "我想", "帮我", "请", "带我", "我", "要", "想"};
+
+    static {
+        for (int i = 0; i < TRADITIONAL.length(); i++) {
+            TRADITIONAL_TO_SIMPLIFIED.put(TRADITIONAL.charAt(i), SIMPLIFIED.charAt(i));
+        }
+        loadSynonyms();
+    }
+
+    private QueryNormalizer() {
+    }
+
+    /**
+     * 归一化查询文本
+     * @param query 原始查询
+     * @return 归一化后的文本
+     */
+    public static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(query.length());
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c) || isPunctuation(c)) {
+                continue;
+            }
+            // 全角字母数字转半角
+            if (c >= '！' && c <= '～') {
+                c = (char) (c - 0xFEE0);
+            }
+            Character simplified = TRADITIONAL_TO_SIMPLIFIED.get(c);
+            sb.append(Character.toLowerCase(simplified != null ? simplified : c));
+        }
+        String normalized = sb.toString();
+        for (Map.Entry<String, String> synonym : SYNONYMS) {
+            if (normalized.contains(synonym.getKey())) {
+                normalized = normalized.replace(synonym.getKey(), synonym.getValue());
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * 判断归一化后的查询是否依赖出发地（用户没有指明出发地，需要按客户端位置推断）
+     * @param normalized 归一化后的查询
+     * @return 是否依赖出发地
+     */
+    public static boolean dependsOnOrigin(String normalized) {
+        if (normalized.contains("从")) {
+            return false;
+        }
+        String rest = normalized;
+        boolean stripped = true;
+        while (stripped) {
+            stripped = false;
+            for (String prefix : COMMAND_PREFIXES) {
+                if (rest.startsWith(prefix)) {
+                    rest = rest.substring(prefix.length());
+                    stripped = true;
+                }
+            }
+        }
+        int arrow = rest.indexOf('到');
+        // "到B"、"B" 都没有出发地；"A到B" 有出发地
+        return arrow <= 0;
+    }
+
+    private static boolean isPunctuation(char c) {
+        int type = Character.getType(c);
+        return type == Character.CONNECTOR_PUNCTUATION
+                || type == Character.DASH_PUNCTUATION
+                || type == Character.START_PUNCTUATION
+                || type == Character.END_PUNCTUATION
+                || type == Character.INITIAL_QUOTE_PUNCTUATION
+                || type == Character.FINAL_QUOTE_PUNCTUATION
+                || type == Character.OTHER_PUNCTUATION
+                || type == Character.MATH_SYMBOL
+                || type == Character.OTHER_SYMBOL;
+    }
+
+    private static void loadSynonyms() {
+        try (InputStream in = QueryNormalizer.class.getClassLoader().getResourceAsStream("query-synonyms.txt")) {
+            if (in == null) {
+                log.warn("未找到同义词文件 query-synonyms.txt");
+                return;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                if (eq <= 0) {
+                    continue;
+                }
+                SYNONYMS.add(Map.entry(line.substring(0, eq).trim(), line.substring(eq + 1).trim()));
+            }
+            SYNONYMS.sort(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getKey().length()).reversed());
+        } catch (IOException e) {
+            log.warn("加载同义词文件失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.qiniu.marsai.service;
+
+import com.qiniu.marsai.deadline.Deadline;
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.deadline.DeadlineExceededException;
+import com.qiniu.marsai.geo.IpLocation;
+import com.qiniu.marsai.geo.IpLocationIndex;
+import com.qiniu.marsai.limit.LimitExceededException;
+import com.qiniu.marsai.metrics.LlmMetrics;
+import com.qiniu.marsai.route.FastPathPlanner;
+import com.qiniu.marsai.route.ModelRouter;
+import com.qiniu.marsai.route.RouteIntent;
+import com.qiniu.marsai.route.RouteIntentCodec;
+import com.qiniu.marsai.route.RouteQueryParser;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 线路意图服务
+ * 控制器统一通过这里调用大模型，在AiHelperService之前加一层归一化结果缓存；
+ * 缓存和请求合并只用于结果与会话上下文无关的查询：句式可解析、指明了目的地，或会话中还没有对话；
+ * 客户端地址能在离线索引中查到位置时，把位置附在用户消息后作为默认出发地，模型不必再调用工具获取；
+ * 简单的线路查询先走规则快速路径，不调用大模型；
+ * 模型输出解析为RouteIntent后再统一序列化，解析失败时用JSON模式让模型修复一次；
+ * 缓存未命中时，缓存键相同的并发请求合并为一次计算；合并的计算因leader的截止时间失败时，仍有剩余时间的follower自行计算；
+ * 需要大模型时由ModelRouter选择模型层，快速模型的输出不完整时升级到主模型；
+ * 开启对冲时，主模型超过近期延迟分位数未返回则同时请求备用模型，两者都在临时记忆上执行，胜出的结果写回会话记忆；
+ * 大模型调用和合并等待都不超过请求截止时间的剩余时间
+ */
+@Slf4j
+@Service
+public class RouteIntentService {
+
+    @Resource
+    private AiHelperService aiHelperService;
+
+    @Resource
+    private IntentCache intentCache;
+
+    @Resource
+    private LlmMetrics llmMetrics;
+
+    @Resource
+    private IpLocationIndex ipLocationIndex;
+
+    @Resource
+    private FastPathPlanner fastPathPlanner;
+
+    @Resource
+    private ChatMemoryProvider chatMemoryProvider;
+
+    @Resource
+    private AiHelperService fastAiHelperService;
+
+    @Resource
+    private ModelRouter modelRouter;
+
+    @Resource
+    private AiHelperService scratchAiHelperService;
+
+    @Resource
+    private AiHelperService hedgeAiHelperService;
+
+    @Resource
+    private LlmHedging llmHedging;
+
+    @Resource
+    private ChatMemoryStore scratchChatMemoryStore;
+
+    @Resource
+    private AiHelper aiHelper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${intent.coalesce.enabled:true}")
+    private boolean coalesceEnabled;
+
+    @Value("${intent.coalesce.follower-timeout-ms:60000}")
+    private long followerTimeoutMs;
+
+    private SingleFlight<String, Answer> flights;
+
+    /**
+     * 合并计算的结果，记录由哪个会话计算
+     */
+    private record Answer(String sessionId, String result) {
+    }
+
+    @PostConstruct
+    public void init() {
+        flights = new SingleFlight<>("intent", meterRegistry);
+    }
+
+    /**
+     * 解析用户的线路意图
+     * @param sessionId 会话ID
+     * @param text 用户输入
+     * @param origin 客户端地址，用于确定默认出发地和依赖出发地的查询的缓存键
+     * @return 规范化后的意图JSON
+     */
+    public String chat(String sessionId, String text, String origin) {
+        IpLocation location = ipLocationIndex.lookup(origin);
+        if (!selfContained(sessionId, text)) {
+            // 追问（如"改成骑行"）依赖本会话的上下文，不使用缓存，也不与其它会话合并
+            return compute(sessionId, text, location, null);
+        }
+        String key = IntentCache.keyOf(text, originKey(origin, location));
+        String cached = intentCache.get(key);
+        if (cached != null) {
+            log.info("意图缓存命中: {}", key);
+            addToMemory(sessionId, text, location, cached);
+            return cached;
+        }
+        if (!coalesceEnabled) {
+            return compute(sessionId, text, location, key);
+        }
+        Answer answer;
+        AtomicBoolean leader = new AtomicBoolean();
+        try {
+            answer = flights.execute(key, () -> {
+                leader.set(true);
+                return new Answer(sessionId, compute(sessionId, text, location, key));
+            }, DeadlineContext.cap(Duration.ofMillis(followerTimeoutMs), "llm"));
+        } catch (SingleFlight.FollowerTimeoutException e) {
+            // 等待超过本请求的剩余时间或合并等待上限，按超时返回
+            Deadline deadline = DeadlineContext.current();
+            throw new DeadlineExceededException("llm",
+                    deadline != null && deadline.isExpired() ? deadline.budgetMs() : followerTimeoutMs);
+        } catch (RuntimeException e) {
+            Deadline deadline = DeadlineContext.current();
+            if (leader.get() || DeadlineExceededException.find(e) == null || deadline != null && deadline.isExpired()) {
+                throw e;
+            }
+            // 合并的计算因leader请求的截止时间失败，本请求仍有剩余时间，自行计算
+            log.info("合并的意图计算超时，在剩余时间内重新计算: {}", key);
+            return compute(sessionId, text, location, key);
+        }
+        if (!answer.sessionId().equals(sessionId)) {
+            // 结果由其它会话算出，补写本会话的记忆
+            addToMemory(sessionId, text, location, answer.result());
+        }
+        return answer.result();
+    }
+
+    /**
+     * @param key 缓存键，依赖会话上下文的查询为null，结果不写入缓存
+     */
+    private String compute(String sessionId, String text, IpLocation location, String key) {
+        String fast = fastPath(sessionId, text, location);
+        if (fast != null) {
+            remember(key, fast);
+            return fast;
+        }
+        String message = withLocation(text, location);
+        String result = DeadlineContext.callWithin("llm", () -> chatTiered(sessionId, text, location, message));
+        remember(key, result);
+        return result;
+    }
+
+    /**
+     * 按ModelRouter的决策调用模型：快速模型在临时记忆上执行，结果完整时写回会话记忆，
+     * 否则丢弃临时记忆并升级到主模型
+     */
+    private String chatTiered(String sessionId, String text, IpLocation location, String message) {
+        ModelRouter.Decision decision = modelRouter.route(text);
+        if (decision.tier() == ModelRouter.Tier.FAST) {
+            String scratchId = scratchId(sessionId);
+            String reason;
+            try {
+                String output = modelRouter.timed(ModelRouter.Tier.FAST,
+                        () -> llmMetrics.countToolRounds(() -> fastAiHelperService.chat(scratchId, message)));
+                RouteIntent intent = RouteIntentCodec.parse(output);
+                if (intent.isComplete()) {
+                    String result = RouteIntentCodec.toJson(intent);
+                    addToMemory(sessionId, text, location, result);
+                    return result;
+                }
+                reason = intent.isError() ? "error" : "incomplete";
+            } catch (IllegalArgumentException e) {
+                reason = "invalid";
+            } catch (RuntimeException e) {
+                if (LimitExceededException.find(e) != null) {
+                    throw e;
+                }
+                log.warn("快速模型调用失败: {}", e.getMessage());
+                reason = "failed";
+            } finally {
+                discardScratch(fastAiHelperService, scratchId);
+            }
+            log.info("快速模型输出不可用（{}），升级到主模型", reason);
+            modelRouter.escalated(reason);
+        }
+        if (llmHedging.isEnabled()) {
+            return chatHedged(sessionId, text, location, message);
+        }
+        return normalize(modelRouter.timed(ModelRouter.Tier.STRONG,
+                () -> llmMetrics.countToolRounds(() -> aiHelperService.chat(sessionId, message))));
+    }
+
+    /**
+     * 主模型与备用模型对冲，完整的意图才能胜出
+     */
+    private String chatHedged(String sessionId, String text, IpLocation location, String message) {
+        String primaryId = scratchId(sessionId);
+        String secondaryId = scratchId(sessionId);
+        String output = modelRouter.timed(ModelRouter.Tier.STRONG, () -> llmHedging.call(
+                () -> chatScratch(scratchAiHelperService, primaryId, message),
+                () -> chatScratch(hedgeAiHelperService, secondaryId, message),
+                RouteIntentService::isComplete));
+        String result = normalize(output);
+        addToMemory(sessionId, text, location, result);
+        return result;
+    }
+
+    /**
+     * 在临时记忆上调用，结束时（包括被取消的一方实际结束时）清除临时记忆
+     */
+    private String chatScratch(AiHelperService service, String scratchId, String message) {
+        try {
+            return llmMetrics.countToolRounds(() -> service.chat(scratchId, message));
+        } finally {
+            discardScratch(service, scratchId);
+        }
+    }
+
+    /**
+     * 清除临时记忆：AiServices中的句柄和存储中复制的会话消息都要删除
+     */
+    private void discardScratch(AiHelperService service, String scratchId) {
+        service.evictChatMemory(scratchId);
+        scratchChatMemoryStore.deleteMessages(scratchId);
+    }
+
+    private static String scratchId(String sessionId) {
+        return sessionId + AiHelperServiceFactory.SCRATCH_SEPARATOR + UUID.randomUUID();
+    }
+
+    /**
+     * 模型分层路由统计
+     */
+    public Map<String, Object> tierStats() {
+        return modelRouter.stats();
+    }
+
+    /**
+     * 对冲统计
+     */
+    public Map<String, Object> hedgeStats() {
+        return llmHedging.stats();
+    }
+
+    /**
+     * 只尝试快速路径，命中时写入缓存
+     * @return 意图JSON，需要大模型处理时返回null
+     */
+    public String fastPath(String sessionId, String text, String origin) {
+        IpLocation location = ipLocationIndex.lookup(origin);
+        String result = fastPath(sessionId, text, location);
+        if (result != null) {
+            remember(IntentCache.keyOf(text, originKey(origin, location)), result);
+        }
+        return result;
+    }
+
+    private String fastPath(String sessionId, String text, IpLocation location) {
+        String result = fastPathPlanner.plan(sessionId, text, location);
+        if (result != null) {
+            // 写入会话记忆，后续的追问（如"改成骑行"）交给大模型时仍有上下文
+            addToMemory(sessionId, text, location, result);
+        }
+        return result;
+    }
+
+    private void addToMemory(String sessionId, String text, IpLocation location, String result) {
+        ChatMemory memory = chatMemoryProvider.get(sessionId);
+        memory.add(UserMessage.from(withLocation(text, location)));
+        memory.add(AiMessage.from(result));
+    }
+
+    /**
+     * 请求合并统计
+     */
+    public Map<String, Object> coalesceStats() {
+        return flights.stats();
+    }
+
+    /**
+     * 把模型输出规范化为意图JSON
+     * @param output 模型输出
+     * @return 规范化后的JSON，修复失败时为带err的意图
+     */
+    public String normalize(String output) {
+        return RouteIntentCodec.toJson(parse(output));
+    }
+
+    /**
+     * 解析模型输出，格式不符时用JSON模式让模型修复一次
+     */
+    public RouteIntent parse(String output) {
+        try {
+            RouteIntent intent = RouteIntentCodec.parse(output);
+            counter("ok").increment();
+            return intent;
+        } catch (IllegalArgumentException e) {
+            log.warn("意图解析失败，尝试修复: {}", e.getMessage());
+        }
+        try {
+            RouteIntent intent = RouteIntentCodec.parse(aiHelper.chatJson(repairPrompt(output), RouteIntentCodec.schema()));
+            counter("repaired").increment();
+            return intent;
+        } catch (Exception e) {
+            log.warn("意图修复失败: {}", e.getMessage());
+            counter("failed").increment();
+            return RouteIntent.error("无法识别线路信息，请换个说法再试");
+        }
+    }
+
+    private static String repairPrompt(String output) {
+        return "把下面的内容整理成JSON，只输出JSON，不要任何说明。格式："
+                + "{\"出发地\":{\"经度\":数字,\"维度\":数字},\"目的地\":{\"经度\":数字,\"维度\":数字},"
+                + "\"出行方式\":\"步行|骑行|驾车\",\"policy\":驾车策略数字或省略,\"policyReason\":\"原因\",\"err\":\"无法规划时的原因，否则为空串\"}\n"
+                + "内容：" + output;
+    }
+
+    private Counter counter(String outcome) {
+        return Counter.builder("marsai.intent.parse")
+                .description("模型输出解析为线路意图的结果")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查询结果是否只由查询文本和出发地决定，可以使用缓存、与其它会话合并
+     * @param sessionId 会话ID
+     * @param text 用户输入
+     */
+    public boolean selfContained(String sessionId, String text) {
+        return RouteQueryParser.parse(text) != null || chatMemoryProvider.get(sessionId).messages().isEmpty();
+    }
+
+    /**
+     * 查询缓存，命中时把本轮对话写入会话记忆；依赖会话上下文的查询和未命中时返回null
+     */
+    public String cached(String sessionId, String text, String origin) {
+        if (!selfContained(sessionId, text)) {
+            return null;
+        }
+        IpLocation location = ipLocationIndex.lookup(origin);
+        String cached = intentCache.get(IntentCache.keyOf(text, originKey(origin, location)));
+        if (cached != null) {
+            addToMemory(sessionId, text, location, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * 缓存一次成功的结果；带错误信息或不完整的结果不缓存。只用于计算前 {@link #selfContained} 为true的查询
+     * @param result 规范化后的意图JSON
+     */
+    public void remember(String text, String origin, String result) {
+        remember(IntentCache.keyOf(text, originKey(origin, ipLocationIndex.lookup(origin))), result);
+    }
+
+    /**
+     * 发给模型的用户消息：能查到客户端位置时附上位置
+     */
+    public String userMessage(String text, String origin) {
+        return withLocation(text, ipLocationIndex.lookup(origin));
+    }
+
+    /**
+     * 查到位置时按位置共享缓存，否则按客户端地址区分
+     */
+    private static String originKey(String origin, IpLocation location) {
+        return location != null ? location.key() : origin;
+    }
+
+    private static String withLocation(String text, IpLocation location) {
+        if (location == null) {
+            return text;
+        }
+        return text + "\n（客户端位置：" + location.name()
+                + "，经度" + location.longitude() + "，维度" + location.latitude() + "）";
+    }
+
+    private void remember(String key, String result) {
+        if (key != null && isComplete(result)) {
+            intentCache.put(key, result);
+        }
+    }
+
+    /**
+     * 输出能解析为完整的意图；带错误信息或不完整的结果不缓存，也不能在对冲中胜出
+     */
+    private static boolean isComplete(String output) {
+        try {
+            return RouteIntentCodec.parse(output).isComplete();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
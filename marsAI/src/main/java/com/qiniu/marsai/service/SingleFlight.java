@@ -0,0 +1,170 @@
+package com.qiniu.marsai.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 相同请求合并
+ * 同一个键同时只有一次计算在进行：先到的请求（leader）执行计算，计算期间到达的请求（follower）等待同一个结果；
+ * 计算结束立即移除，不缓存结果。follower各自设置等待超时，超时不影响leader和其它follower
+ * @param <K> 键
+ * @param <V> 结果
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter timeouts;
+
+    /**
+     * follower等待超时
+     */
+    public static class FollowerTimeoutException extends RuntimeException {
+        FollowerTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @param name 指标中的name标签
+     * @param registry 指标注册表
+     */
+    public SingleFlight(String name, MeterRegistry registry) {
+        this.name = name;
+        this.leaders = counter(registry, "leader");
+        this.followers = counter(registry, "follower");
+        this.timeouts = Counter.builder("marsai.singleflight.timeouts")
+                .description("follower等待合并结果超时的次数")
+                .tag("name", name)
+                .register(registry);
+        Gauge.builder("marsai.singleflight.inflight", flights, Map::size)
+                .description("正在进行的合并计算数")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private Counter counter(MeterRegistry registry, String role) {
+        return Counter.builder("marsai.singleflight.requests")
+                .description("按角色统计的请求数，follower即被合并的请求")
+                .tag("name", name)
+                .tag("role", role)
+                .register(registry);
+    }
+
+    /**
+     * 同步执行，leader在调用线程中计算
+     * @param key 合并键
+     * @param work 计算
+     * @param followerTimeout follower的最长等待时间
+     * @return 计算结果
+     * @throws FollowerTimeoutException follower等待超时
+     */
+    public V execute(K key, Supplier<V> work, Duration followerTimeout) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            return await(existing, followerTimeout);
+        }
+        leaders.increment();
+        try {
+            V value = work.get();
+            flights.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 异步执行，leader的计算由work自行安排线程
+     * @param key 合并键
+     * @param work 启动计算
+     * @param followerTimeout follower的最长等待时间，超时以FollowerTimeoutException结束
+     * @return 计算结果
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> work, Duration followerTimeout) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            return existing.copy()
+                    .orTimeout(followerTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof TimeoutException) {
+                            timeouts.increment();
+                            throw new FollowerTimeoutException("等待相同请求的结果超时");
+                        }
+                        throw e instanceof CompletionException completion ? completion : new CompletionException(cause);
+                    });
+        }
+        leaders.increment();
+        CompletableFuture<V> result;
+        try {
+            result = work.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, e) -> {
+            flights.remove(key, flight);
+            if (e != null) {
+                flight.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            } else {
+                flight.complete(value);
+            }
+        });
+        return flight.copy();
+    }
+
+    private V await(CompletableFuture<V> flight, Duration timeout) {
+        try {
+            return flight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new FollowerTimeoutException("等待相同请求的结果超时");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待相同请求的结果时被中断", e);
+        }
+    }
+
+    /**
+     * 合并统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("inFlight", flights.size());
+        stats.put("leaders", (long) leaders.count());
+        stats.put("coalesced", (long) followers.count());
+        stats.put("followerTimeouts", (long) timeouts.count());
+        return stats;
+    }
+}
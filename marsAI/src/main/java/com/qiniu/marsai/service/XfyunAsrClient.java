@@ -3,66 +3,62 @@ package com.qiniu.marsai.service;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.*;
 import java.util.Base64;
-import javax.sound.sampled.*;
 
-import org.json.JSONArray;
+import com.qiniu.marsai.asr.TranscriptExtractor;
+import com.qiniu.marsai.deadline.Deadline;
+import com.qiniu.marsai.http.OutboundHttpClient;
+import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
-import org.springframework.stereotype.Component;
-import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+@Slf4j
 public class XfyunAsrClient {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private final OutboundHttpClient httpClient;
     private final String appid;
     private final String accessKeyId;
     private final String accessKeySecret;
-    private final String audioFilePath;
+    private byte[] audioData;
+    private final String audioName;
     private final int audioDuration;
     private String orderId;
     private final String signatureRandom;
-    private String lastBaseString;
-    private String lastSignature;
+    private String queryUrl;
+    private Map<String, String> queryHeaders;
+    private String lastResponse;
+    private volatile Deadline deadline;
+    public static final int STATUS_PROCESSING = 3;
+    public static final int STATUS_DONE = 4;
     private static final String LFASR_HOST = "https://office-api-ist-dx.iflyaisol.com";
     private static final String API_UPLOAD = "/v2/upload";
     private static final String API_GET_RESULT = "/v2/getResult";
 
-    public XfyunAsrClient(String appid, String accessKeyId, String accessKeySecret, String audioFilePath) {
+    /**
+     * @param httpClient 共用的出站HTTP客户端
+     * @param audioData WAV音频字节
+     * @param audioName 文件名，上传时作为fileName参数
+     * @param audioDuration 音频时长（毫秒），由WAV文件头计算
+     */
+    public XfyunAsrClient(OutboundHttpClient httpClient, String appid, String accessKeyId, String accessKeySecret,
+                          byte[] audioData, String audioName, int audioDuration) {
+        this.httpClient = httpClient;
         this.appid = appid;
         this.accessKeyId = accessKeyId;
         this.accessKeySecret = accessKeySecret;
-        this.audioFilePath = checkAudioPath(audioFilePath);
-        this.audioDuration = getWavDurationMs();
+        this.audioData = audioData;
+        this.audioName = audioName;
+        this.audioDuration = audioDuration;
         this.signatureRandom = generateRandomStr();
     }
 
-    private String checkAudioPath(String path) {
-        File file = new File(path);
-        if (!file.exists()) {
-            throw new RuntimeException("音频文件不存在：" + path);
-        }
-        if (!path.toLowerCase().endsWith(".wav")) {
-            throw new RuntimeException("当前代码仅支持WAV格式音频，您的文件格式为：" + getFileExtension(path));
-        }
-        return file.getAbsolutePath();
-    }
-
-    private static String getFileExtension(String path) {
-        int lastDot = path.lastIndexOf(".");
-        return lastDot > 0 ? path.substring(lastDot) : "";
-    }
-
     private String generateRandomStr() {
         return generateRandomStr(16);
     }
@@ -87,19 +83,6 @@ public class XfyunAsrClient {
         return sdf.format(new Date());
     }
 
-    private int getWavDurationMs() {
-        try {
-            File audioFile = new File(audioFilePath);
-            AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(audioFile);
-            long frames = audioInputStream.getFrameLength();
-            float durationInSeconds = (float) frames / audioInputStream.getFormat().getFrameRate();
-            audioInputStream.close();
-            return (int) (durationInSeconds * 1000);
-        } catch (UnsupportedAudioFileException | IOException e) {
-            throw new RuntimeException("WAV文件解析失败：" + e.getMessage() + "，请确认文件为标准WAV格式（非损坏、非压缩）");
-        }
-    }
-
     public String generateSignature(Map<String, String> params) {
         // 排除signature参数，按参数名自然排序
         Map<String, String> signParams = new TreeMap<>();
@@ -121,16 +104,15 @@ public class XfyunAsrClient {
             }
         }
 
-        this.lastBaseString = String.join("&", baseParts);
+        String baseString = String.join("&", baseParts);
 
         // HMAC-SHA1加密 + Base64编码
         try {
             Mac hmac = Mac.getInstance("HmacSHA1");
             SecretKeySpec secretKey = new SecretKeySpec(accessKeySecret.getBytes(StandardCharsets.UTF_8), "HmacSHA1");
             hmac.init(secretKey);
-            byte[] hmacBytes = hmac.doFinal(lastBaseString.getBytes(StandardCharsets.UTF_8));
-            this.lastSignature = Base64.getEncoder().encodeToString(hmacBytes);
-            return this.lastSignature;
+            byte[] hmacBytes = hmac.doFinal(baseString.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hmacBytes);
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
             throw new RuntimeException("HMAC-SHA1加密失败", e);
         }
@@ -138,15 +120,10 @@ public class XfyunAsrClient {
 
     public void uploadAudio() {
         // 1. 基础参数准备
-        File audioFile = new File(audioFilePath);
-        String audioSize = String.valueOf(audioFile.length());
-        String audioName = audioFile.getName();
+        String audioSize = String.valueOf(audioData.length);
         String dateTime = getLocalTimeWithTz();
 
-        System.out.println("音频文件：" + audioName);
-        System.out.println("文件大小：" + audioSize + " 字节");
-        System.out.println("音频时长：" + audioDuration + " 毫秒");
-        System.out.println("生成的时间戳：" + dateTime); // 调试信息
+        log.debug("音频文件：{}，文件大小：{} 字节，音频时长：{} 毫秒，时间戳：{}", audioName, audioSize, audioDuration, dateTime);
 
         // 2. 构建URL参数
         Map<String, String> urlParams = new HashMap<>();
@@ -183,38 +160,72 @@ public class XfyunAsrClient {
         }
         String uploadUrl = LFASR_HOST + API_UPLOAD + "?" + String.join("&", encodedParams);
 
-        // 6. 读取音频文件并发送POST请求
-        try {
-            byte[] audioData = Files.readAllBytes(Paths.get(audioFilePath));
-            String response = sendPostRequest(uploadUrl, headers, audioData, false);
+        // 6. 发送POST请求
+        String response = sendPostRequest(uploadUrl, headers, audioData, false);
 
-            // 7. 解析响应结果
-            JSONObject result = new JSONObject(response);
-            System.out.println("上传结果：" + result.toString(2));
+        // 7. 解析响应结果
+        JSONObject result = new JSONObject(response);
+        log.debug("上传结果：{}", result);
 
-            // 8. 处理API业务错误
-            if (!"000000".equals(result.optString("code"))) {
-                throw new RuntimeException(String.format("上传失败（API错误）：\n错误码：%s\n错误描述：%s\n请求URL：%s\n签名原始串：%s\n签名值：%s", result.optString("code"), result.optString("descInfo", "未知错误"), uploadUrl, lastBaseString, lastSignature));
-            }
+        // 8. 处理API业务错误
+        if (!"000000".equals(result.optString("code"))) {
+            throw new RuntimeException(String.format("上传失败（API错误）：错误码：%s，错误描述：%s", result.optString("code"), result.optString("descInfo", "未知错误")));
+        }
 
-            // 9. 上传成功，记录订单ID
-            this.orderId = result.getJSONObject("content").getString("orderId");
-            System.out.println("上传成功！订单ID：" + this.orderId);
+        // 9. 上传成功，记录订单ID
+        this.orderId = result.getJSONObject("content").getString("orderId");
+        log.debug("上传成功，订单ID：{}", this.orderId);
+        // 上传后不再需要音频内容，轮询期间不再占用内存
+        this.audioData = null;
+    }
 
-        } catch (IOException e) {
-            throw new RuntimeException("文件读取或网络请求失败：" + e.getMessage());
-        }
+    /**
+     * 设置截止时间，之后的每次HTTP请求都不超过剩余时间
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
     }
 
-    public JSONObject getTranscribeResult() {
+    /**
+     * 查询一次转写结果，不等待
+     * @return 接口响应，转写状态通过 {@link #orderStatus(JSONObject)} 获取
+     */
+    public JSONObject queryResultOnce() {
         if (orderId == null || orderId.isEmpty()) {
-            System.out.println("未检测到订单ID，自动执行上传流程...");
+            log.debug("未检测到订单ID，自动执行上传流程");
             uploadAudio();
         }
         if (orderId == null || orderId.isEmpty()) {
             throw new RuntimeException("未获取到订单ID，无法查询转写结果");
         }
+        if (queryUrl == null) {
+            buildQueryRequest();
+        }
+
+        String response = sendPostRequest(queryUrl, queryHeaders, "{}".getBytes(StandardCharsets.UTF_8), true);
+        lastResponse = response;
+        JSONObject result = new JSONObject(response);
 
+        if (!"000000".equals(result.optString("code"))) {
+            throw new RuntimeException("查询失败（API错误）：" + result.optString("descInfo", "未知错误"));
+        }
+
+        // 转写状态：3=处理中，4=完成
+        int processStatus = orderStatus(result);
+        if (processStatus != STATUS_DONE && processStatus != STATUS_PROCESSING) {
+            throw new RuntimeException("转写异常：状态码=" + processStatus + "，描述=" + result.optString("descInfo"));
+        }
+        return result;
+    }
+
+    /**
+     * 从查询响应中取出转写状态：3=处理中，4=完成
+     */
+    public static int orderStatus(JSONObject result) {
+        return result.getJSONObject("content").getJSONObject("orderInfo").getInt("status");
+    }
+
+    private void buildQueryRequest() {
         // 构建查询参数
         Map<String, String> queryParams = new HashMap<>();
         queryParams.put("appId", appid);
@@ -226,9 +237,9 @@ public class XfyunAsrClient {
 
         // 生成查询签名
         String querySignature = generateSignature(queryParams);
-        Map<String, String> queryHeaders = new HashMap<>();
-        queryHeaders.put("Content-Type", "application/json");
-        queryHeaders.put("signature", querySignature);
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("signature", querySignature);
 
         // 构建查询URL
         List<String> encodedQueryParams = new ArrayList<>();
@@ -241,182 +252,46 @@ public class XfyunAsrClient {
                 throw new RuntimeException("URL编码失败", e);
             }
         }
-        String queryUrl = LFASR_HOST + API_GET_RESULT + "?" + String.join("&", encodedQueryParams);
+        this.queryHeaders = headers;
+        this.queryUrl = LFASR_HOST + API_GET_RESULT + "?" + String.join("&", encodedQueryParams);
+    }
 
-        // 轮询查询
-        int maxRetry = 10000;
-        int retryCount = 0;
-        while (retryCount < maxRetry) {
-            try {
-                String response = sendPostRequest(queryUrl, queryHeaders, "{}".getBytes(StandardCharsets.UTF_8), true);
-                JSONObject result = new JSONObject(response);
-                System.out.println(result.toString(2));
-
-                if (!"000000".equals(result.optString("code"))) {
-                    throw new RuntimeException("查询失败（API错误）：" + result.optString("descInfo", "未知错误"));
-                }
-
-                // 转写状态：3=处理中，4=完成
-                int processStatus = result.getJSONObject("content").getJSONObject("orderInfo").getInt("status");
-                if (processStatus == 4) {
-                    System.out.println("转写完成！");
-                    return result;
-                } else if (processStatus != 3) {
-                    throw new RuntimeException("转写异常：状态码=" + processStatus + "，描述=" + result.optString("descInfo"));
-                }
-
-                // 处理中，等待10秒后重试
-                retryCount++;
-                System.out.printf("转写处理中（已查询%d/%d次），10秒后再次查询...%n", retryCount, maxRetry);
-                Thread.sleep(10000);
-
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("查询被中断", e);
-            } catch (Exception e) {
-                throw new RuntimeException("查询请求失败：" + e.getMessage());
-            }
-        }
+    public String getOrderId() {
+        return orderId;
+    }
 
-        throw new RuntimeException("查询超时：已重试" + maxRetry + "次，订单ID：" + orderId);
+    /**
+     * 音频时长（毫秒）
+     */
+    public int getAudioDuration() {
+        return audioDuration;
     }
 
     private String sendPostRequest(String urlStr, Map<String, String> headers, byte[] data, boolean isJson) {
-        HttpURLConnection connection = null;
         try {
-            URL url = new URL(urlStr);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(30000);
-            connection.setReadTimeout(30000);
-
-            // 设置请求头
-            for (Map.Entry<String, String> header : headers.entrySet()) {
-                connection.setRequestProperty(header.getKey(), header.getValue());
-            }
-
-            // 禁用SSL证书验证（仅用于测试环境）
-            if (urlStr.startsWith("https")) {
-                // 在生产环境中应该使用正确的SSL证书验证
-                // 这里为了简化测试，禁用SSL验证
-                trustAllCertificates();
-            }
-
-            // 发送数据
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(data);
-                os.flush();
-            }
-
-            // 读取响应
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 200) {
-                // 尝试读取错误流
-                String errorResponse = readErrorStream(connection);
-                throw new RuntimeException("HTTP请求失败，状态码：" + responseCode + "，错误信息：" + errorResponse);
+            Duration timeout = deadline == null ? REQUEST_TIMEOUT : deadline.cap(REQUEST_TIMEOUT, "asr");
+            HttpResponse<String> response = httpClient.post(urlStr, headers, data, timeout);
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("HTTP请求失败，状态码：" + response.statusCode() + "，错误信息：" + response.body());
             }
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                return response.toString();
-            }
-
-        } catch (Exception e) {
+            return response.body();
+        } catch (IOException e) {
             throw new RuntimeException("网络请求失败：" + e.getMessage());
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
 
-    private String readErrorStream(HttpURLConnection connection) {
-        try {
-            InputStream errorStream = connection.getErrorStream();
-            if (errorStream != null) {
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream, StandardCharsets.UTF_8))) {
-                    StringBuilder errorResponse = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        errorResponse.append(line);
-                    }
-                    return errorResponse.toString();
-                }
-            }
-        } catch (Exception e) {
-            // 忽略错误流读取异常
-        }
-        return "";
-    }
-
-    // 简单的SSL证书信任方法（仅用于测试）
-    private void trustAllCertificates() {
-        // 这里应该实现完整的SSL证书信任逻辑
-        // 由于代码较长，这里简化处理，实际生产环境应该使用正确的证书验证
-        System.setProperty("sun.security.ssl.allowUnsafeRenegotiation", "true");
-        System.setProperty("https.protocols", "TLSv1.2");
-    }
-
+    /**
+     * 从查询响应中提取转写文本
+     */
     public static String parseOrderResult(JSONObject apiResponse) {
-        try {
-            // 从API响应中获取orderResult字段
-            String orderResultStr = apiResponse.getJSONObject("content").optString("orderResult", "{}");
-
-            // 处理转义字符问题
-            String cleanedStr = orderResultStr.replace("\\\\", "\\");
-
-            // 解析orderResult字符串为JSON对象
-            JSONObject orderResult = new JSONObject(cleanedStr);
-
-            // 提取所有w字段的值
-            List<String> wValues = new ArrayList<>();
-
-            // 遍历lattice数组
-            if (orderResult.has("lattice")) {
-                JSONArray lattice = orderResult.getJSONArray("lattice");
-                for (int i = 0; i < lattice.length(); i++) {
-                    JSONObject latticeItem = lattice.getJSONObject(i);
-                    if (latticeItem.has("json_1best")) {
-                        // 解析json_1best字段
-                        JSONObject json1best = new JSONObject(latticeItem.getString("json_1best"));
-
-                        // 处理st对象
-                        if (json1best.has("st") && json1best.getJSONObject("st").has("rt")) {
-                            JSONArray rtArray = json1best.getJSONObject("st").getJSONArray("rt");
-                            for (int j = 0; j < rtArray.length(); j++) {
-                                JSONObject rtItem = rtArray.getJSONObject(j);
-                                if (rtItem.has("ws")) {
-                                    JSONArray wsArray = rtItem.getJSONArray("ws");
-                                    for (int k = 0; k < wsArray.length(); k++) {
-                                        JSONObject wsItem = wsArray.getJSONObject(k);
-                                        if (wsItem.has("cw")) {
-                                            JSONArray cwArray = wsItem.getJSONArray("cw");
-                                            for (int l = 0; l < cwArray.length(); l++) {
-                                                JSONObject cwItem = cwArray.getJSONObject(l);
-                                                if (cwItem.has("w")) {
-                                                    wValues.add(cwItem.getString("w"));
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            // 拼接所有w值
-            return String.join("", wValues);
+        JSONObject content = apiResponse.optJSONObject("content");
+        return content == null ? "" : TranscriptExtractor.fromOrderResult(content.optString("orderResult", ""));
+    }
 
-        } catch (Exception e) {
-            System.out.println("JSON解析错误: " + e.getMessage());
-            return "";
-        }
+    /**
+     * 从最近一次查询的原始响应中提取转写文本，直接流式解析，不经过JSONObject
+     */
+    public String lastTranscript() {
+        return TranscriptExtractor.fromResponse(lastResponse);
     }
 }
@@ -0,0 +1,80 @@
+package com.qiniu.marsai.tool;
+
+import com.qiniu.marsai.deadline.DeadlineContext;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 可观测的工具提供者
+ * 合并MCP工具与本地@Tool工具，并在每次工具执行前后向ToolEventBus发布事件；
+ * 同一轮中的多个工具调用交给ParallelToolExecution并发执行
+ */
+public class ObservableToolProvider implements ToolProvider {
+
+    private final ToolProvider delegate;
+    private final ToolEventBus eventBus;
+    private final ParallelToolExecution parallel;
+    private final Map<ToolSpecification, ToolExecutor> localTools = new LinkedHashMap<>();
+
+    /**
+     * @param delegate 被包装的工具提供者（如MCP），可以为null
+     * @param eventBus 工具事件总线
+     * @param parallel 工具并发执行，为null时按顺序执行
+     * @param localToolObjects 带有@Tool方法的本地工具对象
+     */
+    public ObservableToolProvider(ToolProvider delegate, ToolEventBus eventBus, ParallelToolExecution parallel,
+                                  Object... localToolObjects) {
+        this.delegate = delegate;
+        this.eventBus = eventBus;
+        this.parallel = parallel;
+        for (Object toolObject : localToolObjects) {
+            for (Method method : toolObject.getClass().getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    localTools.put(ToolSpecifications.toolSpecificationFrom(method),
+                            new DefaultToolExecutor(toolObject, method));
+                }
+            }
+        }
+    }
+
+    @Override
+    public ToolProviderResult provideTools(ToolProviderRequest request) {
+        Map<ToolSpecification, ToolExecutor> tools = new LinkedHashMap<>();
+        if (delegate != null) {
+            ToolProviderResult delegateResult = delegate.provideTools(request);
+            if (delegateResult != null) {
+                tools.putAll(delegateResult.tools());
+            }
+        }
+        tools.putAll(localTools);
+
+        Map<String, ToolExecutor> observed = new LinkedHashMap<>();
+        tools.forEach((specification, executor) -> observed.put(specification.name(), observe(executor)));
+        Map<String, ToolExecutor> executors = parallel == null ? observed : parallel.wrap(observed);
+
+        Map<ToolSpecification, ToolExecutor> result = new LinkedHashMap<>();
+        tools.keySet().forEach(specification -> result.put(specification, executors.get(specification.name())));
+        return new ToolProviderResult(result);
+    }
+
+    private ToolExecutor observe(ToolExecutor executor) {
+        return (toolRequest, memoryId) -> {
+            DeadlineContext.check("tool");
+            eventBus.fireStarted(memoryId, toolRequest);
+            long start = System.currentTimeMillis();
+            String result = executor.execute(toolRequest, memoryId);
+            eventBus.fireFinished(memoryId, toolRequest, result, System.currentTimeMillis() - start);
+            return result;
+        };
+    }
+}
@@ -0,0 +1,232 @@
+package com.qiniu.marsai.tool;
+
+import com.qiniu.marsai.deadline.DeadlineContext;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.service.tool.ToolExecutor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 同一轮模型输出中的多个工具调用并发执行
+ * AiServices按顺序逐个执行工具。这里作为模型监听器，在收到包含多个工具调用的回复时把这一批请求记在当前线程上
+ * （AiServices随后在同一线程执行工具）；执行第一个工具时在虚拟线程上同时启动整批调用，之后按原顺序逐个取结果。
+ * 同一条消息中的工具调用由模型一次给出，彼此不依赖对方的结果
+ */
+@Slf4j
+@Component
+public class ParallelToolExecution implements ChatModelListener {
+
+    private final boolean enabled;
+    private final Duration defaultTimeout;
+    private final Map<String, Duration> timeouts;
+    private final Semaphore permits;
+    private final MeterRegistry registry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ThreadLocal<Batch> batches = new ThreadLocal<>();
+
+    public ParallelToolExecution(MeterRegistry registry,
+                                 @Value("${tools.parallel.enabled:true}") boolean enabled,
+                                 @Value("${tools.parallel.max-concurrency:16}") int maxConcurrency,
+                                 @Value("${tools.parallel.default-timeout:20s}") String defaultTimeout,
+                                 @Value("${tools.parallel.timeouts:}") String timeouts) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.defaultTimeout = DurationStyle.detectAndParse(defaultTimeout);
+        this.timeouts = parseTimeouts(timeouts);
+    }
+
+    /**
+     * 解析形如 "maps_geo=5s,maps_weather=3s" 的单工具超时配置
+     */
+    static Map<String, Duration> parseTimeouts(String spec) {
+        Map<String, Duration> timeouts = new LinkedHashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return timeouts;
+        }
+        for (String item : spec.split(",")) {
+            String[] nameAndValue = item.trim().split("=", 2);
+            if (nameAndValue.length == 2) {
+                timeouts.put(nameAndValue[0].trim(), DurationStyle.detectAndParse(nameAndValue[1].trim()));
+            }
+        }
+        return timeouts;
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext context) {
+        AiMessage message = context.chatResponse().aiMessage();
+        if (enabled && message != null && message.hasToolExecutionRequests()
+                && message.toolExecutionRequests().size() > 1) {
+            batches.set(new Batch(message.toolExecutionRequests()));
+        } else {
+            batches.remove();
+        }
+    }
+
+    /**
+     * 包装一次provideTools返回的全部执行器
+     * @param executors 工具名到执行器，一批中的其它调用用它们启动
+     * @return 包装后的执行器，与传入的键相同
+     */
+    public Map<String, ToolExecutor> wrap(Map<String, ToolExecutor> executors) {
+        Map<String, ToolExecutor> wrapped = new LinkedHashMap<>();
+        executors.forEach((name, executor) -> wrapped.put(name, (request, memoryId) -> {
+            Batch batch = batches.get();
+            int index = batch == null ? -1 : batch.requests.indexOf(request);
+            if (index < 0) {
+                return executor.execute(request, memoryId);
+            }
+            batch.start(executors, memoryId);
+            try {
+                return batch.await(index);
+            } finally {
+                if (batch.consumed()) {
+                    batches.remove();
+                    batch.record();
+                }
+            }
+        }));
+        return wrapped;
+    }
+
+    private Duration timeoutOf(String tool) {
+        return timeouts.getOrDefault(tool, defaultTimeout);
+    }
+
+    /**
+     * 同一条模型消息中的一批工具调用
+     */
+    private class Batch {
+        final List<ToolExecutionRequest> requests;
+        final CompletableFuture<String>[] results;
+        final long[] startNanos;
+        final long[] endNanos;
+        boolean started;
+        int remaining;
+
+        @SuppressWarnings("unchecked")
+        Batch(List<ToolExecutionRequest> requests) {
+            this.requests = List.copyOf(requests);
+            this.results = new CompletableFuture[requests.size()];
+            this.startNanos = new long[requests.size()];
+            this.endNanos = new long[requests.size()];
+            this.remaining = requests.size();
+        }
+
+        synchronized void start(Map<String, ToolExecutor> executors, Object memoryId) {
+            if (started) {
+                return;
+            }
+            started = true;
+            for (int i = 0; i < requests.size(); i++) {
+                ToolExecutionRequest request = requests.get(i);
+                ToolExecutor executor = executors.get(request.name());
+                if (executor == null) {
+                    // 模型编造的工具名由AiServices按自己的策略处理，不会调用到这里
+                    results[i] = CompletableFuture.completedFuture(null);
+                    continue;
+                }
+                int index = i;
+                results[i] = CompletableFuture.supplyAsync(
+                        DeadlineContext.wrap(() -> run(index, executor, request, memoryId)), ParallelToolExecution.this.executor);
+            }
+        }
+
+        private String run(int index, ToolExecutor executor, ToolExecutionRequest request, Object memoryId) {
+            permits.acquireUninterruptibly();
+            startNanos[index] = System.nanoTime();
+            try {
+                return executor.execute(request, memoryId);
+            } finally {
+                endNanos[index] = System.nanoTime();
+                permits.release();
+            }
+        }
+
+        String await(int index) {
+            String tool = requests.get(index).name();
+            Duration timeout;
+            try {
+                timeout = DeadlineContext.cap(timeoutOf(tool), "tool");
+            } catch (RuntimeException e) {
+                results[index].cancel(true);
+                throw e;
+            }
+            try {
+                return results[index].get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                results[index].cancel(true);
+                log.warn("工具{}执行超过{}ms", tool, timeout.toMillis());
+                return "工具" + tool + "执行超时，请不要依赖这个结果";
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待工具结果时被中断", e);
+            }
+        }
+
+        synchronized boolean consumed() {
+            return --remaining == 0;
+        }
+
+        /**
+         * 记录并发节省的时间：各工具耗时之和减去整批的实际耗时
+         */
+        void record() {
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            long sum = 0;
+            for (int i = 0; i < requests.size(); i++) {
+                if (startNanos[i] == 0 || endNanos[i] == 0) {
+                    continue;
+                }
+                first = Math.min(first, startNanos[i]);
+                last = Math.max(last, endNanos[i]);
+                sum += endNanos[i] - startNanos[i];
+            }
+            if (first == Long.MAX_VALUE) {
+                return;
+            }
+            Timer.builder("marsai.tools.parallel.saved")
+                    .description("一批工具并发执行比顺序执行节省的时间")
+                    .register(registry)
+                    .record(Math.max(0, sum - (last - first)), TimeUnit.NANOSECONDS);
+            DistributionSummary.builder("marsai.tools.parallel.batch.size")
+                    .description("并发执行的一批工具调用数")
+                    .register(registry)
+                    .record(requests.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,25 +1,44 @@
 package com.qiniu.marsai.tool;
 
+import com.qiniu.marsai.http.OutboundHttpClient;
 import dev.langchain4j.agent.tool.Tool;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 获取公网IP的工具类
- * 使用多个国内IP查询服务作为备选方案
+ * 使用多个国内IP查询服务作为备选方案：先请求历史最快的服务，超过对冲延迟仍未返回
+ * （或已失败）时再依次启动后备服务，取第一个有效IP并取消其余请求。
+ * 结果按TTL缓存，过半后在后台刷新
  */
+@Slf4j
 @Component
 public class PublicIpUtil {
 
+    @Resource
+    private OutboundHttpClient httpClient;
+
     // 国内IP查询服务列表
     private static final List<String> IP_SERVICES = List.of(
             "https://ip.3322.net",           // 3322网络
@@ -32,6 +51,73 @@ public class PublicIpUtil {
             "https://ident.me"              // ident.me
     );
 
+    private static final Pattern IPV4 = Pattern.compile("\\b(\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3})\\b");
+
+    /**
+     * 延迟的平滑系数
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    /**
+     * 自定义服务列表，为空时使用内置列表
+     */
+    @Value("${public-ip.services:}")
+    private List<String> services;
+
+    @Value("${public-ip.timeout-ms:5000}")
+    private int defaultTimeoutMs;
+
+    @Value("${public-ip.hedge-delay-ms:300}")
+    private long hedgeDelayMs;
+
+    @Value("${public-ip.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${public-ip.refresh-after-seconds:300}")
+    private long refreshAfterSeconds;
+
+    private final Map<String, ServiceStats> stats = new ConcurrentHashMap<>();
+    private final AtomicReference<CachedIp> cached = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<String>> inflight = new AtomicReference<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "public-ip-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "public-ip-lookup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 缓存的公网IP
+     */
+    private record CachedIp(String ip, long resolvedAt) {
+    }
+
+    /**
+     * 单个服务的历史延迟，失败按超时时间计入
+     */
+    private static class ServiceStats {
+        final String url;
+        final int order;
+        volatile double latencyMs;
+        volatile boolean measured;
+
+        ServiceStats(String url, int order) {
+            this.url = url;
+            this.order = order;
+        }
+
+        synchronized void record(double sampleMs) {
+            latencyMs = measured ? latencyMs + EWMA_ALPHA * (sampleMs - latencyMs) : sampleMs;
+            measured = true;
+        }
+    }
+
     /**
      * 获取公网IP地址
      * @return 公网IP地址，如果获取失败返回null
@@ -41,31 +127,30 @@ public class PublicIpUtil {
             """
     )
     public String getPublicIp() {
-        return getPublicIp(5000); // 默认5秒超时
+        return getPublicIp(defaultTimeoutMs);
     }
 
     /**
      * 获取公网IP地址（带超时设置）
+     * 缓存未过期时直接返回；缓存已过期且重新查询失败时，退回使用旧值
      * @param timeoutMs 超时时间（毫秒）
      * @return 公网IP地址，如果获取失败返回null
      */
-
     public String getPublicIp(int timeoutMs) {
-        // 尝试多个服务，只要有一个成功就返回
-        for (String service : IP_SERVICES) {
-            try {
-                String ip = getIpFromService(service, timeoutMs);
-                if (ip != null && isValidIp(ip)) {
-                    System.out.println("成功从 " + service + " 获取到公网IP: " + ip);
-                    return ip;
-                }
-            } catch (Exception e) {
-                System.err.println("从 " + service + " 获取IP失败: " + e.getMessage());
+        CachedIp current = cached.get();
+        long now = System.currentTimeMillis();
+        if (current != null && now - current.resolvedAt() < ttlSeconds * 1000) {
+            if (now - current.resolvedAt() >= refreshAfterSeconds * 1000) {
+                refresh(defaultTimeoutMs);
             }
+            return current.ip();
         }
-        
-        System.err.println("所有IP查询服务都失败了");
-        return null;
+        String ip = await(refresh(timeoutMs), timeoutMs);
+        if (ip == null && current != null) {
+            log.warn("公网IP查询失败，使用缓存的旧值{}", current.ip());
+            return current.ip();
+        }
+        return ip;
     }
 
     /**
@@ -73,103 +158,159 @@ public class PublicIpUtil {
      * @return CompletableFuture<String>
      */
     public CompletableFuture<String> getPublicIpAsync() {
-        return CompletableFuture.supplyAsync(() -> getPublicIp());
+        CachedIp current = cached.get();
+        if (current != null && System.currentTimeMillis() - current.resolvedAt() < refreshAfterSeconds * 1000) {
+            return CompletableFuture.completedFuture(current.ip());
+        }
+        return refresh(defaultTimeoutMs);
     }
 
     /**
-     * 并发获取公网IP，返回第一个成功的结果
+     * 跳过缓存，对冲请求各个服务，返回第一个有效的结果
      * @param timeoutMs 超时时间（毫秒）
-     * @return 公网IP地址
+     * @return 公网IP地址，全部失败或超时返回null
      */
     public String getPublicIpConcurrent(int timeoutMs) {
-        List<CompletableFuture<String>> futures = new ArrayList<>();
-        
-        // 为每个服务创建异步任务
-        for (String service : IP_SERVICES) {
-            CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
-                try {
-                    return getIpFromService(service, timeoutMs);
-                } catch (Exception e) {
-                    return null;
-                }
-            }).orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
-            futures.add(future);
+        return await(refresh(timeoutMs), timeoutMs);
+    }
+
+    /**
+     * 共享的查询可能由超时更长的调用发起，这里按本次调用的超时等待
+     */
+    private static String await(CompletableFuture<String> lookup, int timeoutMs) {
+        return lookup.copy().completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS).join();
+    }
+
+    /**
+     * 发起一次对冲查询，同一时刻只有一次查询在进行，其余调用共享它的结果
+     */
+    private CompletableFuture<String> refresh(int timeoutMs) {
+        while (true) {
+            CompletableFuture<String> running = inflight.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<String> created = new CompletableFuture<>();
+            if (inflight.compareAndSet(null, created)) {
+                created.whenComplete((ip, e) -> {
+                    if (ip != null) {
+                        cached.set(new CachedIp(ip, System.currentTimeMillis()));
+                    }
+                    inflight.compareAndSet(created, null);
+                });
+                new HedgedLookup(rankedServices(), timeoutMs, created).start();
+                return created;
+            }
         }
-        
-        // 等待第一个成功的结果
-        CompletableFuture<Object> anyOf = CompletableFuture.anyOf(
-                futures.toArray(new CompletableFuture[0])
-        );
-        
-        try {
-            Object result = anyOf.get(timeoutMs, TimeUnit.MILLISECONDS);
-            if (result instanceof String) {
-                String ip = (String) result;
-                if (isValidIp(ip)) {
-                    return ip;
+    }
+
+    /**
+     * 按历史延迟从快到慢排列，没有记录的服务按对冲延迟估计，同分时保持原顺序
+     */
+    private List<ServiceStats> rankedServices() {
+        List<String> urls = services == null || services.isEmpty() ? IP_SERVICES : services;
+        List<ServiceStats> ranked = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            int order = i;
+            ranked.add(stats.computeIfAbsent(urls.get(i), url -> new ServiceStats(url, order)));
+        }
+        ranked.sort(Comparator.comparingDouble((ServiceStats s) -> s.measured ? s.latencyMs : hedgeDelayMs)
+                .thenComparingInt(s -> s.order));
+        return ranked;
+    }
+
+    /**
+     * 一次对冲查询
+     */
+    private class HedgedLookup {
+        private final List<ServiceStats> ordered;
+        private final int timeoutMs;
+        private final CompletableFuture<String> result;
+        private final List<Future<?>> tasks = new ArrayList<>();
+        private int launched;
+        private int failed;
+
+        HedgedLookup(List<ServiceStats> ordered, int timeoutMs, CompletableFuture<String> result) {
+            this.ordered = ordered;
+            this.timeoutMs = timeoutMs;
+            this.result = result;
+        }
+
+        void start() {
+            result.completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS)
+                    .whenComplete((ip, e) -> cancelAll());
+            launchNext();
+        }
+
+        private synchronized void launchNext() {
+            if (result.isDone() || launched >= ordered.size()) {
+                return;
+            }
+            ServiceStats service = ordered.get(launched++);
+            tasks.add(workers.submit(() -> attempt(service)));
+            if (launched < ordered.size()) {
+                tasks.add(scheduler.schedule(this::launchNext, hedgeDelayMs, TimeUnit.MILLISECONDS));
+            }
+        }
+
+        private void attempt(ServiceStats service) {
+            long start = System.nanoTime();
+            String ip = null;
+            try {
+                ip = getIpFromService(service.url, timeoutMs);
+            } catch (Exception e) {
+                if (!result.isDone()) {
+                    log.debug("从 {} 获取IP失败: {}", service.url, e.getMessage());
                 }
             }
-        } catch (Exception e) {
-            System.err.println("并发获取IP失败: " + e.getMessage());
+            if (ip != null) {
+                service.record((System.nanoTime() - start) / 1_000_000.0);
+                if (result.complete(ip)) {
+                    log.info("成功从 {} 获取到公网IP: {}", service.url, ip);
+                }
+                return;
+            }
+            // 被取消的请求不计入失败
+            if (result.isDone()) {
+                return;
+            }
+            service.record(timeoutMs);
+            synchronized (this) {
+                if (++failed == ordered.size()) {
+                    log.warn("所有IP查询服务都失败了");
+                    result.complete(null);
+                    return;
+                }
+            }
+            // 失败后不再等待对冲延迟，立即启动下一个服务
+            launchNext();
+        }
+
+        private synchronized void cancelAll() {
+            tasks.forEach(task -> task.cancel(true));
         }
-        
-        return null;
     }
 
     /**
      * 从指定服务获取IP
      * @param serviceUrl 服务URL
      * @param timeoutMs 超时时间
-     * @return IP地址
+     * @return IP地址，响应中没有有效IP时返回null
      * @throws IOException 网络异常
      */
     private String getIpFromService(String serviceUrl, int timeoutMs) throws IOException {
-        URL url = new URL(serviceUrl);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        
-        // 设置请求属性
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(timeoutMs);
-        connection.setReadTimeout(timeoutMs);
-        connection.setRequestProperty("User-Agent", 
-                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
-        
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
-            
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
-            }
-            
-            String result = response.toString().trim();
-            
-            // 处理不同服务的响应格式
-            if (serviceUrl.contains("ip.360.cn")) {
-                // 360服务返回JSON格式
-                if (result.contains("\"ip\"")) {
-                    int start = result.indexOf("\"ip\":\"") + 6;
-                    int end = result.indexOf("\"", start);
-                    if (start > 5 && end > start) {
-                        result = result.substring(start, end);
-                    }
-                }
-            } else if (serviceUrl.contains("ip.cn")) {
-                // IP.cn服务返回JSON格式
-                if (result.contains("\"ip\"")) {
-                    int start = result.indexOf("\"ip\":\"") + 6;
-                    int end = result.indexOf("\"", start);
-                    if (start > 5 && end > start) {
-                        result = result.substring(start, end);
-                    }
-                }
+        HttpResponse<String> response = httpClient.get(serviceUrl, Duration.ofMillis(timeoutMs));
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP状态码" + response.statusCode());
+        }
+        // 各服务返回纯文本、JSON或中文描述，统一取其中第一个IPv4地址
+        Matcher matcher = IPV4.matcher(response.body());
+        while (matcher.find()) {
+            if (isValidIp(matcher.group(1))) {
+                return matcher.group(1);
             }
-            
-            return result;
-        } finally {
-            connection.disconnect();
         }
+        return null;
     }
 
     /**
@@ -214,31 +355,15 @@ public class PublicIpUtil {
         }
         
         try {
-            String url = "https://ip.360.cn/ipquery?ip=" + ip;
-            URL requestUrl = new URL(url);
-            HttpURLConnection connection = (HttpURLConnection) requestUrl.openConnection();
-            
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
-            connection.setRequestProperty("User-Agent", 
-                    "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
-            
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
-                
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                
-                return response.toString();
-            } finally {
-                connection.disconnect();
-            }
+            return httpClient.get("https://ip.360.cn/ipquery?ip=" + ip, Duration.ofMillis(5000)).body();
         } catch (Exception e) {
             return "获取IP信息失败: " + e.getMessage();
         }
     }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
 }
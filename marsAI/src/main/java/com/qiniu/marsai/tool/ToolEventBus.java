@@ -0,0 +1,73 @@
+package com.qiniu.marsai.tool;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 工具调用事件总线
+ * 按memoryId分发工具调用开始/结束事件，供流式接口推送阶段信息；流式请求的memoryId带有请求标识，同一会话的并发请求互不干扰
+ */
+@Slf4j
+@Component
+public class ToolEventBus {
+
+    /**
+     * 工具调用事件监听器
+     */
+    public interface Listener {
+
+        void onToolStarted(ToolExecutionRequest request);
+
+        void onToolFinished(ToolExecutionRequest request, String result, long elapsedMs);
+    }
+
+    private final Map<Object, List<Listener>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅某个memoryId的工具调用事件
+     * @param memoryId 调用AiServices时使用的memoryId
+     * @param listener 监听器
+     * @return 取消订阅的回调
+     */
+    public Runnable subscribe(Object memoryId, Listener listener) {
+        listeners.computeIfAbsent(memoryId, id -> new CopyOnWriteArrayList<>()).add(listener);
+        return () -> listeners.computeIfPresent(memoryId, (id, list) -> {
+            list.remove(listener);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    void fireStarted(Object memoryId, ToolExecutionRequest request) {
+        List<Listener> list = memoryId == null ? null : listeners.get(memoryId);
+        if (list == null) {
+            return;
+        }
+        for (Listener listener : list) {
+            try {
+                listener.onToolStarted(request);
+            } catch (Exception e) {
+                log.warn("工具事件监听器处理失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    void fireFinished(Object memoryId, ToolExecutionRequest request, String result, long elapsedMs) {
+        List<Listener> list = memoryId == null ? null : listeners.get(memoryId);
+        if (list == null) {
+            return;
+        }
+        for (Listener listener : list) {
+            try {
+                listener.onToolFinished(request, result, elapsedMs);
+            } catch (Exception e) {
+                log.warn("工具事件监听器处理失败: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.qiniu.marsai.asr;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式识别会话测试类
+ */
+class StreamingAsrSessionTest {
+
+    private final List<JSONObject> messages = new ArrayList<>();
+    private final List<String> plannedTexts = new ArrayList<>();
+
+    private StreamingAsrSession newSession(List<String> sentences) {
+        return new StreamingAsrSession(new StubStreamingRecognizer(sentences),
+                message -> messages.add(new JSONObject(message)),
+                text -> {
+                    plannedTexts.add(text);
+                    return "{\"出发地\":\"上海\",\"目的地\":\"北京\"}";
+                },
+                Runnable::run);
+    }
+
+    @Test
+    void testPartialAndFinalTranscripts() {
+        StreamingAsrSession session = newSession(List.of("上海", "到北京"));
+        byte[] frame = new byte[1280];
+        for (int i = 0; i < 4; i++) {
+            session.audio(frame);
+        }
+
+        assertEquals("partial", messages.get(0).getString("type"));
+        assertEquals("上", messages.get(0).getString("text"));
+        assertEquals("final", messages.get(1).getString("type"));
+        assertEquals("上海", messages.get(1).getString("text"));
+        assertEquals("上海到", messages.get(2).getString("text"), "中间结果应包含已定稿的前文");
+        assertEquals("上海到北", messages.get(3).getString("text"));
+        assertTrue(plannedTexts.isEmpty(), "说完之前不应解析意图");
+    }
+
+    @Test
+    void testEndTriggersTranscriptAndResult() {
+        StreamingAsrSession session = newSession(List.of("上海", "到北京"));
+        session.audio(new byte[1280]);
+        session.control("{\"type\":\"end\"}");
+
+        JSONObject transcript = messages.get(messages.size() - 2);
+        assertEquals("transcript", transcript.getString("type"));
+        assertEquals("上海到北京", transcript.getString("text"));
+        assertEquals(List.of("上海到北京"), plannedTexts);
+
+        JSONObject result = messages.get(messages.size() - 1);
+        assertEquals("result", result.getString("type"));
+        assertEquals("北京", result.getJSONObject("data").getString("目的地"));
+    }
+
+    @Test
+    void testBlankTranscriptSkipsPlanner() {
+        StreamingAsrSession session = newSession(List.of());
+        session.audio(new byte[1280]);
+        session.control("{\"type\":\"end\"}");
+
+        assertTrue(plannedTexts.isEmpty(), "没有识别到内容时不应解析意图");
+        assertEquals(1, messages.size());
+        assertEquals("error", messages.get(0).getString("type"));
+    }
+
+    @Test
+    void testClosedSessionSendsNothing() {
+        StreamingAsrSession session = newSession(List.of("上海到北京"));
+        session.close();
+        session.audio(new byte[1280]);
+        session.control("{\"type\":\"end\"}");
+
+        assertTrue(messages.isEmpty(), "连接断开后不应再推送消息");
+        assertTrue(plannedTexts.isEmpty());
+    }
+}
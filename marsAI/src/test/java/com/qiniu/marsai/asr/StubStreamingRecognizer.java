@@ -0,0 +1,57 @@
+package com.qiniu.marsai.asr;
+
+import java.util.List;
+
+/**
+ * 本地桩识别器：每收到一帧音频按顺序吐出一个字作为中间结果，
+ * 每满一句定稿一次，结束时把剩余部分定稿后回调完成
+ */
+class StubStreamingRecognizer implements StreamingRecognizer {
+
+    private final List<String> sentences;
+
+    StubStreamingRecognizer(List<String> sentences) {
+        this.sentences = sentences;
+    }
+
+    @Override
+    public Session open(Listener listener) {
+        return new Session() {
+            private int sentence;
+            private int chars;
+            private boolean cancelled;
+
+            @Override
+            public void sendAudio(byte[] pcm) {
+                if (cancelled || sentence >= sentences.size()) {
+                    return;
+                }
+                String current = sentences.get(sentence);
+                chars++;
+                if (chars >= current.length()) {
+                    listener.onSentence(current);
+                    sentence++;
+                    chars = 0;
+                } else {
+                    listener.onPartial(current.substring(0, chars));
+                }
+            }
+
+            @Override
+            public void finish() {
+                if (cancelled) {
+                    return;
+                }
+                while (sentence < sentences.size()) {
+                    listener.onSentence(sentences.get(sentence++));
+                }
+                listener.onComplete();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        };
+    }
+}
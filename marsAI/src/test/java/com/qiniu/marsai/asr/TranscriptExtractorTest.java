@@ -0,0 +1,93 @@
+package com.qiniu.marsai.asr;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 转写结果文本提取测试类
+ * 样本为讯飞查询接口的完整响应，expected-transcripts.json记录每个样本应提取出的文本
+ */
+class TranscriptExtractorTest {
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = TranscriptExtractorTest.class.getResourceAsStream("/asr/" + name)) {
+            assertNotNull(in, "缺少样本文件 " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "order-result-short.json",
+            "order-result-multi.json",
+            "order-result-empty.json",
+            "order-result-processing.json",
+            "order-result-long.json",
+            "order-result-escaped.json"
+    })
+    void testMatchesExpectedTranscript(String sample) throws IOException {
+        String response = resource(sample);
+        String expected = new JSONObject(resource("expected-transcripts.json")).getString(sample);
+
+        assertEquals(expected, TranscriptExtractor.fromResponse(response), "完整响应流式提取结果不一致");
+        String orderResult = new JSONObject(response).getJSONObject("content").optString("orderResult");
+        assertEquals(expected, TranscriptExtractor.fromOrderResult(orderResult), "orderResult提取结果不一致");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "order-result-short.json",
+            "order-result-multi.json",
+            "order-result-empty.json",
+            "order-result-long.json"
+    })
+    void testMatchesLegacyDomWalk(String sample) throws IOException {
+        String response = resource(sample);
+        assertEquals(legacyParse(new JSONObject(response)), TranscriptExtractor.fromResponse(response),
+                "应与原先逐层遍历DOM的结果一致");
+    }
+
+    @Test
+    void testMalformedInputReturnsEmpty() {
+        assertEquals("", TranscriptExtractor.fromResponse(null));
+        assertEquals("", TranscriptExtractor.fromResponse("{\"code\":\"000000\""));
+        assertEquals("", TranscriptExtractor.fromOrderResult("{\"lattice\":[{\"json_1best\":\"{bad"));
+        assertEquals("", TranscriptExtractor.fromResponse("{\"content\":{\"orderResult\":null}}"));
+    }
+
+    /**
+     * 原先的实现：orderResult和每个json_1best都构建JSONObject，逐层遍历后收集所有w
+     */
+    private static String legacyParse(JSONObject apiResponse) {
+        String orderResultStr = apiResponse.getJSONObject("content").optString("orderResult", "{}");
+        if (orderResultStr.isEmpty()) {
+            return "";
+        }
+        JSONObject orderResult = new JSONObject(orderResultStr.replace("\\\\", "\\"));
+        StringBuilder text = new StringBuilder();
+        JSONArray lattice = orderResult.optJSONArray("lattice");
+        for (int i = 0; lattice != null && i < lattice.length(); i++) {
+            JSONObject st = new JSONObject(lattice.getJSONObject(i).getString("json_1best")).getJSONObject("st");
+            JSONArray rt = st.getJSONArray("rt");
+            for (int j = 0; j < rt.length(); j++) {
+                JSONArray ws = rt.getJSONObject(j).getJSONArray("ws");
+                for (int k = 0; k < ws.length(); k++) {
+                    JSONArray cw = ws.getJSONObject(k).getJSONArray("cw");
+                    for (int l = 0; l < cw.length(); l++) {
+                        text.append(cw.getJSONObject(l).getString("w"));
+                    }
+                }
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.qiniu.marsai.asr;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WAV文件头解析测试类
+ */
+class WavHeaderTest {
+
+    private static byte[] wav(int sampleRate, int durationMs) throws IOException {
+        AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, false);
+        byte[] pcm = new byte[sampleRate * 2 * durationMs / 1000];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / 2),
+                AudioFileFormat.Type.WAVE, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void testDurationMatchesJavaSound() throws Exception {
+        byte[] bytes = wav(16000, 2500);
+        WavHeader header = WavHeader.parse(bytes, bytes.length);
+
+        assertEquals(16000, header.sampleRate());
+        assertEquals(1, header.channels());
+        assertEquals(16, header.bitsPerSample());
+        assertEquals(2500, header.durationMs(), "时长应与javax.sound计算结果一致");
+    }
+
+    @Test
+    void testStreamingHeaderUsesActualLength() throws Exception {
+        byte[] bytes = wav(16000, 1000);
+        WavHeader original = WavHeader.parse(bytes, bytes.length);
+        // 边录边写的WAV把data长度写成0xFFFFFFFF
+        for (int i = 0; i < 4; i++) {
+            bytes[original.dataOffset() - 4 + i] = (byte) 0xFF;
+        }
+        assertEquals(1000, WavHeader.parse(bytes, bytes.length).durationMs());
+    }
+
+    @Test
+    void testRejectsNonWav() {
+        byte[] mp3 = "ID3\u0004\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000".getBytes();
+        assertThrows(IllegalArgumentException.class, () -> WavHeader.parse(mp3, mp3.length));
+    }
+
+    @Test
+    void testRejectsOversizedChunk() throws Exception {
+        byte[] bytes = wav(16000, 100);
+        // 在fmt块之前插入一个长度为0xFFFFFFF0的LIST块
+        byte[] malformed = new byte[bytes.length + 8];
+        System.arraycopy(bytes, 0, malformed, 0, 12);
+        System.arraycopy("LIST".getBytes(), 0, malformed, 12, 4);
+        malformed[16] = (byte) 0xF0;
+        malformed[17] = (byte) 0xFF;
+        malformed[18] = (byte) 0xFF;
+        malformed[19] = (byte) 0xFF;
+        System.arraycopy(bytes, 12, malformed, 20, bytes.length - 12);
+        assertThrows(IllegalArgumentException.class, () -> WavHeader.parse(malformed, malformed.length), "块长度超出文件应拒绝");
+
+        byte[] truncated = new byte[28];
+        System.arraycopy(malformed, 0, truncated, 0, 12);
+        System.arraycopy("LIST".getBytes(), 0, truncated, 12, 4);
+        truncated[16] = 64;
+        assertThrows(IllegalArgumentException.class, () -> WavHeader.parse(truncated, truncated.length), "截断的块应拒绝");
+    }
+
+    @Test
+    void testClipSizeLimit() throws Exception {
+        byte[] bytes = wav(16000, 1000);
+        assertThrows(IllegalArgumentException.class,
+                () -> AudioClip.read(new ByteArrayInputStream(bytes), "a.wav", bytes.length - 1, 60000));
+        assertThrows(IllegalArgumentException.class,
+                () -> AudioClip.read(new ByteArrayInputStream(bytes), "a.wav", bytes.length, 500), "超过时长限制应拒绝");
+        assertEquals(bytes.length, AudioClip.read(new ByteArrayInputStream(bytes), "a.wav", bytes.length, 60000).data().length);
+    }
+}
@@ -0,0 +1,37 @@
+package com.qiniu.marsai.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 客户端地址解析测试类
+ */
+class ClientAddressResolverTest {
+
+    private final ClientAddressResolver resolver = new ClientAddressResolver(
+            List.of("127.0.0.0/8", "::1/128", "10.0.0.0/8", "172.16.0.0/12"));
+
+    @Test
+    void testDirectClient() {
+        assertEquals("203.0.113.7", resolver.resolve("203.0.113.7", "1.1.1.1", "2.2.2.2"),
+                "直连地址不受信任时忽略转发头，防止伪造");
+    }
+
+    @Test
+    void testForwardedChain() {
+        assertEquals("203.0.113.7", resolver.resolve("10.0.0.2", "198.51.100.1, 203.0.113.7, 172.16.5.4", null),
+                "应取最右侧第一个不受信任的地址");
+        assertEquals("10.1.1.1", resolver.resolve("127.0.0.1", "10.1.1.1, 10.2.2.2", null),
+                "全部受信任时取最左侧地址");
+        assertEquals("203.0.113.7", resolver.resolve("::1", "unknown, 203.0.113.7", null), "跳过非IP的值");
+    }
+
+    @Test
+    void testRealIpFallback() {
+        assertEquals("203.0.113.9", resolver.resolve("127.0.0.1", null, "203.0.113.9"));
+        assertEquals("127.0.0.1", resolver.resolve("127.0.0.1", "", "example.com"), "主机名不作为地址");
+    }
+}
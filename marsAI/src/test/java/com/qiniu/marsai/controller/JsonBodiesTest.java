@@ -0,0 +1,46 @@
+package com.qiniu.marsai.controller;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 请求体读写测试类
+ */
+class JsonBodiesTest {
+
+    @Test
+    void testReadText() {
+        assertEquals("去外滩", JsonBodies.readText("{\"text\":\"去外滩\"}"));
+        assertEquals("去外滩", JsonBodies.readText("{\"extra\":{\"text\":\"x\"},'text':'去外滩'}"), "应跳过嵌套对象");
+        assertEquals("去外滩", JsonBodies.readText("{text:\"去外滩\",}"), "应兼容宽松写法");
+        assertEquals("123", JsonBodies.readText("{\"text\":123}"));
+    }
+
+    @Test
+    void testInvalidBody() {
+        assertThrows(IllegalArgumentException.class, () -> JsonBodies.readText(null));
+        assertThrows(IllegalArgumentException.class, () -> JsonBodies.readText("[]"));
+        assertThrows(IllegalArgumentException.class, () -> JsonBodies.readText("{\"msg\":\"x\"}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonBodies.readText("{\"text\":null}"));
+        assertThrows(IllegalArgumentException.class, () -> JsonBodies.readText("{\"text\":"));
+    }
+
+    @Test
+    void testWrite() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("stage", "tool_finished");
+        fields.put("tool", "maps_\"geo\"");
+        fields.put("elapsedMs", 42L);
+        String json = JsonBodies.write(fields);
+        assertTrue(json.startsWith("{\"stage\""), "应保持字段顺序: " + json);
+        JSONObject parsed = new JSONObject(json);
+        assertEquals("maps_\"geo\"", parsed.getString("tool"));
+        assertEquals(42, parsed.getLong("elapsedMs"));
+        assertEquals("err", new JSONObject(JsonBodies.ERROR).getString("msg"));
+    }
+}
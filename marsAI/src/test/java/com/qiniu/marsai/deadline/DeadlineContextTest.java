@@ -0,0 +1,63 @@
+package com.qiniu.marsai.deadline;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 请求截止时间测试类
+ */
+class DeadlineContextTest {
+
+    @Test
+    void testCapUsesRemainingBudget() {
+        Deadline deadline = Deadline.after(500);
+        assertEquals(Duration.ofMillis(100), deadline.cap(Duration.ofMillis(100), "asr"), "剩余时间充足时保持原超时");
+        assertTrue(deadline.cap(Duration.ofSeconds(30), "asr").toMillis() <= 500, "超时不应超过剩余时间");
+
+        DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+                () -> Deadline.after(0).cap(Duration.ofSeconds(30), "asr"), "已过期时应直接失败");
+        assertEquals("asr", e.getStage());
+        assertEquals(0, e.getBudgetMs());
+    }
+
+    @Test
+    void testWithoutDeadlineNothingIsLimited() {
+        assertNull(DeadlineContext.current());
+        DeadlineContext.check("llm");
+        assertEquals(Duration.ofSeconds(30), DeadlineContext.cap(Duration.ofSeconds(30), "tool"));
+        assertEquals("ok", DeadlineContext.callWithin("llm", () -> "ok"));
+    }
+
+    @Test
+    void testWrapCarriesDeadlineToOtherThreads() {
+        Deadline deadline = Deadline.after(10_000);
+        Deadline seen = DeadlineContext.call(deadline, () -> CompletableFuture.supplyAsync(
+                DeadlineContext.wrap(DeadlineContext::current)).join());
+        assertSame(deadline, seen, "其它线程应看到同一个截止时间");
+        assertNull(DeadlineContext.current(), "执行结束后应恢复原来的绑定");
+    }
+
+    @Test
+    void testCallWithinAbortsAndInterruptsSlowCall() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long start = System.nanoTime();
+        DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+                () -> DeadlineContext.call(Deadline.after(100), () -> DeadlineContext.callWithin("llm", () -> {
+                    try {
+                        Thread.sleep(5000);
+                    } catch (InterruptedException ignored) {
+                        interrupted.countDown();
+                    }
+                    return "late";
+                })));
+        assertEquals("llm", e.getStage());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000, "超时后应立即返回");
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "超时的调用应被中断");
+    }
+}
@@ -0,0 +1,70 @@
+package com.qiniu.marsai.geo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地地名库测试类
+ */
+class GazetteerTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testBundledPlaces() throws IOException {
+        Gazetteer gazetteer = new Gazetteer(registry, "", List.of("classpath:gazetteer/places.tsv"));
+
+        assertEquals("上海市", gazetteer.lookup("上海").name(), "自动去掉\"市\"作为别名");
+        assertEquals("上海市", gazetteer.lookup("魔都").name(), "别名");
+        assertEquals("虹桥机场", gazetteer.lookup("上海虹桥国际机场").name());
+        assertEquals("虹桥机场", gazetteer.lookup("虹橋機場").name(), "繁体");
+        assertEquals("机场", gazetteer.lookup("虹桥机场").kind());
+        assertNull(gazetteer.lookup("不存在的地方"));
+        assertNull(gazetteer.lookup(""));
+        assertEquals(1, registry.get("marsai.gazetteer.lookups").tag("result", "miss").counter().count(), 0,
+                "空查询不计入");
+    }
+
+    @Test
+    void testCustomSourceOverrides() throws IOException {
+        Path custom = dir.resolve("custom.tsv");
+        Files.writeString(custom, "公司\t总部|我们公司\t自定义\t121.5\t31.2\n外滩\t\t地标\t121.4\t31.3\n", StandardCharsets.UTF_8);
+        Gazetteer gazetteer = new Gazetteer(registry, "",
+                List.of("classpath:gazetteer/places.tsv", custom.toUri().toString()));
+
+        assertEquals(new GeoPoint(121.5, 31.2), gazetteer.lookup("我们公司").point());
+        assertEquals(new GeoPoint(121.4, 31.3), gazetteer.lookup("外滩").point(), "后面的数据源覆盖同名地点");
+    }
+
+    @Test
+    void testMappedIndex() throws IOException {
+        Path index = dir.resolve("gazetteer.idx");
+        try (OutputStream out = Files.newOutputStream(index)) {
+            GazetteerWriter.write(GazetteerWriter.readTsv(new StringReader("""
+                    # 注释
+                    杭州东站	杭州东	火车站	120.2126	30.290851
+                    """)), out);
+        }
+        Gazetteer gazetteer = new Gazetteer(registry, index.toString(), List.of());
+
+        assertEquals(1, gazetteer.size());
+        assertEquals("杭州东站", gazetteer.lookup("杭州东").name());
+        assertEquals("{\"found\":true,\"name\":\"杭州东站\",\"kind\":\"火车站\",\"location\":\"120.2126,30.290851\"}",
+                gazetteer.lookupPlace("杭州东站"));
+        assertEquals("{\"found\":false}", gazetteer.lookupPlace("宁波站"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.qiniu.marsai.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * maps_geo结果解析测试类
+ */
+class GeocoderTest {
+
+    @Test
+    void testSingleResult() {
+        Geocoder.Match match = Geocoder.parse("外滩", """
+                {"results":[{"country":"中国","province":"上海市","city":"上海市","district":"黄浦区","location":"121.490317,31.241701","level":"兴趣点"}]}""");
+
+        assertNotNull(match);
+        assertEquals(new GeoPoint(121.490317, 31.241701), match.point());
+        assertTrue(match.confidence() > 0.9);
+    }
+
+    @Test
+    void testScatteredResultsLowConfidence() {
+        Geocoder.Match match = Geocoder.parse("人民广场", """
+                {"results":[{"location":"121.475021,31.228873"},{"location":"113.264434,23.129162"}]}""");
+
+        assertNotNull(match);
+        assertTrue(match.confidence() < 0.7, "候选结果分散在多个城市时置信度应较低");
+    }
+
+    @Test
+    void testNoResult() {
+        assertNull(Geocoder.parse("不存在", "{\"results\":[]}"));
+        assertNull(Geocoder.parse("不存在", "There was an error executing the tool"));
+    }
+
+    @Test
+    void testDistance() {
+        double km = new GeoPoint(121.4737, 31.2304).distanceKm(new GeoPoint(116.4074, 39.9042));
+        assertEquals(1068, km, 10, "上海到北京直线距离约1068公里");
+    }
+}
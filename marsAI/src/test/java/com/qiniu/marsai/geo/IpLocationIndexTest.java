@@ -0,0 +1,77 @@
+package com.qiniu.marsai.geo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 离线IP位置索引测试类
+ */
+class IpLocationIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private IpLocationIndex build(String tsv) throws IOException {
+        Path source = dir.resolve("ranges.tsv");
+        Files.writeString(source, tsv, StandardCharsets.UTF_8);
+        Path index = dir.resolve("ip-location.idx");
+        IpLocationIndexWriter.write(IpLocationIndexWriter.readTsv(source), index);
+        return new IpLocationIndex(index.toString());
+    }
+
+    @Test
+    void testLookup() throws IOException {
+        // 故意乱序，写入时排序
+        IpLocationIndex index = build("""
+                # 起始IP	结束IP	地区	经度	纬度
+                202.96.0.0	202.96.63.255	上海市	121.473701	31.230416
+                1.0.1.0	1.0.3.255	福州市	119.296494	26.074507
+                223.255.0.0	255.255.255.255	测试段	116.0	39.0
+                202.96.64.0	202.96.127.255	上海市	121.473701	31.230416
+                """);
+
+        assertTrue(index.isLoaded());
+        assertEquals(4, index.size());
+        assertEquals(new IpLocation("上海市", 121.473701, 31.230416), index.lookup("202.96.0.0"), "段起点");
+        assertEquals("上海市", index.lookup("202.96.127.255").name(), "段终点");
+        assertEquals("福州市", index.lookup("1.0.2.3").name());
+        assertEquals("福州市", index.lookup("::ffff:1.0.2.3").name(), "IPv4映射地址");
+        assertEquals("测试段", index.lookup("255.255.255.255").name(), "无符号比较");
+        assertNull(index.lookup("1.0.0.255"), "在第一段之前");
+        assertNull(index.lookup("202.96.128.0"), "两段之间的空隙");
+        assertNull(index.lookup("2001:db8::1"), "IPv6");
+        assertNull(index.lookup("not-an-ip"));
+    }
+
+    @Test
+    void testOverlapRejected() {
+        assertThrows(IllegalArgumentException.class, () -> build("""
+                1.0.0.0	1.0.0.255	甲	1	1
+                1.0.0.128	1.0.1.255	乙	2	2
+                """));
+    }
+
+    @Test
+    void testMissingIndex() {
+        IpLocationIndex index = new IpLocationIndex(dir.resolve("missing.idx").toString());
+
+        assertFalse(index.isLoaded());
+        assertNull(index.lookup("1.2.3.4"), "索引不存在时查询返回null");
+    }
+
+    @Test
+    void testParseIpv4() {
+        assertEquals(0xC0A80101L, IpLocationIndex.parseIpv4("192.168.1.1"));
+        assertEquals(-1, IpLocationIndex.parseIpv4("256.1.1.1"));
+        assertEquals(-1, IpLocationIndex.parseIpv4("1.2.3"));
+        assertEquals(-1, IpLocationIndex.parseIpv4("1..2.3"));
+        assertEquals(-1, IpLocationIndex.parseIpv4("1.2.3.4."));
+    }
+}
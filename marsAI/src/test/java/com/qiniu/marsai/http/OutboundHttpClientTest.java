@@ -0,0 +1,102 @@
+package com.qiniu.marsai.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 出站HTTP客户端测试类
+ */
+class OutboundHttpClientTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void testPostAndMetrics() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(registry, 4, 1000, List.of());
+        var response = client.post(baseUrl + "/echo", Map.of("Content-Type", "text/plain"),
+                "你好".getBytes(StandardCharsets.UTF_8), Duration.ofSeconds(5));
+
+        assertEquals(200, response.statusCode());
+        assertEquals("你好", response.body());
+        assertEquals(1, registry.get("marsai.http.client.requests").tag("host", "127.0.0.1").tag("outcome", "200")
+                .timer().count(), "应记录请求耗时");
+        client.shutdown();
+    }
+
+    @Test
+    void testPerHostLimit() throws Exception {
+        OutboundHttpClient client = new OutboundHttpClient(registry, 1, 200, List.of());
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.get(baseUrl + "/slow", Duration.ofSeconds(5)).statusCode();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        // 等第一个请求占住许可
+        long deadline = System.currentTimeMillis() + 2000;
+        while (registry.find("marsai.http.client.inflight").gauge() == null
+                || registry.get("marsai.http.client.inflight").gauge().value() < 1) {
+            assertTrue(System.currentTimeMillis() < deadline, "第一个请求应已发出");
+            Thread.sleep(10);
+        }
+
+        IOException rejected = assertThrows(IOException.class, () -> client.get(baseUrl + "/echo", Duration.ofSeconds(1)));
+        assertTrue(rejected.getMessage().contains("上限"));
+
+        release.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS));
+        assertEquals(200, client.get(baseUrl + "/echo", Duration.ofSeconds(5)).statusCode(), "许可释放后应能继续请求");
+        client.shutdown();
+    }
+}
@@ -0,0 +1,78 @@
+package com.qiniu.marsai.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自适应并发限制测试类
+ */
+class AdaptiveLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void testRejectWhenFull() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("llm", 2, 1, 10);
+        AdaptiveLimiter.Permit first = limiter.acquire();
+        AdaptiveLimiter.Permit second = limiter.acquire();
+        LimitExceededException e = assertThrows(LimitExceededException.class, limiter::acquire);
+        assertEquals("llm", e.getResource());
+        assertTrue(e.getRetryAfterSeconds() >= 1);
+        assertEquals(1, limiter.getRejections());
+
+        first.ignore();
+        first.ignore();
+        assertEquals(1, limiter.getInFlight(), "重复释放不应多归还许可");
+        assertNotNull(limiter.tryAcquire());
+        second.success();
+    }
+
+    @Test
+    void testLimitFollowsLatency() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("mcp", 10, 2, 100);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(100 * MS, limiter.getLimit());
+        }
+        int grown = limiter.getLimit();
+        assertTrue(grown > 10, "延迟平稳且并发打满时应上调，实际" + grown);
+
+        for (int i = 0; i < 30; i++) {
+            limiter.onSample(1000 * MS, limiter.getLimit());
+        }
+        assertTrue(limiter.getLimit() < grown / 2, "延迟大幅上升时应收缩，实际" + limiter.getLimit());
+
+        int before = limiter.getLimit();
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(100 * MS, 1);
+        }
+        assertEquals(before, limiter.getLimit(), "并发远低于上限时不应调整");
+    }
+
+    @Test
+    void testBackoffOnFailure() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("asr", 10, 3, 100);
+        List<Integer> limits = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            assertThrows(IllegalStateException.class, () -> limiter.call(() -> {
+                throw new IllegalStateException("上游超时");
+            }));
+            limits.add(limiter.getLimit());
+        }
+        assertEquals(9, limits.get(0));
+        assertEquals(3, limiter.getLimit(), "不应低于最小上限");
+        assertEquals(0, limiter.getInFlight());
+        assertEquals("成功", limiter.call(() -> "成功"));
+    }
+
+    @Test
+    void testParseBounds() {
+        Map<String, ConcurrencyLimits.Bounds> bounds = ConcurrencyLimits.Bounds.parse("llm=20/2/200, mcp=8");
+        assertEquals(new ConcurrencyLimits.Bounds(20, 2, 200), bounds.get("llm"));
+        assertEquals(new ConcurrencyLimits.Bounds(8, 1, 80), bounds.get("mcp"));
+    }
+}
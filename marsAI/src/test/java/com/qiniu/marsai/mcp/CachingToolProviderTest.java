@@ -0,0 +1,98 @@
+package com.qiniu.marsai.mcp;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingToolProviderTest {
+
+    private final AtomicInteger geoCalls = new AtomicInteger();
+    private final AtomicInteger weatherCalls = new AtomicInteger();
+
+    private CachingToolProvider provider(String policies) {
+        Map<ToolSpecification, ToolExecutor> tools = new LinkedHashMap<>();
+        tools.put(ToolSpecification.builder().name("maps_geo").build(), (request, memoryId) -> {
+            geoCalls.incrementAndGet();
+            if (request.arguments().contains("错误")) {
+                return "{\"status\":\"0\",\"info\":\"INVALID_PARAMS\"}";
+            }
+            return "geo:" + request.arguments();
+        });
+        tools.put(ToolSpecification.builder().name("maps_weather").build(), (request, memoryId) -> {
+            weatherCalls.incrementAndGet();
+            return "weather:" + request.arguments();
+        });
+        return new CachingToolProvider(request -> new ToolProviderResult(tools), CachingToolProvider.Policy.parse(policies), 60_000);
+    }
+
+    private static String call(CachingToolProvider provider, String tool, String arguments) {
+        Map<ToolSpecification, ToolExecutor> tools = provider
+                .provideTools(new ToolProviderRequest("session", UserMessage.from("test")))
+                .tools();
+        ToolSpecification spec = tools.keySet().stream().filter(s -> s.name().equals(tool)).findFirst().orElseThrow();
+        return tools.get(spec).execute(ToolExecutionRequest.builder().name(tool).arguments(arguments).build(), "session");
+    }
+
+    @Test
+    void canonicalKeyIgnoresArgumentOrderAndWhitespace() {
+        String key = CachingToolProvider.canonicalKey("{\"address\":\"北京\",\"city\":\"北京\"}");
+        assertEquals(key, CachingToolProvider.canonicalKey("{ \"city\" : \" 北京 \",\n \"address\":\"北京\" }"));
+        assertNotEquals(key, CachingToolProvider.canonicalKey("{\"address\":\"上海\",\"city\":\"北京\"}"));
+
+        CachingToolProvider provider = provider("maps_geo=1h/10");
+        call(provider, "maps_geo", "{\"address\":\"北京\",\"city\":\"北京\"}");
+        call(provider, "maps_geo", "{\"city\":\"北京\", \"address\":\" 北京\"}");
+        assertEquals(1, geoCalls.get(), "参数顺序和空白不同的调用应命中缓存");
+    }
+
+    @Test
+    void expiresEntriesAfterToolTtl() throws Exception {
+        CachingToolProvider provider = provider("maps_geo=1h/10,maps_weather=50ms/10");
+        call(provider, "maps_weather", "{\"city\":\"北京\"}");
+        call(provider, "maps_geo", "{\"address\":\"北京\"}");
+        Thread.sleep(100);
+        call(provider, "maps_weather", "{\"city\":\"北京\"}");
+        call(provider, "maps_geo", "{\"address\":\"北京\"}");
+        assertEquals(2, weatherCalls.get(), "天气结果超过有效期后应重新调用");
+        assertEquals(1, geoCalls.get(), "地理编码结果仍在有效期内");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() {
+        CachingToolProvider provider = provider("maps_geo=1h/2");
+        call(provider, "maps_geo", "{\"address\":\"北京\"}");
+        call(provider, "maps_geo", "{\"address\":\"上海\"}");
+        call(provider, "maps_geo", "{\"address\":\"北京\"}");
+        call(provider, "maps_geo", "{\"address\":\"广州\"}");
+        assertEquals(3, geoCalls.get());
+
+        call(provider, "maps_geo", "{\"address\":\"北京\"}");
+        assertEquals(3, geoCalls.get(), "最近使用过的条目应保留");
+        call(provider, "maps_geo", "{\"address\":\"上海\"}");
+        assertEquals(4, geoCalls.get(), "最久未使用的条目应被淘汰");
+        assertEquals(2L, provider.stats().get(0).get("evictions"));
+    }
+
+    @Test
+    void doesNotCacheErrorsOrUnconfiguredTools() {
+        CachingToolProvider provider = provider("maps_geo=1h/10");
+        call(provider, "maps_geo", "{\"address\":\"错误\"}");
+        call(provider, "maps_geo", "{\"address\":\"错误\"}");
+        assertEquals(2, geoCalls.get(), "错误结果不应缓存");
+
+        call(provider, "maps_weather", "{\"city\":\"北京\"}");
+        call(provider, "maps_weather", "{\"city\":\"北京\"}");
+        assertEquals(2, weatherCalls.get(), "没有配置策略的工具不应缓存");
+        assertTrue(CachingToolProvider.isError("There was an error executing the tool"));
+    }
+}
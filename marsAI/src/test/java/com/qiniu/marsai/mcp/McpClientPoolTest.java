@@ -0,0 +1,191 @@
+package com.qiniu.marsai.mcp;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.mcp.client.McpClient;
+import dev.langchain4j.mcp.client.McpException;
+import dev.langchain4j.mcp.client.McpGetPromptResult;
+import dev.langchain4j.mcp.client.McpPrompt;
+import dev.langchain4j.mcp.client.McpReadResourceResult;
+import dev.langchain4j.mcp.client.McpResource;
+import dev.langchain4j.mcp.client.McpResourceTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class McpClientPoolTest {
+
+    private static final ToolExecutionRequest REQUEST = ToolExecutionRequest.builder()
+            .name("maps_geo")
+            .arguments("{\"address\":\"北京\"}")
+            .build();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    /**
+     * 记录调用的MCP客户端
+     */
+    private static class FakeClient implements McpClient {
+        final int index;
+        final Function<FakeClient, String> tool;
+        final AtomicInteger calls = new AtomicInteger();
+        volatile RuntimeException healthError;
+        volatile boolean closed;
+
+        FakeClient(int index, Function<FakeClient, String> tool) {
+            this.index = index;
+            this.tool = tool;
+        }
+
+        @Override
+        public String key() {
+            return "fake-" + index;
+        }
+
+        @Override
+        public List<ToolSpecification> listTools() {
+            return List.of();
+        }
+
+        @Override
+        public String executeTool(ToolExecutionRequest request) {
+            calls.incrementAndGet();
+            return tool.apply(this);
+        }
+
+        @Override
+        public List<McpResource> listResources() {
+            return List.of();
+        }
+
+        @Override
+        public List<McpResourceTemplate> listResourceTemplates() {
+            return List.of();
+        }
+
+        @Override
+        public McpReadResourceResult readResource(String uri) {
+            return null;
+        }
+
+        @Override
+        public List<McpPrompt> listPrompts() {
+            return List.of();
+        }
+
+        @Override
+        public McpGetPromptResult getPrompt(String name, Map<String, Object> arguments) {
+            return null;
+        }
+
+        @Override
+        public void checkHealth() {
+            if (healthError != null) {
+                throw healthError;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    void dispatchesToSlotWithFewestInFlightCalls() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<FakeClient> clients = new CopyOnWriteArrayList<>();
+        McpClientPool pool = new McpClientPool("test", 2, index -> {
+            FakeClient client = new FakeClient(index, c -> {
+                if (c.calls.get() == 1 && c.index == 0) {
+                    entered.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return "ok-" + c.index;
+            });
+            clients.add(client);
+            return client;
+        }, 60_000, 1000, null, registry);
+        try {
+            // 第一次调用落在0号进程并阻塞，之后的调用应分发给空闲的1号进程
+            CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> pool.executeTool(REQUEST));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            assertEquals(1, registry.get("marsai.mcp.pool.inflight").tag("slot", "0").gauge().value(), "在途请求数应按slot注册为指标");
+            assertEquals("ok-1", pool.executeTool(REQUEST));
+            assertEquals("ok-1", pool.executeTool(REQUEST), "0号进程仍有在途请求，应继续选择1号");
+            release.countDown();
+            assertEquals("ok-0", slow.get(5, TimeUnit.SECONDS));
+            assertEquals(1, clients.get(0).calls.get());
+            assertEquals(2, clients.get(1).calls.get());
+            assertEquals(1, registry.get("marsai.mcp.pool.latency").tag("slot", "0").timer().count());
+            assertEquals(2, registry.get("marsai.mcp.pool.latency").tag("slot", "1").timer().count(), "每个进程的调用耗时应按slot记录");
+        } finally {
+            release.countDown();
+            pool.close();
+        }
+    }
+
+    @Test
+    void restartsSlotThatFailsHealthCheck() throws Exception {
+        List<FakeClient> clients = new CopyOnWriteArrayList<>();
+        McpClientPool pool = new McpClientPool("test", 1, index -> {
+            FakeClient client = new FakeClient(index, c -> "ok");
+            clients.add(client);
+            return client;
+        }, 50, 1000, null, registry);
+        try {
+            clients.get(0).healthError = new IllegalStateException("Process is not alive");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (clients.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, clients.size(), "健康检查失败的进程应被重新拉起");
+            assertTrue(clients.get(0).closed, "旧进程应被关闭");
+            assertEquals(1L, pool.stats().get(0).get("restarts"));
+            assertEquals("ok", pool.executeTool(REQUEST));
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    void toolErrorDoesNotEvictSlot() {
+        AtomicInteger mode = new AtomicInteger();
+        McpClientPool pool = new McpClientPool("test", 1, index -> new FakeClient(index, c -> {
+            if (mode.get() == 0) {
+                throw new McpException(-32602, "invalid address");
+            }
+            throw new RuntimeException(new IOException("Broken pipe"));
+        }), 60_000, 1000, null, registry);
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertThrows(McpException.class, () -> pool.executeTool(REQUEST));
+            }
+            assertEquals(true, pool.stats().get(0).get("healthy"), "工具错误不应摘除进程");
+            assertEquals(5L, pool.stats().get(0).get("errors"));
+
+            mode.set(1);
+            assertThrows(RuntimeException.class, () -> pool.executeTool(REQUEST));
+            assertEquals(false, pool.stats().get(0).get("healthy"), "管道断开应摘除进程");
+            assertThrows(IllegalStateException.class, () -> pool.executeTool(REQUEST));
+        } finally {
+            pool.close();
+        }
+    }
+}
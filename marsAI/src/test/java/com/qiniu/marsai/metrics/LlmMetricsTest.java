@@ -0,0 +1,116 @@
+package com.qiniu.marsai.metrics;
+
+import com.qiniu.marsai.limit.ConcurrencyLimits;
+import com.qiniu.marsai.tool.ParallelToolExecution;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final LlmMetrics metrics = new LlmMetrics(registry);
+
+    /**
+     * 经过ChatModelInstrumentation包装的模型，与容器中的处理方式一致
+     */
+    private ChatModel instrumented(Function<ChatRequest, ChatResponse> reply) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("llmMetrics", metrics);
+        beans.addBean("concurrencyLimits", new ConcurrencyLimits(registry, false, "llm=20/2/200"));
+        beans.addBean("parallelToolExecution", new ParallelToolExecution(registry, true, 8, "5s", ""));
+        ChatModelInstrumentation instrumentation = new ChatModelInstrumentation(beans.getBeanProvider(LlmMetrics.class),
+                beans.getBeanProvider(ConcurrencyLimits.class), beans.getBeanProvider(ParallelToolExecution.class));
+        ChatModel model = new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest request) {
+                return reply.apply(request);
+            }
+        };
+        Object wrapped = instrumentation.postProcessAfterInitialization(model, "testModel");
+        assertInstanceOf(InstrumentedChatModel.class, wrapped);
+        assertSame(wrapped, instrumentation.postProcessAfterInitialization(wrapped, "testModel"), "不应重复包装");
+        return (ChatModel) wrapped;
+    }
+
+    private static ChatRequest request() {
+        return ChatRequest.builder().messages(UserMessage.from("导航到北京")).build();
+    }
+
+    private static ChatResponse text(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).tokenUsage(new TokenUsage(12, 5)).build();
+    }
+
+    private static ChatResponse toolCall() {
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from(ToolExecutionRequest.builder().id("1").name("maps_geo").arguments("{}").build()))
+                .build();
+    }
+
+    private long latencyCount(String outcome) {
+        return registry.get("marsai.llm.latency").tag("model", "testModel").tag("outcome", outcome).timer().count();
+    }
+
+    @Test
+    void recordsTokensAndLatencyOnSuccess() {
+        ChatModel model = instrumented(request -> text("ok"));
+        assertEquals("ok", model.chat(request()).aiMessage().text());
+
+        assertEquals(1, latencyCount("success"));
+        assertEquals(12, registry.get("marsai.llm.tokens").tag("type", "input").summary().totalAmount());
+        assertEquals(5, registry.get("marsai.llm.tokens").tag("type", "output").summary().totalAmount());
+    }
+
+    @Test
+    void recordsLatencyOnError() {
+        ChatModel model = instrumented(request -> {
+            throw new IllegalStateException("upstream failed");
+        });
+        assertThrows(RuntimeException.class, () -> model.chat(request()));
+
+        assertEquals(1, latencyCount("error"));
+        assertNull(registry.find("marsai.llm.tokens").summary(), "失败的调用不应记录token");
+    }
+
+    @Test
+    void countsToolRoundsAcrossNestedAndFailedCalls() {
+        ChatModel tools = instrumented(request -> toolCall());
+
+        int result = metrics.countToolRounds(() -> {
+            tools.chat(request());
+            // 嵌套调用单独计数，结束后外层继续使用自己的计数器
+            metrics.countToolRounds(() -> tools.chat(request()));
+            tools.chat(request());
+            return 1;
+        });
+        assertEquals(1, result);
+        DistributionSummary summary = registry.get("marsai.llm.tool.rounds").summary();
+        assertEquals(2, summary.count());
+        assertEquals(3, summary.totalAmount(), "外层2轮加内层1轮");
+        assertEquals(2, summary.max(), "外层应记录2轮");
+
+        assertThrows(IllegalStateException.class, () -> metrics.countToolRounds(() -> {
+            tools.chat(request());
+            throw new IllegalStateException("failed");
+        }));
+        assertEquals(3, summary.count(), "失败的调用也应记录");
+        assertEquals(4, summary.totalAmount());
+
+        // 计数器已清理，之后不在countToolRounds中的调用不再计数
+        tools.chat(request());
+        assertEquals(3, summary.count());
+        assertEquals(4, summary.totalAmount());
+    }
+}
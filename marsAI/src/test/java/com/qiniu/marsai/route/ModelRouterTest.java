@@ -0,0 +1,62 @@
+package com.qiniu.marsai.route;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 模型分层路由测试类
+ */
+class ModelRouterTest {
+
+    private static ModelRouter router(boolean enabled) {
+        ModelRouter router = new ModelRouter();
+        ReflectionTestUtils.setField(router, "enabled", enabled);
+        ReflectionTestUtils.setField(router, "maxFastChars", 24);
+        ReflectionTestUtils.setField(router, "meterRegistry", new SimpleMeterRegistry());
+        return router;
+    }
+
+    @Test
+    void testSimpleAndShortQueriesUseFastTier() {
+        ModelRouter router = router(true);
+        ModelRouter.Decision simple = router.route("从天安门到故宫");
+        assertEquals(ModelRouter.Tier.FAST, simple.tier(), "规则可解析的查询应走快速模型");
+        assertEquals("simple", simple.reason());
+        ModelRouter.Decision shortQuery = router.route("我想去颐和园玩");
+        assertEquals(ModelRouter.Tier.FAST, shortQuery.tier(), "简短查询应走快速模型");
+    }
+
+    @Test
+    void testComplexAndLongQueriesUseStrongTier() {
+        ModelRouter router = router(true);
+        ModelRouter.Decision complex = router.route("从天安门到故宫，避开高速");
+        assertEquals(ModelRouter.Tier.STRONG, complex.tier(), "带附加条件的查询应走主模型");
+        assertEquals("complex", complex.reason());
+        ModelRouter.Decision follow = router.route("改成骑行");
+        assertEquals(ModelRouter.Tier.STRONG, follow.tier(), "依赖上下文的追问应走主模型");
+        ModelRouter.Decision longQuery = router.route("我想带着家里的老人和孩子一起去颐和园玩一整天，麻烦给规划一条合适的路线");
+        assertEquals(ModelRouter.Tier.STRONG, longQuery.tier(), "较长的查询应走主模型");
+        assertEquals("long", longQuery.reason());
+        assertEquals("disabled", router(false).route("从天安门到故宫").reason(), "关闭后全部走主模型");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStats() {
+        ModelRouter router = router(true);
+        router.route("从天安门到故宫");
+        router.route("从天安门到故宫");
+        router.escalated("incomplete");
+        Map<String, Object> stats = router.stats();
+        assertEquals(2L, ((Map<String, Long>) stats.get("decisions")).get("fast:simple"));
+        assertEquals(1L, ((Map<String, Long>) stats.get("escalations")).get("incomplete"));
+        assertThrows(IllegalStateException.class, () -> router.timed(ModelRouter.Tier.FAST, () -> {
+            throw new IllegalStateException("boom");
+        }), "调用异常应原样抛出");
+    }
+}
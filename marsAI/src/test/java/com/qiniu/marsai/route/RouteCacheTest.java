@@ -0,0 +1,102 @@
+package com.qiniu.marsai.route;
+
+import com.qiniu.marsai.geo.GeoHash;
+import com.qiniu.marsai.geo.GeoPoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCacheTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    private static RouteCache cache(long maxBytes, Clock clock) {
+        return new RouteCache(new SimpleMeterRegistry(), true, 7, maxBytes, "7-10,17-20",
+                Duration.ofMinutes(5), Duration.ofMinutes(30), Duration.ofDays(1), clock);
+    }
+
+    private static Clock at(int hour, int minute) {
+        Instant instant = LocalDateTime.of(2025, 3, 10, hour, minute).atZone(ZONE).toInstant();
+        return Clock.fixed(instant, ZONE);
+    }
+
+    private static RoutePlan plan(int points) {
+        return RoutePlan.of(1000, 300, new int[points * 2], new int[]{0}, new String[]{"向北行驶"});
+    }
+
+    @Test
+    void snapsNearbyCoordinatesToSameKey() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(10.40744, 57.64911, 11));
+        RouteCache cache = cache(1 << 20, Clock.system(ZoneOffset.UTC));
+        GeoPoint destination = new GeoPoint(116.397428, 39.90923);
+        String key = cache.key("api", new GeoPoint(116.481028, 39.989643), destination, "driving", 10);
+        assertEquals(key, cache.key("api", new GeoPoint(116.481100, 39.989700), destination, "driving", 10), "相距约十米的起点应落在同一网格");
+        assertNotEquals(key, cache.key("api", new GeoPoint(116.491028, 39.989643), destination, "driving", 10), "相距约一公里的起点不应共用缓存");
+        assertNotEquals(key, cache.key("api", new GeoPoint(116.481028, 39.989643), destination, "driving", 12), "不同策略不应共用缓存");
+        assertEquals(cache.key("api", new GeoPoint(116.481028, 39.989643), destination, "walking", 10),
+                cache.key("api", new GeoPoint(116.481028, 39.989643), destination, "walking", null), "步行应忽略驾车策略");
+        assertEquals("riding", RouteCache.normalizeMode("骑车"));
+        assertNull(RouteCache.normalizeMode("飞行"));
+    }
+
+    @Test
+    void ttlDependsOnTimeOfDayForTrafficAwarePolicies() {
+        Clock peak = at(8, 0);
+        RouteCache peakCache = cache(1 << 20, peak);
+        long now = peak.millis();
+        assertEquals(now + Duration.ofMinutes(5).toMillis(), peakCache.expiresAt(now, "driving", 10), "高峰期路况相关的策略应使用短有效期");
+        assertEquals(now + Duration.ofDays(1).toMillis(), peakCache.expiresAt(now, "driving", 13), "不考虑路况的策略应按天缓存");
+        assertEquals(now + Duration.ofDays(1).toMillis(), peakCache.expiresAt(now, "walking", null));
+
+        Clock offPeak = at(13, 0);
+        long noon = offPeak.millis();
+        assertEquals(noon + Duration.ofMinutes(30).toMillis(), cache(1 << 20, offPeak).expiresAt(noon, "driving", 20));
+
+        Clock beforePeak = at(16, 50);
+        long late = beforePeak.millis();
+        assertEquals(late + Duration.ofMinutes(10).toMillis(), cache(1 << 20, beforePeak).expiresAt(late, "driving", 10), "平峰期的结果不应跨入下一个高峰");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBySizeAndCountsHits() {
+        RoutePlan plan = plan(100);
+        RouteCache cache = cache(plan.weightBytes() * 2, at(13, 0));
+        cache.put("a", plan, "walking", null);
+        cache.put("b", plan(100), "walking", null);
+        assertSame(plan, cache.get("a"));
+        cache.put("c", plan(100), "walking", null);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"), "最久未使用的条目应被淘汰");
+        assertNotNull(cache.get("c"));
+        assertTrue(cache.bytes() <= plan.weightBytes() * 2);
+        assertEquals(2L, cache.stats().get("hits"));
+        assertEquals(2.0 / 3, (double) cache.stats().get("hitRatio"), 1e-9);
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void parsesAmapResponseIntoFixedPointPath() throws Exception {
+        String body = "{\"status\":\"1\",\"route\":{\"paths\":[{\"distance\":\"1200\",\"duration\":\"360\",\"steps\":["
+                + "{\"instruction\":\"向东行驶\",\"polyline\":\"116.481028,39.989643;116.482000,39.989700\"},"
+                + "{\"instruction\":\"右转\",\"polyline\":\"116.482000,39.989700;116.483500,39.988000\"}]}]}}";
+        RoutePlan plan = RoutePlanService.parse(body);
+        assertEquals(1200, plan.distanceM());
+        assertEquals(360, plan.durationS());
+        assertEquals(3, plan.points(), "步骤首尾相接的点应只保存一次");
+        assertEquals(116.481028, plan.longitude(0), 1e-9);
+        assertEquals(39.988, plan.latitude(2), 1e-9);
+        assertThrows(IOException.class, () -> RoutePlanService.parse("{\"status\":\"0\",\"info\":\"INVALID_USER_KEY\"}"));
+        assertThrows(IOException.class, () -> RoutePlanService.parse("{\"status\":\"1\",\"route\":{\"paths\":[{\"steps\":["
+                + "{\"instruction\":\"向东行驶\",\"polyline\":\"116.48x,39.98\"}]}]}}"), "坐标格式错误应作为规划失败处理");
+    }
+}
@@ -0,0 +1,58 @@
+package com.qiniu.marsai.route;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 线路意图编解码测试类
+ */
+class RouteIntentCodecTest {
+
+    @Test
+    void testLenientParse() {
+        String output = "好的，已为您规划：\n```json\n{'出发地':{'经度':'121.47','维度':31.23},"
+                + "目的地:{\"经度\":116.40,\"维度\":39.90},\"出行方式\":\" 驾车 \",\"policy\":\"12\",\"err\":\"\",}\n```\n祝您出行愉快";
+        RouteIntent intent = RouteIntentCodec.parse(output);
+        assertEquals(121.47, intent.origin().longitude(), 1e-9, "字符串数字应能解析");
+        assertEquals(39.90, intent.destination().latitude(), 1e-9);
+        assertEquals("驾车", intent.mode());
+        assertEquals(12, intent.policy());
+        assertEquals("", intent.policyReason(), "缺失字段应补为空串");
+        assertTrue(intent.isComplete());
+    }
+
+    @Test
+    void testEmptyPolicyAndError() {
+        RouteIntent walking = RouteIntentCodec.parse("{\"出发地\":{\"经度\":1,\"维度\":2},\"目的地\":{\"经度\":3,\"维度\":4},"
+                + "\"出行方式\":\"步行\",\"policy\":\"\",\"policyReason\":\"\",\"err\":\"\"}");
+        assertNull(walking.policy(), "空串policy应解析为null");
+        assertTrue(walking.isComplete());
+
+        RouteIntent error = RouteIntentCodec.parse("{\"出发地\":{},\"目的地\":{},\"err\":\"请告诉我目的地\"}");
+        assertTrue(error.isError());
+        assertFalse(error.isComplete());
+    }
+
+    @Test
+    void testInvalidOutput() {
+        assertThrows(IllegalArgumentException.class, () -> RouteIntentCodec.parse("抱歉，我无法理解"));
+        assertThrows(IllegalArgumentException.class, () -> RouteIntentCodec.parse("{\"出发地\":[1,2]}"));
+        assertThrows(IllegalArgumentException.class, () -> RouteIntentCodec.parse(null));
+    }
+
+    @Test
+    void testSerializedFormat() {
+        String json = RouteIntentCodec.toJson(new RouteIntent(new RouteIntent.Coordinate(121.47, 31.23),
+                new RouteIntent.Coordinate(116.4, 39.9), "驾车", 10, "默认策略", null));
+        assertTrue(json.startsWith("{\"出发地\":{\"经度\":121.47,\"维度\":31.23},\"目的地\""), "键名和顺序应与约定一致: " + json);
+        JSONObject parsed = new JSONObject(json);
+        assertEquals(10, parsed.getInt("policy"));
+        assertEquals("", parsed.getString("err"));
+
+        String error = RouteIntentCodec.toJson(RouteIntent.error("无法识别"));
+        assertEquals("{}", new JSONObject(error).getJSONObject("出发地").toString(), "错误意图的坐标应为空对象");
+        assertEquals(RouteIntentCodec.parse(json), RouteIntentCodec.parse(RouteIntentCodec.toJson(RouteIntentCodec.parse(json))));
+    }
+}
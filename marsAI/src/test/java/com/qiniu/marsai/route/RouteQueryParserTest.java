@@ -0,0 +1,60 @@
+package com.qiniu.marsai.route;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 线路查询规则解析测试类
+ */
+class RouteQueryParserTest {
+
+    private static void assertParsed(String text, String origin, String destination, String mode) {
+        RouteQueryParser.ParsedQuery query = RouteQueryParser.parse(text);
+        assertNotNull(query, "应能解析: " + text);
+        assertEquals(origin, query.origin(), "出发地: " + text);
+        assertEquals(destination, query.destination(), "目的地: " + text);
+        assertEquals(mode, query.mode(), "出行方式: " + text);
+    }
+
+    @Test
+    void testSimpleQueries() {
+        assertParsed("从上海到北京", "上海", "北京", null);
+        assertParsed("人民广场去外滩骑行", "人民广场", "外滩", "骑行");
+        assertParsed("导航到虹桥机场", null, "虹桥机场", null);
+        assertParsed("我要开车从魔都到杭州", "上海", "杭州", "驾车");
+        assertParsed("从这里步行到外滩怎么走？", null, "外滩", "步行");
+        assertParsed("从静安寺出发到徐家汇", "静安寺", "徐家汇", null);
+    }
+
+    @Test
+    void testComplexQueriesRejected() {
+        assertNull(RouteQueryParser.parse("从上海到北京不走高速"), "带偏好");
+        assertNull(RouteQueryParser.parse("先到外滩再到东方明珠"), "途经点");
+        assertNull(RouteQueryParser.parse("明天从上海到杭州"), "带时间");
+        assertNull(RouteQueryParser.parse("坐地铁到人民广场"), "公共交通");
+        assertNull(RouteQueryParser.parse("附近的加油站"), "周边搜索");
+        assertNull(RouteQueryParser.parse("改成骑行"), "追问");
+        assertNull(RouteQueryParser.parse("骑行步行到外滩"), "多个出行方式");
+        assertNull(RouteQueryParser.parse("从到北京"), "出发地为空");
+        assertNull(RouteQueryParser.parse("外滩"), "只有地名");
+    }
+
+    @Test
+    void testChooseModeAndPolicy() {
+        FastPathPlanner planner = new FastPathPlanner();
+        ReflectionTestUtils.setField(planner, "walkKm", 1.5);
+        ReflectionTestUtils.setField(planner, "rideKm", 5.0);
+        ReflectionTestUtils.setField(planner, "maxWalkKm", 10.0);
+        ReflectionTestUtils.setField(planner, "maxRideKm", 30.0);
+        ReflectionTestUtils.setField(planner, "highwayKm", 100.0);
+
+        assertEquals("步行", planner.choose(null, 1).mode());
+        assertEquals("骑行", planner.choose(null, 3).mode());
+        assertEquals(FastPathPlanner.POLICY_DEFAULT, planner.choose(null, 20).policy());
+        assertEquals(FastPathPlanner.POLICY_HIGHWAY, planner.choose(null, 1000).policy());
+        assertEquals("驾车", planner.choose("驾车", 0.5).mode(), "用户指定的出行方式优先");
+        assertNull(planner.choose("步行", 50), "步行距离过远时交给大模型给出建议");
+    }
+}
@@ -0,0 +1,228 @@
+package com.qiniu.marsai.service;
+
+import com.qiniu.marsai.controller.JsonBodies;
+import com.qiniu.marsai.tool.ObservableToolProvider;
+import com.qiniu.marsai.tool.ToolEventBus;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.tool.ToolExecution;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式对话测试类
+ */
+class AiStreamServiceTest {
+
+    private final ToolEventBus eventBus = new ToolEventBus();
+    private final Set<Object> evicted = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 不经过缓存和快速路径的意图服务
+     */
+    private static class PassThroughIntentService extends RouteIntentService {
+        @Override
+        public boolean selfContained(String sessionId, String text) {
+            return true;
+        }
+
+        @Override
+        public String cached(String sessionId, String text, String origin) {
+            return null;
+        }
+
+        @Override
+        public String fastPath(String sessionId, String text, String origin) {
+            return null;
+        }
+
+        @Override
+        public String userMessage(String text, String origin) {
+            return text;
+        }
+
+        @Override
+        public String normalize(String output) {
+            return output;
+        }
+
+        @Override
+        public void remember(String text, String origin, String result) {
+        }
+    }
+
+    /**
+     * 模拟模型：调用一次地理编码工具，输出两个片段后返回完整结果；失败时在工具调用后报错
+     */
+    private class FakeStreamingService implements AiHelperStreamingService {
+        private final ToolExecutor tool;
+        private final CyclicBarrier barrier;
+        private final boolean fail;
+
+        FakeStreamingService(CyclicBarrier barrier, boolean fail) {
+            ToolSpecification spec = ToolSpecification.builder().name("maps_geo").build();
+            ObservableToolProvider provider = new ObservableToolProvider(
+                    request -> new ToolProviderResult(Map.of(spec, (r, id) -> "{\"location\":\"116.4,39.9\"}")), eventBus, null);
+            this.tool = provider.provideTools(new ToolProviderRequest("test", UserMessage.from("test"))).tools().get(spec);
+            this.barrier = barrier;
+            this.fail = fail;
+        }
+
+        @Override
+        public TokenStream chat(String memoryId, String userMessage) {
+            return new FakeTokenStream(handlers -> new Thread(() -> {
+                try {
+                    if (barrier != null) {
+                        // 两个请求都订阅之后才执行工具
+                        barrier.await(5, TimeUnit.SECONDS);
+                    }
+                    tool.execute(ToolExecutionRequest.builder().id(memoryId).name("maps_geo").arguments("{}").build(), memoryId);
+                    if (fail) {
+                        handlers.error.accept(new IllegalStateException("upstream failed"));
+                        return;
+                    }
+                    handlers.partial.accept("{\"mode\":");
+                    handlers.partial.accept("\"driving\"}");
+                    handlers.complete.accept(ChatResponse.builder().aiMessage(AiMessage.from("{\"mode\":\"driving\"}")).build());
+                } catch (Exception e) {
+                    handlers.error.accept(e);
+                }
+            }).start());
+        }
+
+        @Override
+        public ChatMemory getChatMemory(Object memoryId) {
+            return null;
+        }
+
+        @Override
+        public boolean evictChatMemory(Object memoryId) {
+            evicted.add(memoryId);
+            return true;
+        }
+    }
+
+    private static class FakeTokenStream implements TokenStream {
+        Consumer<String> partial = token -> {
+        };
+        Consumer<ChatResponse> complete = response -> {
+        };
+        Consumer<Throwable> error = e -> {
+        };
+        private final Consumer<FakeTokenStream> onStart;
+
+        FakeTokenStream(Consumer<FakeTokenStream> onStart) {
+            this.onStart = onStart;
+        }
+
+        @Override
+        public TokenStream onPartialResponse(Consumer<String> handler) {
+            partial = handler;
+            return this;
+        }
+
+        @Override
+        public TokenStream onRetrieved(Consumer<List<Content>> handler) {
+            return this;
+        }
+
+        @Override
+        public TokenStream onToolExecuted(Consumer<ToolExecution> handler) {
+            return this;
+        }
+
+        @Override
+        public TokenStream onCompleteResponse(Consumer<ChatResponse> handler) {
+            complete = handler;
+            return this;
+        }
+
+        @Override
+        public TokenStream onError(Consumer<Throwable> handler) {
+            error = handler;
+            return this;
+        }
+
+        @Override
+        public TokenStream ignoreErrors() {
+            return this;
+        }
+
+        @Override
+        public void start() {
+            onStart.accept(this);
+        }
+    }
+
+    private AiStreamService service(AiHelperStreamingService streaming) {
+        AiStreamService service = new AiStreamService();
+        ReflectionTestUtils.setField(service, "aiHelperStreamingService", streaming);
+        ReflectionTestUtils.setField(service, "toolEventBus", eventBus);
+        ReflectionTestUtils.setField(service, "routeIntentService", new PassThroughIntentService());
+        return service;
+    }
+
+    private static List<String> names(List<ServerSentEvent<String>> events) {
+        return events.stream().map(ServerSentEvent::event).collect(Collectors.toList());
+    }
+
+    @Test
+    void streamsToolStagesTokensAndResultInOrder() {
+        List<ServerSentEvent<String>> events = service(new FakeStreamingService(null, false))
+                .chat("session-1", "去天安门", "127.0.0.1")
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("stage", "stage", "token", "token", "result"), names(events));
+        assertTrue(events.get(0).data().contains("\"stage\":\"tool_started\""));
+        assertTrue(events.get(1).data().contains("\"stage\":\"tool_finished\""));
+        assertEquals("{\"mode\":\"driving\"}", events.get(4).data());
+        assertEquals(1, evicted.size(), "请求结束后应清除请求记忆");
+        assertTrue(evicted.iterator().next().toString().startsWith("session-1" + AiHelperServiceFactory.REQUEST_SEPARATOR));
+    }
+
+    @Test
+    void concurrentRequestsInSameSessionReceiveOnlyTheirOwnToolEvents() throws Exception {
+        AiStreamService service = service(new FakeStreamingService(new CyclicBarrier(2), false));
+        var first = service.chat("session-1", "去天安门", "127.0.0.1").collectList().toFuture();
+        var second = service.chat("session-1", "去故宫", "127.0.0.1").collectList().toFuture();
+
+        for (List<ServerSentEvent<String>> events : List.of(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS))) {
+            assertEquals(List.of("stage", "stage", "token", "token", "result"), names(events), "每个请求只应收到自己的两个工具事件");
+        }
+        assertEquals(2, evicted.size());
+    }
+
+    @Test
+    void endsWithErrorEventWhenModelFails() {
+        List<ServerSentEvent<String>> events = service(new FakeStreamingService(null, true))
+                .chat("session-1", "去天安门", "127.0.0.1")
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("stage", "stage", "error"), names(events));
+        assertEquals(JsonBodies.ERROR, events.get(2).data());
+    }
+}
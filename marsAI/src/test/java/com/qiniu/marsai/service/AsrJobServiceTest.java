@@ -0,0 +1,30 @@
+package com.qiniu.marsai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsrJobServiceTest {
+
+    private static final List<String> ALLOWED = List.of("hooks.example.com", " callback.example.org ");
+
+    @Test
+    void acceptsOnlyAllowedCallbackHosts() {
+        assertDoesNotThrow(() -> AsrJobService.checkCallbackUrl(null, List.of()));
+        assertDoesNotThrow(() -> AsrJobService.checkCallbackUrl("https://hooks.example.com/asr", ALLOWED));
+        assertDoesNotThrow(() -> AsrJobService.checkCallbackUrl("http://CALLBACK.example.org:8080/a", ALLOWED));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> AsrJobService.checkCallbackUrl("http://127.0.0.1/admin", ALLOWED), "回环地址不在允许列表中");
+        assertThrows(IllegalArgumentException.class,
+                () -> AsrJobService.checkCallbackUrl("http://169.254.169.254/latest/meta-data", ALLOWED));
+        assertThrows(IllegalArgumentException.class,
+                () -> AsrJobService.checkCallbackUrl("http://hooks.example.com@127.0.0.1/", ALLOWED), "不应被userinfo绕过");
+        assertThrows(IllegalArgumentException.class,
+                () -> AsrJobService.checkCallbackUrl("ftp://hooks.example.com/asr", ALLOWED));
+        assertThrows(IllegalArgumentException.class,
+                () -> AsrJobService.checkCallbackUrl("https://hooks.example.com/asr", List.of()), "允许列表为空时拒绝回调");
+    }
+}
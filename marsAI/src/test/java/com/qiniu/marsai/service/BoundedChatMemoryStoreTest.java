@@ -0,0 +1,69 @@
+package com.qiniu.marsai.service;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 有界会话记忆存储测试类
+ */
+class BoundedChatMemoryStoreTest {
+
+    @Test
+    void testEvictLeastRecentlyUsed() {
+        BoundedChatMemoryStore store = new BoundedChatMemoryStore(2, 30);
+        store.updateMessages("a", List.of(UserMessage.from("上海到北京")));
+        store.updateMessages("b", List.of(UserMessage.from("导航去虹桥机场")));
+        store.getMessages("a");
+        store.updateMessages("c", List.of(UserMessage.from("骑车去外滩")));
+
+        assertEquals(2, store.size(), "会话数不应超过上限");
+        assertFalse(store.getMessages("a").isEmpty(), "最近访问的会话应保留");
+        assertTrue(store.getMessages("b").isEmpty(), "最久未访问的会话应被淘汰");
+        assertEquals(1, store.evictions());
+    }
+
+    @Test
+    void testApproxBytesTracksUpdatesAndDeletes() {
+        BoundedChatMemoryStore store = new BoundedChatMemoryStore(10, 30);
+        store.updateMessages("a", List.of(UserMessage.from("上海到北京")));
+        long oneMessage = store.approxBytes();
+        assertTrue(oneMessage > 0);
+
+        store.updateMessages("a", List.of(UserMessage.from("上海到北京"), AiMessage.from("{}")));
+        assertTrue(store.approxBytes() > oneMessage, "追加消息后占用应增加");
+
+        store.deleteMessages("a");
+        assertEquals(0, store.approxBytes());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testEvictIdleSessions() throws InterruptedException {
+        BoundedChatMemoryStore store = new BoundedChatMemoryStore(10, 0);
+        store.updateMessages("a", List.of(UserMessage.from("上海到北京")));
+        Thread.sleep(5);
+        store.evictIdle();
+        assertEquals(0, store.size(), "空闲超时的会话应被清理");
+    }
+
+    @Test
+    void testNotifiesEvictedSessions() throws InterruptedException {
+        BoundedChatMemoryStore store = new BoundedChatMemoryStore(1, 0);
+        List<Object> evicted = new CopyOnWriteArrayList<>();
+        store.addEvictionListener(evicted::add);
+
+        store.updateMessages("a", List.of(UserMessage.from("上海到北京")));
+        store.updateMessages("b", List.of(UserMessage.from("导航去虹桥机场")));
+        assertEquals(List.of("a"), evicted, "超出容量淘汰的会话应通知监听方");
+
+        Thread.sleep(5);
+        store.evictIdle();
+        assertEquals(List.of("a", "b"), evicted, "空闲清理的会话应通知监听方");
+    }
+}
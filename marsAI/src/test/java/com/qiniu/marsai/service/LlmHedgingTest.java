@@ -0,0 +1,95 @@
+package com.qiniu.marsai.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 大模型对冲请求测试类
+ */
+class LlmHedgingTest {
+
+    private static LlmHedging hedging(double maxRate) {
+        return new LlmHedging(new SimpleMeterRegistry(), true, 0.9, 10, 50, 200, maxRate);
+    }
+
+    private static Supplier<String> slow(String result, long millis) {
+        return () -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("已取消");
+            }
+            return result;
+        };
+    }
+
+    @Test
+    void testFastPrimaryIsNotHedged() {
+        LlmHedging hedging = hedging(1.0);
+        AtomicBoolean secondaryCalled = new AtomicBoolean();
+        String result = hedging.call(() -> "primary", () -> {
+            secondaryCalled.set(true);
+            return "secondary";
+        }, r -> true);
+        assertEquals("primary", result);
+        assertFalse(secondaryCalled.get(), "主请求及时返回时不应对冲");
+        assertEquals(0L, hedging.stats().get("hedged"));
+    }
+
+    @Test
+    void testSlowPrimaryLosesAndIsCancelled() throws InterruptedException {
+        LlmHedging hedging = hedging(1.0);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        String result = hedging.call(() -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                cancelled.countDown();
+            }
+            return "primary";
+        }, () -> "secondary", r -> true);
+        assertEquals("secondary", result, "备用请求先返回有效结果时应胜出");
+        assertTrue(cancelled.await(2, TimeUnit.SECONDS), "落败的主请求应被取消");
+        assertEquals(1L, hedging.stats().get("secondaryWins"));
+    }
+
+    @Test
+    void testInvalidSecondaryCannotWin() {
+        LlmHedging hedging = hedging(1.0);
+        String result = hedging.call(slow("primary", 200), () -> "bad", "primary"::equals);
+        assertEquals("primary", result, "无效结果不能胜出");
+    }
+
+    @Test
+    void testBudgetCapsHedgeRate() {
+        LlmHedging hedging = hedging(0.0);
+        AtomicBoolean secondaryCalled = new AtomicBoolean();
+        String result = hedging.call(slow("primary", 150), () -> {
+            secondaryCalled.set(true);
+            return "secondary";
+        }, r -> true);
+        assertEquals("primary", result);
+        assertFalse(secondaryCalled.get(), "超过对冲比例上限时不应对冲");
+        assertEquals(1L, hedging.stats().get("budgetExhausted"));
+    }
+
+    @Test
+    void testLatencyWindowPercentile() {
+        LlmHedging.LatencyWindow window = new LlmHedging.LatencyWindow(20);
+        assertEquals(-1, window.percentile(0.9), "样本不足时不给出分位数");
+        for (int i = 1; i <= 20; i++) {
+            window.record(i * 100L);
+        }
+        assertEquals(1800, window.percentile(0.9));
+        window.record(5000);
+        assertEquals(5000, window.percentile(1.0), "新样本应覆盖最旧的样本");
+        assertEquals(200, window.percentile(0.0));
+    }
+}
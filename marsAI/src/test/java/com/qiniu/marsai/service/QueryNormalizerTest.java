@@ -0,0 +1,45 @@
+package com.qiniu.marsai.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询归一化测试类
+ */
+class QueryNormalizerTest {
+
+    @Test
+    void testEquivalentQueriesShareKey() {
+        String key = QueryNormalizer.normalize("上海到北京");
+        assertEquals(key, QueryNormalizer.normalize(" 上海 到 北京！"));
+        assertEquals(key, QueryNormalizer.normalize("上海去北京"));
+        assertEquals(key, QueryNormalizer.normalize("魔都到帝都"));
+    }
+
+    @Test
+    void testTraditionalFolding() {
+        assertEquals(QueryNormalizer.normalize("导航去虹桥机场"), QueryNormalizer.normalize("導航去虹橋機場"));
+        assertEquals(QueryNormalizer.normalize("骑车去外滩"), QueryNormalizer.normalize("騎車去外灘"));
+    }
+
+    @Test
+    void testTravelModeSynonyms() {
+        assertEquals(QueryNormalizer.normalize("上海到北京驾车"), QueryNormalizer.normalize("上海到北京开车"));
+        assertEquals(QueryNormalizer.normalize("骑行去外滩"), QueryNormalizer.normalize("骑自行车去外滩"));
+    }
+
+    @Test
+    void testDependsOnOrigin() {
+        assertTrue(QueryNormalizer.dependsOnOrigin(QueryNormalizer.normalize("导航去虹桥机场")));
+        assertTrue(QueryNormalizer.dependsOnOrigin(QueryNormalizer.normalize("我要去乌鲁木齐")));
+        assertFalse(QueryNormalizer.dependsOnOrigin(QueryNormalizer.normalize("上海到北京")));
+        assertFalse(QueryNormalizer.dependsOnOrigin(QueryNormalizer.normalize("从人民广场骑车去外滩")));
+    }
+
+    @Test
+    void testOriginDependentKeyIncludesOrigin() {
+        assertNotEquals(IntentCache.keyOf("导航去虹桥机场", "1.1.1.1"), IntentCache.keyOf("导航去虹桥机场", "2.2.2.2"));
+        assertEquals(IntentCache.keyOf("上海到北京", "1.1.1.1"), IntentCache.keyOf("上海到北京", "2.2.2.2"));
+    }
+}
@@ -0,0 +1,255 @@
+package com.qiniu.marsai.service;
+
+import com.qiniu.marsai.deadline.Deadline;
+import com.qiniu.marsai.deadline.DeadlineContext;
+import com.qiniu.marsai.deadline.DeadlineExceededException;
+import com.qiniu.marsai.geo.IpLocationIndex;
+import com.qiniu.marsai.metrics.LlmMetrics;
+import com.qiniu.marsai.route.FastPathPlanner;
+import com.qiniu.marsai.route.ModelRouter;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 线路意图服务测试类
+ */
+class RouteIntentServiceTest {
+
+    private static final String INTENT = "{\"出发地\":{\"经度\":121.47,\"维度\":31.23},\"目的地\":{\"经度\":121.8,\"维度\":31.15},"
+            + "\"出行方式\":\"驾车\",\"policy\":10,\"policyReason\":\"\",\"err\":\"\"}";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AiHelperServiceFactory factory = new AiHelperServiceFactory();
+    private final ChatMemoryProvider chatMemoryProvider;
+    private final ChatMemoryStore scratchStore;
+
+    RouteIntentServiceTest() {
+        ReflectionTestUtils.setField(factory, "chatMemoryStore", new BoundedChatMemoryStore(100, 30));
+        ReflectionTestUtils.setField(factory, "maxMessages", 30);
+        chatMemoryProvider = factory.chatMemoryProvider();
+        scratchStore = factory.scratchChatMemoryStore();
+    }
+
+    private static ChatModel model(Function<ChatRequest, String> reply) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest request) {
+                return ChatResponse.builder().aiMessage(AiMessage.from(reply.apply(request))).build();
+            }
+        };
+    }
+
+    private AiHelperService service(ChatModel model, ChatMemoryProvider memoryProvider) {
+        return AiServices.builder(AiHelperService.class)
+                .chatModel(model)
+                .chatMemoryProvider(memoryProvider)
+                .build();
+    }
+
+    /**
+     * 快速模型、主模型和对冲的两个模型分别按给定方式回复；不经过缓存和快速路径
+     */
+    private RouteIntentService intentService(ChatModel fast, ChatModel strong, ChatModel hedge, LlmHedging hedging) {
+        ModelRouter router = new ModelRouter();
+        ReflectionTestUtils.setField(router, "enabled", true);
+        ReflectionTestUtils.setField(router, "maxFastChars", 24);
+        ReflectionTestUtils.setField(router, "meterRegistry", registry);
+
+        RouteIntentService service = new RouteIntentService();
+        ReflectionTestUtils.setField(service, "aiHelperService", service(strong, chatMemoryProvider));
+        ReflectionTestUtils.setField(service, "fastAiHelperService", service(fast, factory.scratchChatMemoryProvider()));
+        ReflectionTestUtils.setField(service, "scratchAiHelperService", service(strong, factory.scratchChatMemoryProvider()));
+        ReflectionTestUtils.setField(service, "hedgeAiHelperService", service(hedge, factory.scratchChatMemoryProvider()));
+        ReflectionTestUtils.setField(service, "scratchChatMemoryStore", scratchStore);
+        ReflectionTestUtils.setField(service, "chatMemoryProvider", chatMemoryProvider);
+        ReflectionTestUtils.setField(service, "intentCache", new IntentCache(false, 100, 10));
+        ReflectionTestUtils.setField(service, "llmMetrics", new LlmMetrics(registry));
+        ReflectionTestUtils.setField(service, "ipLocationIndex", new IpLocationIndex(""));
+        ReflectionTestUtils.setField(service, "fastPathPlanner", new FastPathPlanner());
+        ReflectionTestUtils.setField(service, "modelRouter", router);
+        ReflectionTestUtils.setField(service, "llmHedging", hedging);
+        ReflectionTestUtils.setField(service, "meterRegistry", registry);
+        service.init();
+        return service;
+    }
+
+    private LlmHedging hedgingDisabled() {
+        return new LlmHedging(registry, false, 0.9, 1500, 8000, 200, 0.1);
+    }
+
+    /**
+     * 会话已有一轮对话，临时记忆会复制这些消息
+     */
+    private void seedSession(String sessionId) {
+        chatMemoryProvider.get(sessionId).add(UserMessage.from("去虹桥火车站"));
+        chatMemoryProvider.get(sessionId).add(AiMessage.from(INTENT));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, ?> scratchMessages() {
+        return (Map<Object, ?>) ReflectionTestUtils.getField(scratchStore, "messagesByMemoryId");
+    }
+
+    @Test
+    void testFastTierClearsScratchMemory() {
+        RouteIntentService service = intentService(model(request -> INTENT), model(request -> fail("不应升级到主模型")),
+                model(request -> fail("不应对冲")), hedgingDisabled());
+        seedSession("s1");
+
+        assertEquals(INTENT, service.chat("s1", "去浦东机场", null));
+        assertTrue(scratchMessages().isEmpty(), "快速模型调用结束后临时记忆的消息应被删除");
+        assertEquals(4, chatMemoryProvider.get("s1").messages().size(), "快速模型的结果应写回会话记忆");
+    }
+
+    @Test
+    void testEscalationClearsScratchMemory() {
+        RouteIntentService service = intentService(model(request -> "抱歉，我无法理解"), model(request -> INTENT),
+                model(request -> fail("不应对冲")), hedgingDisabled());
+        seedSession("s2");
+
+        assertEquals(INTENT, service.chat("s2", "去浦东机场", null));
+        assertTrue(scratchMessages().isEmpty(), "升级到主模型后快速模型的临时记忆应被删除");
+        assertFalse(chatMemoryProvider.get("s2").messages().stream()
+                .anyMatch(message -> message instanceof AiMessage ai && "抱歉，我无法理解".equals(ai.text())),
+                "会话记忆中不应留下快速模型的输出");
+    }
+
+    @Test
+    void testHedgeClearsScratchMemory() throws InterruptedException {
+        // 主模型较慢，超过对冲延迟后备用模型先返回
+        ChatModel slow = model(request -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return INTENT;
+        });
+        LlmHedging hedging = new LlmHedging(registry, true, 0.9, 1, 20, 200, 1.0);
+        RouteIntentService service = intentService(model(request -> "抱歉，我无法理解"), slow, model(request -> INTENT), hedging);
+        seedSession("s3");
+
+        assertEquals(INTENT, service.chat("s3", "去浦东机场", null));
+        assertEquals(1L, hedging.stats().get("hedged"), "主模型超过延迟应发起对冲");
+        // 被取消的主请求在实际结束时才清除临时记忆
+        long waitUntil = System.currentTimeMillis() + 3000;
+        while (!scratchMessages().isEmpty() && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(20);
+        }
+        assertTrue(scratchMessages().isEmpty(), "对冲双方结束后临时记忆的消息应被删除");
+        hedging.shutdown();
+    }
+
+    /**
+     * 开启请求合并；第一次调用主模型时等待delayMs，之后立即返回
+     */
+    private RouteIntentService coalescing(long followerTimeoutMs, long delayMs, CountDownLatch started, AtomicInteger calls) {
+        ChatModel strong = model(request -> {
+            if (calls.incrementAndGet() == 1) {
+                started.countDown();
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return INTENT;
+        });
+        RouteIntentService service = intentService(model(request -> "抱歉，我无法理解"), strong,
+                model(request -> fail("不应对冲")), hedgingDisabled());
+        ReflectionTestUtils.setField(service, "coalesceEnabled", true);
+        ReflectionTestUtils.setField(service, "followerTimeoutMs", followerTimeoutMs);
+        return service;
+    }
+
+    @Test
+    void testFollowerRecomputesAfterLeaderDeadline() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        RouteIntentService service = coalescing(5000, 1000, started, calls);
+
+        // leader只给100ms，follower没有截止时间
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(
+                () -> DeadlineContext.call(Deadline.after(100), () -> service.chat("leader", "去浦东机场", null)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(INTENT, service.chat("follower", "去浦东机场", null), "leader超时后follower应自行计算");
+        assertEquals(2, calls.get());
+
+        Exception e = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertNotNull(DeadlineExceededException.find(e), "leader应以自身的截止时间失败");
+        List<ChatMessage> messages = chatMemoryProvider.get("follower").messages();
+        assertEquals(INTENT, ((AiMessage) messages.get(messages.size() - 1)).text(), "follower的会话记忆应写入本轮对话");
+    }
+
+    @Test
+    void testFollowerTimeoutIsDeadlineError() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        RouteIntentService service = coalescing(100, 500, started, calls);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> service.chat("leader", "去浦东机场", null));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+                () -> service.chat("follower", "去浦东机场", null), "follower等待超时应按超时返回");
+        assertEquals("llm", e.getStage());
+        assertEquals(100, e.getBudgetMs());
+        assertEquals(INTENT, leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCacheHitWritesSessionMemory() {
+        AtomicInteger calls = new AtomicInteger();
+        ChatModel counting = model(request -> {
+            calls.incrementAndGet();
+            return INTENT;
+        });
+        RouteIntentService service = intentService(counting, counting, model(request -> fail("不应对冲")), hedgingDisabled());
+        ReflectionTestUtils.setField(service, "intentCache", new IntentCache(true, 100, 10));
+
+        assertEquals(INTENT, service.chat("s1", "去浦东机场", null));
+        assertEquals(INTENT, service.chat("s2", "去浦东机场", null));
+        assertEquals(1, calls.get(), "指明目的地的查询应命中缓存");
+        List<ChatMessage> messages = chatMemoryProvider.get("s2").messages();
+        assertEquals(2, messages.size(), "缓存命中时也应把本轮对话写入会话记忆");
+        assertEquals(INTENT, ((AiMessage) messages.get(1)).text());
+    }
+
+    @Test
+    void testFollowUpBypassesCache() {
+        AtomicInteger calls = new AtomicInteger();
+        RouteIntentService service = intentService(model(request -> fail("追问应交给主模型")), model(request -> {
+            calls.incrementAndGet();
+            return INTENT;
+        }), model(request -> fail("不应对冲")), hedgingDisabled());
+        ReflectionTestUtils.setField(service, "intentCache", new IntentCache(true, 100, 10));
+
+        // 没有上下文的会话中结果与会话无关，可以缓存
+        service.chat("fresh", "改成骑行", null);
+        assertEquals(1, calls.get());
+        seedSession("s4");
+        service.chat("s4", "改成骑行", null);
+        assertEquals(2, calls.get(), "有上下文的追问不应使用其它会话的缓存结果");
+        service.chat("s4", "改成骑行", null);
+        assertEquals(3, calls.get(), "同一会话的追问也不应使用缓存");
+    }
+}
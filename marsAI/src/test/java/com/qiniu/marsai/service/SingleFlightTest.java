@@ -0,0 +1,114 @@
+package com.qiniu.marsai.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 相同请求合并测试类
+ */
+class SingleFlightTest {
+
+    @Test
+    void testConcurrentCallsShareOneComputation() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> flight.execute("上海到北京", () -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return "结果";
+                }, Duration.ofSeconds(5))));
+            }
+            // 等所有请求都挂到同一个计算上
+            while ((long) flight.stats().get("coalesced") < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("结果", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, calls.get(), "只应计算一次");
+        assertEquals(0, flight.stats().get("inFlight"), "计算结束后应移除");
+        assertEquals("第二次", flight.execute("上海到北京", () -> "第二次", Duration.ofSeconds(1)), "结果不应被缓存");
+    }
+
+    @Test
+    void testFollowerTimeoutAndFailure() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> flight.execute("k", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("上游失败");
+        }, Duration.ofSeconds(5)));
+        started.await();
+
+        assertThrows(SingleFlight.FollowerTimeoutException.class,
+                () -> flight.execute("k", () -> "不应执行", Duration.ofMillis(50)));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(
+                () -> flight.execute("k", () -> "不应执行", Duration.ofSeconds(5)));
+        while ((long) flight.stats().get("coalesced") < 2) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        CompletionException error = assertThrows(CompletionException.class, follower::join);
+        assertEquals("上游失败", error.getCause().getMessage(), "follower应收到leader的异常");
+        assertThrows(CompletionException.class, leader::join);
+        assertEquals(1L, flight.stats().get("followerTimeouts"));
+    }
+
+    @Test
+    void testAsync() {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", new SimpleMeterRegistry());
+        CompletableFuture<String> source = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> leader = flight.executeAsync("音频", () -> {
+            calls.incrementAndGet();
+            return source;
+        }, Duration.ofSeconds(5));
+        CompletableFuture<String> follower = flight.executeAsync("音频", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("不应执行");
+        }, Duration.ofSeconds(5));
+        CompletableFuture<String> impatient = flight.executeAsync("音频", CompletableFuture::new, Duration.ofMillis(20));
+
+        CompletionException timeout = assertThrows(CompletionException.class, impatient::join);
+        assertInstanceOf(SingleFlight.FollowerTimeoutException.class, timeout.getCause());
+        assertFalse(follower.isDone(), "其它follower不受超时影响");
+        source.complete("导航去外滩");
+        assertEquals("导航去外滩", leader.join());
+        assertEquals("导航去外滩", follower.join());
+        assertEquals(1, calls.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.qiniu.marsai.tool;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.tool.ToolExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 工具并发执行测试类
+ */
+class ParallelToolExecutionTest {
+
+    private static ToolExecutionRequest request(String id, String name, String arguments) {
+        return ToolExecutionRequest.builder().id(id).name(name).arguments(arguments).build();
+    }
+
+    private static ToolExecutor sleeping(long millis) {
+        return (request, memoryId) -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return request.name() + ":" + request.arguments();
+        };
+    }
+
+    private static void respond(ParallelToolExecution parallel, List<ToolExecutionRequest> requests) {
+        ChatResponse response = ChatResponse.builder().aiMessage(AiMessage.from(requests)).build();
+        ChatRequest chatRequest = ChatRequest.builder().messages(UserMessage.from("从上海到北京")).build();
+        parallel.onResponse(new ChatModelResponseContext(response, chatRequest, ModelProvider.OTHER, new HashMap<>()));
+    }
+
+    @Test
+    void testBatchRunsConcurrentlyInOrder() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ParallelToolExecution parallel = new ParallelToolExecution(registry, true, 8, "5s", "");
+        Map<String, ToolExecutor> executors = new LinkedHashMap<>();
+        executors.put("maps_geo", sleeping(300));
+        executors.put("maps_weather", sleeping(300));
+        Map<String, ToolExecutor> wrapped = parallel.wrap(executors);
+
+        List<ToolExecutionRequest> requests = List.of(request("1", "maps_geo", "上海"),
+                request("2", "maps_geo", "北京"), request("3", "maps_weather", "北京"));
+        respond(parallel, requests);
+        long start = System.nanoTime();
+        // 与AiServices一样按顺序逐个执行
+        for (ToolExecutionRequest request : requests) {
+            assertEquals(request.name() + ":" + request.arguments(), wrapped.get(request.name()).execute(request, "s1"));
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs < 800, "三个工具应并发执行，实际耗时" + elapsedMs + "ms");
+
+        double savedMs = registry.get("marsai.tools.parallel.saved").timer().totalTime(TimeUnit.MILLISECONDS);
+        assertTrue(savedMs > 400, "应记录节省的时间，实际" + savedMs + "ms");
+
+        // 批次用完后，单个调用仍在调用线程上直接执行
+        ToolExecutionRequest single = request("4", "maps_geo", "杭州");
+        assertEquals("maps_geo:杭州", wrapped.get("maps_geo").execute(single, "s1"));
+    }
+
+    @Test
+    void testPerToolTimeout() {
+        ParallelToolExecution parallel = new ParallelToolExecution(new SimpleMeterRegistry(), true, 8, "5s",
+                "maps_weather=100ms");
+        Map<String, ToolExecutor> executors = new LinkedHashMap<>();
+        executors.put("maps_geo", sleeping(10));
+        executors.put("maps_weather", sleeping(2000));
+        Map<String, ToolExecutor> wrapped = parallel.wrap(executors);
+
+        List<ToolExecutionRequest> requests = List.of(request("1", "maps_weather", "北京"), request("2", "maps_geo", "上海"));
+        respond(parallel, requests);
+        long start = System.nanoTime();
+        assertTrue(wrapped.get("maps_weather").execute(requests.get(0), "s1").contains("超时"));
+        assertEquals("maps_geo:上海", wrapped.get("maps_geo").execute(requests.get(1), "s1"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "超时的工具不应拖住整批");
+    }
+
+    @Test
+    void testParseTimeouts() {
+        Map<String, Duration> timeouts = ParallelToolExecution.parseTimeouts("maps_geo=5s, getMyPublicIp=800ms");
+        assertEquals(Duration.ofSeconds(5), timeouts.get("maps_geo"));
+        assertEquals(Duration.ofMillis(800), timeouts.get("getMyPublicIp"));
+        assertTrue(ParallelToolExecution.parseTimeouts("").isEmpty());
+    }
+}
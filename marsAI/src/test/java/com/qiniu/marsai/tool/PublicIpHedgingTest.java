@@ -0,0 +1,111 @@
+package com.qiniu.marsai.tool;
+
+import com.qiniu.marsai.http.OutboundHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 公网IP对冲查询测试类
+ */
+class PublicIpHedgingTest {
+
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private String baseUrl;
+    private OutboundHttpClient httpClient;
+    private PublicIpUtil publicIpUtil;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        respond("/slow", 2000, "1.1.1.1");
+        respond("/fast", 0, "当前 IP：8.8.8.8  来自于：中国");
+        respond("/invalid", 0, "<html>blocked</html>");
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        httpClient = new OutboundHttpClient(new SimpleMeterRegistry(), 16, 1000, List.of());
+    }
+
+    @AfterEach
+    void tearDown() {
+        publicIpUtil.shutdown();
+        httpClient.shutdown();
+        server.stop(0);
+    }
+
+    private void respond(String path, long delayMs, String body) {
+        hits.put(path, new AtomicInteger());
+        server.createContext(path, exchange -> {
+            hits.get(path).incrementAndGet();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+    }
+
+    private PublicIpUtil create(String... paths) {
+        PublicIpUtil util = new PublicIpUtil();
+        ReflectionTestUtils.setField(util, "httpClient", httpClient);
+        ReflectionTestUtils.setField(util, "services", Arrays.stream(paths).map(p -> baseUrl + p).toList());
+        ReflectionTestUtils.setField(util, "defaultTimeoutMs", 3000);
+        ReflectionTestUtils.setField(util, "hedgeDelayMs", 100L);
+        ReflectionTestUtils.setField(util, "ttlSeconds", 600L);
+        ReflectionTestUtils.setField(util, "refreshAfterSeconds", 300L);
+        return util;
+    }
+
+    @Test
+    void testHedgeSkipsSlowService() {
+        publicIpUtil = create("/slow", "/invalid", "/fast");
+
+        long start = System.currentTimeMillis();
+        String ip = publicIpUtil.getPublicIp();
+
+        assertEquals("8.8.8.8", ip, "应取第一个有效IP");
+        assertTrue(System.currentTimeMillis() - start < 1500, "不应等待慢服务返回");
+    }
+
+    @Test
+    void testCachedAndRanked() {
+        publicIpUtil = create("/slow", "/fast");
+        assertEquals("8.8.8.8", publicIpUtil.getPublicIp());
+
+        assertEquals("8.8.8.8", publicIpUtil.getPublicIp(), "缓存未过期时直接返回");
+        assertEquals(1, hits.get("/fast").get(), "命中缓存时不应再请求");
+
+        // 跳过缓存重新查询，此时快服务排在最前，在对冲延迟内返回，不会再请求慢服务
+        int slowHits = hits.get("/slow").get();
+        assertEquals("8.8.8.8", publicIpUtil.getPublicIpConcurrent(3000));
+        assertEquals(slowHits, hits.get("/slow").get(), "应优先请求历史最快的服务");
+    }
+
+    @Test
+    void testAllInvalidReturnsNull() {
+        publicIpUtil = create("/invalid", "/invalid");
+
+        assertNull(publicIpUtil.getPublicIpConcurrent(2000), "没有有效IP时应返回null，而不是第一个完成的结果");
+    }
+}
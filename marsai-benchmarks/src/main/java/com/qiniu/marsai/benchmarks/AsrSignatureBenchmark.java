@@ -0,0 +1,40 @@
+package com.qiniu.marsai.benchmarks;
+
+import com.qiniu.marsai.service.XfyunAsrClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * XfyunAsrClient.generateSignature：每次上传和查询都要做一次参数排序、URL编码和HmacSHA1
+ */
+@State(Scope.Thread)
+public class AsrSignatureBenchmark extends BenchmarkDefaults {
+
+    private XfyunAsrClient client;
+    private Map<String, String> uploadParams;
+
+    @Setup
+    public void setup() {
+        client = new XfyunAsrClient(null, "appid", "accessKeyId", "accessKeySecret",
+                new byte[0], "audio.wav", 3000);
+        uploadParams = new HashMap<>();
+        uploadParams.put("appId", "appid");
+        uploadParams.put("accessKeyId", "accessKeyId");
+        uploadParams.put("dateTime", "2025-01-01T12:00:00+0800");
+        uploadParams.put("signatureRandom", "AbCdEfGhIjKlMnOp");
+        uploadParams.put("fileSize", "96044");
+        uploadParams.put("fileName", "audio_record_1234567890.wav");
+        uploadParams.put("language", "autodialect");
+        uploadParams.put("duration", "3000");
+    }
+
+    @Benchmark
+    public String generateSignature() {
+        return client.generateSignature(uploadParams);
+    }
+}
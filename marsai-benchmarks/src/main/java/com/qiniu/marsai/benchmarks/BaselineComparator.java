@@ -0,0 +1,108 @@
+package com.qiniu.marsai.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 对比两次JMH结果（JSON格式）
+ * 按基准名+参数逐项对比主指标和每次操作分配的字节数（gc.alloc.rate.norm），
+ * 任一项比基线差超过阈值即判定为回退
+ */
+public final class BaselineComparator {
+
+    private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+    private BaselineComparator() {
+    }
+
+    /**
+     * 单项结果
+     * @param score 主指标
+     * @param unit 主指标单位
+     * @param higherIsBetter 吞吐量模式越高越好，耗时模式越低越好
+     * @param allocBytes 每次操作分配的字节数，未开启GC分析器时为NaN
+     */
+    record Entry(double score, String unit, boolean higherIsBetter, double allocBytes) {
+    }
+
+    /**
+     * 输出对比表
+     * @return 是否存在回退
+     */
+    public static boolean compare(Path baselineFile, Path currentFile, double thresholdPercent, PrintStream out) throws IOException {
+        Map<String, Entry> baseline = load(baselineFile);
+        Map<String, Entry> current = load(currentFile);
+        boolean regressed = false;
+        out.printf("%-70s %14s %14s %9s %12s %12s %9s%n",
+                "基准", "基线", "本次", "变化", "基线B/op", "本次B/op", "变化");
+        for (Map.Entry<String, Entry> item : current.entrySet()) {
+            Entry now = item.getValue();
+            Entry before = baseline.get(item.getKey());
+            if (before == null) {
+                out.printf("%-70s %14s %14.3f %9s  (新增)%n", item.getKey(), "-", now.score(), "-");
+                continue;
+            }
+            double scoreChange = change(before.score(), now.score());
+            double allocChange = change(before.allocBytes(), now.allocBytes());
+            boolean worse = (now.higherIsBetter() ? -scoreChange : scoreChange) > thresholdPercent
+                    || allocChange > thresholdPercent;
+            regressed |= worse;
+            out.printf("%-70s %14.3f %14.3f %8.1f%% %12.0f %12.0f %8.1f%%%s%n",
+                    item.getKey(), before.score(), now.score(), scoreChange,
+                    before.allocBytes(), now.allocBytes(), allocChange, worse ? "  <- 回退" : "");
+        }
+        for (String removed : baseline.keySet()) {
+            if (!current.containsKey(removed)) {
+                out.printf("%-70s  (本次未运行)%n", removed);
+            }
+        }
+        out.println(regressed ? "存在超过" + thresholdPercent + "%的回退" : "没有超过" + thresholdPercent + "%的回退");
+        return regressed;
+    }
+
+    static Map<String, Entry> load(Path file) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file.toFile())) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(key.indexOf("(") < 0 ? "(" : ",").append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            if (key.indexOf("(") >= 0) {
+                key.append(')');
+            }
+            JsonNode primary = result.path("primaryMetric");
+            String mode = result.path("mode").asText();
+            entries.put(key.toString(), new Entry(primary.path("score").asDouble(), primary.path("scoreUnit").asText(),
+                    "thrpt".equals(mode), allocBytes(result.path("secondaryMetrics"))));
+        }
+        return entries;
+    }
+
+    private static double allocBytes(JsonNode secondaryMetrics) {
+        Iterator<Map.Entry<String, JsonNode>> metrics = secondaryMetrics.fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> metric = metrics.next();
+            // 旧版本JMH的指标名带"·"前缀
+            if (metric.getKey().replace("·", "").equals(ALLOC_METRIC)) {
+                return metric.getValue().path("score").asDouble();
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static double change(double before, double now) {
+        if (Double.isNaN(before) || Double.isNaN(now) || before == 0) {
+            return 0;
+        }
+        return (now - before) / before * 100;
+    }
+}
@@ -0,0 +1,68 @@
+package com.qiniu.marsai.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试入口
+ * 默认运行全部基准并开启GC分析器（记录每次操作分配的字节数），结果写入JSON文件。
+ * <pre>
+ * java -jar target/benchmarks.jar [包含的基准正则] [JMH参数，如 -wi 1 -i 3 -f 1]
+ *     --result 结果文件（默认 jmh-result.json）
+ *     --save-baseline 文件   把本次结果保存为基线
+ *     --baseline 文件        运行后与基线对比，出现回退时以非0退出
+ *     --threshold 百分比     判定回退的阈值（默认10）
+ *     --compare 基线 结果    不运行，只对比两个已有结果文件
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>();
+        String result = "jmh-result.json";
+        String baseline = null;
+        String saveBaseline = null;
+        double threshold = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--result" -> result = args[++i];
+                case "--baseline" -> baseline = args[++i];
+                case "--save-baseline" -> saveBaseline = args[++i];
+                case "--threshold" -> threshold = Double.parseDouble(args[++i]);
+                case "--compare" -> {
+                    boolean regressed = BaselineComparator.compare(Path.of(args[i + 1]), Path.of(args[i + 2]), threshold, System.out);
+                    System.exit(regressed ? 1 : 0);
+                }
+                default -> jmhArgs.add(args[i]);
+            }
+        }
+
+        // 其余参数（基准正则、-wi/-i/-f等）按JMH命令行解析
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(jmhArgs.toArray(new String[0])))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build();
+        new Runner(options).run();
+
+        if (saveBaseline != null) {
+            Files.copy(Path.of(result), Path.of(saveBaseline), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("已保存基线: " + saveBaseline);
+        }
+        if (baseline != null) {
+            boolean regressed = BaselineComparator.compare(Path.of(baseline), Path.of(result), threshold, System.out);
+            System.exit(regressed ? 1 : 0);
+        }
+    }
+}
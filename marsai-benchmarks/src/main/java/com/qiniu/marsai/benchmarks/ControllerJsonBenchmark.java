@@ -0,0 +1,37 @@
+package com.qiniu.marsai.benchmarks;
+
+import com.qiniu.marsai.controller.JsonBodies;
+import com.qiniu.marsai.route.RouteIntentCodec;
+import net.sf.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * AiController的JSON处理：解析请求体取text，再把模型输出校验并序列化后返回
+ * jsonLib*为改用流式解析前的实现（json-lib，响应解析两次），保留作对比
+ */
+@State(Scope.Benchmark)
+public class ControllerJsonBenchmark extends BenchmarkDefaults {
+
+    @Benchmark
+    public String readRequestText() {
+        return JsonBodies.readText(Samples.TEXT_REQUEST);
+    }
+
+    @Benchmark
+    public String writeResponse() {
+        return RouteIntentCodec.toJson(RouteIntentCodec.parse(Samples.ROUTE_INTENT));
+    }
+
+    @Benchmark
+    public String jsonLibReadRequestText() {
+        return JSONObject.fromObject(Samples.TEXT_REQUEST).getString("text");
+    }
+
+    @Benchmark
+    public String jsonLibWriteResponse() {
+        JSONObject.fromObject(Samples.ROUTE_INTENT).toString();
+        return JSONObject.fromObject(Samples.ROUTE_INTENT).toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.qiniu.marsai.benchmarks;
+
+import com.qiniu.marsai.geo.Gazetteer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * 本地地名库查询（含归一化），命中与未命中
+ */
+@State(Scope.Benchmark)
+public class GazetteerBenchmark extends BenchmarkDefaults {
+
+    @Param({"上海虹桥国际机场", "不存在的地方"})
+    public String name;
+
+    private Gazetteer gazetteer;
+
+    @Setup
+    public void setup() throws Exception {
+        gazetteer = new Gazetteer(new SimpleMeterRegistry(), "", List.of("classpath:gazetteer/places.tsv"));
+    }
+
+    @Benchmark
+    public Gazetteer.Place lookup() {
+        return gazetteer.lookup(name);
+    }
+}
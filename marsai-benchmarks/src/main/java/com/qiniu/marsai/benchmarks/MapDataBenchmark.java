@@ -0,0 +1,33 @@
+package com.qiniu.marsai.benchmarks;
+
+import com.aiassistant.MapDataExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 桌面端从后端响应中提取地图参数并拼接地图URL
+ */
+@State(Scope.Benchmark)
+public class MapDataBenchmark extends BenchmarkDefaults {
+
+    private static final String MAP_BASE_URL = "http://127.0.0.1:8081/api/map.html";
+
+    private MapDataExtractor.MapData data;
+
+    @Setup
+    public void setup() {
+        data = MapDataExtractor.extractMapData(Samples.ROUTE_INTENT);
+    }
+
+    @Benchmark
+    public MapDataExtractor.MapData extractMapData() {
+        return MapDataExtractor.extractMapData(Samples.ROUTE_INTENT);
+    }
+
+    @Benchmark
+    public String buildMapUrl() {
+        return MapDataExtractor.buildMapUrl(MAP_BASE_URL, data);
+    }
+}
@@ -0,0 +1,90 @@
+package com.qiniu.marsai.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * 基准测试用的样本数据，按线上数据的格式构造，保证每次运行输入一致
+ */
+final class Samples {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String[] VOCAB = {"从", "人民", "广场", "到", "东方", "明珠", "步行", "怎么", "走", "，",
+            "公交", "地铁", "。", "导航", "去", "虹桥", "机场", "开车"};
+
+    /**
+     * 模型按system-prompt输出的线路意图
+     */
+    static final String ROUTE_INTENT = "{\"出发地\":{\"经度\":121.475164,\"维度\":31.228816},"
+            + "\"目的地\":{\"经度\":116.407526,\"维度\":39.90403},\"出行方式\":\"驾车\",\"policy\":12,"
+            + "\"policyReason\":\"距离较远，优先躲避拥堵\",\"err\":\"\"}";
+
+    /**
+     * 客户端发来的文字请求体
+     */
+    static final String TEXT_REQUEST = "{\"text\":\"导航从上海人民广场开车去北京天安门，避开拥堵\"}";
+
+    private Samples() {
+    }
+
+    /**
+     * 讯飞查询接口的完整响应
+     * @param segments 分句数
+     * @param wordsPerSegment 每句词数
+     */
+    static String orderResultResponse(int segments, int wordsPerSegment) {
+        Random random = new Random(7);
+        try {
+            ObjectNode orderResult = MAPPER.createObjectNode();
+            ArrayNode lattice = orderResult.putArray("lattice");
+            for (int i = 0; i < segments; i++) {
+                ObjectNode st = MAPPER.createObjectNode();
+                ObjectNode stBody = st.putObject("st");
+                stBody.put("bg", String.valueOf(i * 1000)).put("ed", String.valueOf(i * 1000 + 1000)).put("rl", "0");
+                ArrayNode ws = stBody.putArray("rt").addObject().putArray("ws");
+                for (int j = 0; j < wordsPerSegment; j++) {
+                    ObjectNode word = ws.addObject();
+                    word.putArray("cw").addObject()
+                            .put("w", VOCAB[random.nextInt(VOCAB.length)]).put("wp", "n").put("wc", "1.0000");
+                    word.put("wb", j * 10).put("we", j * 10 + 9);
+                }
+                lattice.addObject().put("json_1best", MAPPER.writeValueAsString(st));
+            }
+            ObjectNode response = MAPPER.createObjectNode();
+            response.put("code", "000000").put("descInfo", "success");
+            ObjectNode content = response.putObject("content");
+            content.putObject("orderInfo").put("orderId", "DKHJQ2022090510220905100000000000000001").put("status", 4);
+            content.put("orderResult", MAPPER.writeValueAsString(orderResult));
+            return MAPPER.writeValueAsString(response);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 16kHz/16bit/单声道的静音WAV
+     */
+    static byte[] wav(int durationSeconds) {
+        AudioFormat format = new AudioFormat(16000, 16, 1, true, false);
+        byte[] pcm = new byte[16000 * 2 * durationSeconds];
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pcm.length + 64);
+        try {
+            AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format, pcm.length / 2),
+                    AudioFileFormat.Type.WAVE, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+}
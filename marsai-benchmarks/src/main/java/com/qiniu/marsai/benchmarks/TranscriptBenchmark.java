@@ -0,0 +1,75 @@
+package com.qiniu.marsai.benchmarks;
+
+import com.qiniu.marsai.asr.TranscriptExtractor;
+import com.qiniu.marsai.service.XfyunAsrClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 转写结果文本提取：当前的流式提取与原先逐层构建JSONObject的实现对比
+ */
+@State(Scope.Benchmark)
+public class TranscriptBenchmark extends BenchmarkDefaults {
+
+    /**
+     * 分句数，20约为一分钟音频
+     */
+    @Param({"1", "20", "200"})
+    public int segments;
+
+    private String response;
+    private JSONObject parsedResponse;
+
+    @Setup
+    public void setup() {
+        response = Samples.orderResultResponse(segments, 30);
+        parsedResponse = new JSONObject(response);
+    }
+
+    @Benchmark
+    public String streamingFromResponse() {
+        return TranscriptExtractor.fromResponse(response);
+    }
+
+    @Benchmark
+    public String parseOrderResult() {
+        return XfyunAsrClient.parseOrderResult(parsedResponse);
+    }
+
+    @Benchmark
+    public String legacyDomWalk() {
+        return legacyParse(parsedResponse);
+    }
+
+    /**
+     * 原先的parseOrderResult：orderResult和每个json_1best都构建JSONObject，收集所有w后再拼接
+     */
+    static String legacyParse(JSONObject apiResponse) {
+        String orderResultStr = apiResponse.getJSONObject("content").optString("orderResult", "{}");
+        JSONObject orderResult = new JSONObject(orderResultStr.replace("\\\\", "\\"));
+        List<String> wValues = new ArrayList<>();
+        JSONArray lattice = orderResult.getJSONArray("lattice");
+        for (int i = 0; i < lattice.length(); i++) {
+            JSONObject json1best = new JSONObject(lattice.getJSONObject(i).getString("json_1best"));
+            JSONArray rtArray = json1best.getJSONObject("st").getJSONArray("rt");
+            for (int j = 0; j < rtArray.length(); j++) {
+                JSONArray wsArray = rtArray.getJSONObject(j).getJSONArray("ws");
+                for (int k = 0; k < wsArray.length(); k++) {
+                    JSONArray cwArray = wsArray.getJSONObject(k).getJSONArray("cw");
+                    for (int l = 0; l < cwArray.length(); l++) {
+                        wValues.add(cwArray.getJSONObject(l).getString("w"));
+                    }
+                }
+            }
+        }
+        return String.join("", wValues);
+    }
+}
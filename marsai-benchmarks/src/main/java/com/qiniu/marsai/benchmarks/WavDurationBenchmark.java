@@ -0,0 +1,41 @@
+package com.qiniu.marsai.benchmarks;
+
+import com.qiniu.marsai.asr.WavHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+
+/**
+ * WAV时长计算：直接读RIFF头与原先通过javax.sound打开音频流对比
+ */
+@State(Scope.Benchmark)
+public class WavDurationBenchmark extends BenchmarkDefaults {
+
+    @Param({"3", "60"})
+    public int seconds;
+
+    private byte[] wav;
+
+    @Setup
+    public void setup() {
+        wav = Samples.wav(seconds);
+    }
+
+    @Benchmark
+    public int riffHeader() {
+        return WavHeader.parse(wav, wav.length).durationMs();
+    }
+
+    @Benchmark
+    public int javaSound() throws Exception {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wav))) {
+            return (int) (in.getFrameLength() / in.getFormat().getFrameRate() * 1000);
+        }
+    }
+}